@@ -0,0 +1,24 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This marks a method as the handler for a group of message components. The method must be <code>static</code>, not
+ * <code>private</code>, and take a single <code>ButtonClickEvent</code> or <code>SelectionMenuEvent</code>. The
+ * parameter type decides which kind of component it handles.
+ * <p>
+ * Component ids take the form <code>prefix:data</code>, and the handler receives every component whose id has the
+ * given {@link #value() prefix}. At compile time, the command processor uses these annotations to generate
+ * <code>ComponentDispatcher</code> in the package of the handlers.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface ComponentHandler {
+    /**
+     * @return the component id prefix (everything before the first <code>:</code>)
+     */
+    String value();
+}
@@ -0,0 +1,33 @@
+package annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This describes an option of a {@link SlashHandler slash command} or {@link Subcommand subcommand}.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({})
+public @interface Option {
+    /**
+     * @return the name of a JDA <code>OptionType</code> constant, such as <code>"INTEGER"</code> or
+     * <code>"STRING"</code>. This is checked at compile time.
+     */
+    String type();
+
+    /**
+     * @return the name of the option
+     */
+    String name();
+
+    /**
+     * @return the description shown to users in Discord
+     */
+    String description();
+
+    /**
+     * @return whether the user must provide this option
+     */
+    boolean required() default false;
+}
@@ -0,0 +1,66 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This marks a method as the handler for a slash command. The method must be <code>static</code>, not
+ * <code>private</code>, and take a single <code>SlashCommandEvent</code>.
+ * <p>
+ * At compile time, the command processor uses these annotations to generate <code>SlashCommandDispatcher</code> in the
+ * package of the handlers. That class routes each <code>SlashCommandEvent</code> to its handler by name, and builds the
+ * <code>CommandData</code> lists that are pushed to Discord for the {@link Scope#GLOBAL global} and {@link
+ * Scope#PRIVATE private} commands.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface SlashHandler {
+    /**
+     * The places where a slash command is registered.
+     */
+    enum Scope {
+        /**
+         * Commands available in all servers and DMs
+         */
+        GLOBAL,
+
+        /**
+         * Commands registered only in the StatsBot Central server
+         */
+        PRIVATE
+    }
+
+    /**
+     * @return the name of the command, as typed by users after the <code>/</code>
+     */
+    String name();
+
+    /**
+     * @return the description shown to users in Discord
+     */
+    String description();
+
+    /**
+     * @return where the command is registered
+     */
+    Scope scope() default Scope.GLOBAL;
+
+    /**
+     * @return the command's subcommands, if any
+     */
+    Subcommand[] subcommands() default {};
+
+    /**
+     * @return the command's options. Commands with {@link #subcommands()} should put their options on the
+     * subcommands instead.
+     */
+    Option[] options() default {};
+
+    /**
+     * @return whether the command is enabled for everyone by default. Commands that are disabled by default must have
+     * their privileges granted to specific users.
+     */
+    boolean defaultEnabled() default true;
+}
@@ -0,0 +1,28 @@
+package annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This describes a subcommand of a {@link SlashHandler slash command}. The handler for the parent command receives
+ * every subcommand and can tell them apart with <code>SlashCommandEvent.getSubcommandName()</code>.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({})
+public @interface Subcommand {
+    /**
+     * @return the name of the subcommand
+     */
+    String name();
+
+    /**
+     * @return the description shown to users in Discord
+     */
+    String description();
+
+    /**
+     * @return the subcommand's options
+     */
+    Option[] options() default {};
+}
@@ -0,0 +1,30 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This marks a method as the handler for a prefixed text command. The method must be <code>static</code> and not
+ * <code>private</code>. It may take a <code>Message</code>, a <code>CommandArgs</code>, or both (in any order), and
+ * must return either a <code>CommandReply</code> or something accepted by <code>CommandReply.ofReply()</code>, such as
+ * a <code>String</code>, <code>EmbedBuilder</code>, or <code>Message</code>.
+ * <p>
+ * At compile time, the command processor uses these annotations to generate <code>TextCommandDispatcher</code> in the
+ * package of the handlers. That class routes each command to its handler by name and records which commands are
+ * reserved for administrators.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface TextHandler {
+    /**
+     * @return the name of the command, as typed by users after the prefix (in lowercase)
+     */
+    String name();
+
+    /**
+     * @return whether the command is reserved for administrators
+     */
+    boolean admin() default false;
+}
@@ -0,0 +1,604 @@
+package processor;
+
+import annotations.ComponentHandler;
+import annotations.Option;
+import annotations.SlashHandler;
+import annotations.Subcommand;
+import annotations.TextHandler;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.annotation.Annotation;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * This annotation processor generates the bot's command dispatch tables at compile time. It reads every method
+ * annotated with {@link SlashHandler}, {@link TextHandler}, or {@link ComponentHandler} and writes one class for each
+ * kind of handler:
+ * <ul>
+ *     <li><code>SlashCommandDispatcher</code>, which routes slash commands by name and builds the
+ *     <code>CommandData</code> lists for the global and private commands.
+ *     <li><code>TextCommandDispatcher</code>, which routes prefixed text commands by name and records which of them
+ *     are reserved for administrators.
+ *     <li><code>ComponentDispatcher</code>, which routes buttons and selection menus by the prefix of their component
+ *     id.
+ * </ul>
+ * Each class is generated in the package of its handlers, so all the handlers of one kind must share a package. The
+ * generated classes are plain <code>switch</code> statements over strings, so dispatch needs no reflection and no
+ * classpath scanning at startup.
+ * <p>
+ * Mistakes such as a duplicate command name, an unsupported parameter type, or a description Discord would reject are
+ * reported as compile errors on the offending method.
+ */
+@SupportedAnnotationTypes({
+        "annotations.SlashHandler",
+        "annotations.TextHandler",
+        "annotations.ComponentHandler"
+})
+public class CommandProcessor extends AbstractProcessor {
+    private static final String SLASH_EVENT = "net.dv8tion.jda.api.events.interaction.SlashCommandEvent";
+    private static final String BUTTON_EVENT = "net.dv8tion.jda.api.events.interaction.ButtonClickEvent";
+    private static final String SELECTION_EVENT = "net.dv8tion.jda.api.events.interaction.SelectionMenuEvent";
+    private static final String MESSAGE = "net.dv8tion.jda.api.entities.Message";
+    private static final String OPTION_TYPE = "net.dv8tion.jda.api.interactions.commands.OptionType";
+    private static final String COMMAND_ARGS = "commands.text.CommandArgs";
+    private static final String COMMAND_REPLY = "commands.text.CommandReply";
+    private static final String COMMAND_CONTEXT = "commands.CommandContext";
+    private static final String TEXT_REPLY_SINK = "commands.text.TextReplySink";
+
+    /**
+     * The return types of text handlers that a <code>ReplySink</code> can send directly. Handlers returning anything
+     * else can only run through JDA.
+     */
+    private static final Set<String> SINK_TYPES = Set.of(
+            "java.lang.String", MESSAGE, "net.dv8tion.jda.api.EmbedBuilder");
+
+    /**
+     * Discord's rules for slash command, subcommand, and option names.
+     */
+    private static final Pattern SLASH_NAME = Pattern.compile("^[a-z0-9_-]{1,32}$");
+
+    /**
+     * The maximum length of a slash command description.
+     */
+    private static final int MAX_DESCRIPTION_LENGTH = 100;
+
+    /**
+     * The dispatch tables are generated once, in the first round that contains handlers. Every handler is declared in
+     * the original sources, so they are all present in that round.
+     */
+    private boolean generated = false;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        if (generated || annotations.isEmpty())
+            return false;
+        generated = true;
+
+        List<ExecutableElement> slash = getHandlers(round, SlashHandler.class);
+        List<ExecutableElement> text = getHandlers(round, TextHandler.class);
+        List<ExecutableElement> components = getHandlers(round, ComponentHandler.class);
+
+        if (!slash.isEmpty())
+            writeSlashDispatcher(slash);
+        if (!text.isEmpty())
+            writeTextDispatcher(text);
+        if (!components.isEmpty())
+            writeComponentDispatcher(components);
+
+        return true;
+    }
+
+    /**
+     * Get the methods annotated with a handler annotation, checking that each one is <code>static</code> and not
+     * <code>private</code> so that the generated class can call it.
+     *
+     * @param round      the current round
+     * @param annotation the handler annotation
+     * @return the valid handler methods, in source order
+     */
+    private List<ExecutableElement> getHandlers(RoundEnvironment round, Class<? extends Annotation> annotation) {
+        List<ExecutableElement> handlers = new ArrayList<>();
+
+        for (Element element : round.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.METHOD)
+                continue;
+
+            Set<Modifier> modifiers = element.getModifiers();
+            if (!modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE))
+                error(element, "@" + annotation.getSimpleName() + " methods must be static and not private");
+            else
+                handlers.add((ExecutableElement) element);
+        }
+
+        return handlers;
+    }
+
+    // ================ Slash commands ================
+
+    private void writeSlashDispatcher(List<ExecutableElement> handlers) {
+        Set<String> names = new HashSet<>();
+        List<String> cases = new ArrayList<>();
+        List<String> contextCases = new ArrayList<>();
+        List<String> global = new ArrayList<>();
+        List<String> restricted = new ArrayList<>();
+
+        for (ExecutableElement method : handlers) {
+            SlashHandler handler = method.getAnnotation(SlashHandler.class);
+
+            boolean takesContext = hasParameters(method, COMMAND_CONTEXT);
+            if (!takesContext && !hasParameters(method, SLASH_EVENT)) {
+                error(method, "@SlashHandler methods must take a single SlashCommandEvent or CommandContext");
+                continue;
+            }
+            if (!names.add(handler.name())) {
+                error(method, "Duplicate slash command '" + handler.name() + "'");
+                continue;
+            }
+            checkSlashName(method, handler.name(), handler.description());
+
+            if (takesContext) {
+                cases.add("case " + literal(handler.name()) + " -> " + call(method, "CommandContext.of(event)") + ";");
+                contextCases.add("case " + literal(handler.name()) + " -> " + call(method, "context") + ";");
+            } else
+                cases.add("case " + literal(handler.name()) + " -> " + call(method, "event") + ";");
+
+            (handler.scope() == SlashHandler.Scope.GLOBAL ? global : restricted).add(commandData(method, handler));
+        }
+
+        String pkg = getPackage(handlers);
+        if (pkg == null)
+            return;
+
+        try (PrintWriter out = createSource(pkg, "SlashCommandDispatcher", handlers)) {
+            out.println("package " + pkg + ";");
+            out.println();
+            out.println("import " + COMMAND_CONTEXT + ";");
+            out.println("import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;");
+            out.println("import net.dv8tion.jda.api.interactions.commands.OptionType;");
+            out.println("import net.dv8tion.jda.api.interactions.commands.build.CommandData;");
+            out.println("import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;");
+            out.println();
+            out.println("import java.util.ArrayList;");
+            out.println("import java.util.List;");
+            out.println();
+            writeClassHeader(out, "SlashCommandDispatcher", "@SlashHandler");
+            out.println();
+            out.println("    /**");
+            out.println("     * Call the handler for a slash command.");
+            out.println("     *");
+            out.println("     * @param event the slash command event");
+            out.println("     * @return true if a handler was found; false if the command is unknown");
+            out.println("     */");
+            out.println("    public static boolean dispatch(SlashCommandEvent event) {");
+            writeSwitch(out, "event.getName()", cases);
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * Call the handler for a slash command without a SlashCommandEvent. Only handlers that take a");
+            out.println("     * CommandContext can be called this way.");
+            out.println("     *");
+            out.println("     * @param context the command context");
+            out.println("     * @return true if a handler was found; false if the command is unknown or needs an event");
+            out.println("     */");
+            out.println("    public static boolean dispatch(CommandContext context) {");
+            writeSwitch(out, "context.command()", contextCases);
+            out.println("    }");
+            out.println();
+            writeCommandList(out, "getGlobalCommands", "global slash commands available in all servers and DMs",
+                    global);
+            out.println();
+            writeCommandList(out, "getPrivateCommands", "private slash commands for StatsBot Central", restricted);
+            out.println("}");
+        } catch (IOException e) {
+            error(handlers.get(0), "Failed to write SlashCommandDispatcher: " + e);
+        }
+    }
+
+    private void writeCommandList(PrintWriter out, String method, String description, List<String> commands) {
+        out.println("    /**");
+        out.println("     * @return a new list of the " + description);
+        out.println("     */");
+        out.println("    public static List<CommandData> " + method + "() {");
+        out.println("        List<CommandData> list = new ArrayList<>();");
+        for (String command : commands)
+            out.println("        list.add(" + command + ");");
+        out.println("        return list;");
+        out.println("    }");
+    }
+
+    /**
+     * Build the Java expression that creates the <code>CommandData</code> for a slash command.
+     */
+    private String commandData(ExecutableElement method, SlashHandler handler) {
+        StringBuilder s = new StringBuilder("new CommandData(")
+                .append(literal(handler.name())).append(", ").append(literal(handler.description())).append(")");
+
+        if (handler.subcommands().length > 0) {
+            if (handler.options().length > 0)
+                error(method, "Slash commands with subcommands cannot have options of their own");
+
+            StringJoiner subcommands = new StringJoiner(",", "\n                .addSubcommands(", ")");
+            for (Subcommand subcommand : handler.subcommands()) {
+                checkSlashName(method, subcommand.name(), subcommand.description());
+                subcommands.add("\n                        new SubcommandData(" + literal(subcommand.name()) + ", "
+                                + literal(subcommand.description()) + ")"
+                                + options(method, subcommand.options(), "\n                                "));
+            }
+            s.append(subcommands);
+        }
+
+        s.append(options(method, handler.options(), "\n                "));
+
+        if (!handler.defaultEnabled())
+            s.append("\n                .setDefaultEnabled(false)");
+
+        return s.toString();
+    }
+
+    /**
+     * Build the <code>addOption()</code> calls for a command or subcommand.
+     */
+    private String options(ExecutableElement method, Option[] options, String indent) {
+        Set<String> optionTypes = getOptionTypes();
+        StringBuilder s = new StringBuilder();
+
+        for (Option option : options) {
+            checkSlashName(method, option.name(), option.description());
+            if (optionTypes != null && !optionTypes.contains(option.type()))
+                error(method, "Unknown option type '" + option.type() + "'");
+
+            s.append(indent).append(".addOption(OptionType.").append(option.type()).append(", ")
+                    .append(literal(option.name())).append(", ")
+                    .append(literal(option.description())).append(", ")
+                    .append(option.required()).append(")");
+        }
+
+        return s.toString();
+    }
+
+    private void checkSlashName(Element element, String name, String description) {
+        if (!SLASH_NAME.matcher(name).matches())
+            error(element, "'" + name + "' is not a valid slash command name");
+        if (description.isEmpty() || description.length() > MAX_DESCRIPTION_LENGTH)
+            error(element, "The description of '" + name + "' must be 1-" + MAX_DESCRIPTION_LENGTH + " characters");
+    }
+
+    /**
+     * @return the names of the <code>OptionType</code> constants, or <code>null</code> if JDA isn't on the classpath
+     */
+    private Set<String> getOptionTypes() {
+        TypeElement type = processingEnv.getElementUtils().getTypeElement(OPTION_TYPE);
+        if (type == null)
+            return null;
+
+        Set<String> names = new HashSet<>();
+        for (Element element : type.getEnclosedElements())
+            if (element.getKind() == ElementKind.ENUM_CONSTANT)
+                names.add(element.getSimpleName().toString());
+        return names;
+    }
+
+    // ================ Text commands ================
+
+    private void writeTextDispatcher(List<ExecutableElement> handlers) {
+        Set<String> names = new HashSet<>();
+        List<String> cases = new ArrayList<>();
+        List<String> contextCases = new ArrayList<>();
+        List<String> admin = new ArrayList<>();
+
+        for (ExecutableElement method : handlers) {
+            TextHandler handler = method.getAnnotation(TextHandler.class);
+            String name = literal(handler.name());
+
+            if (!names.add(handler.name())) {
+                error(method, "Duplicate text command '" + handler.name() + "'");
+                continue;
+            }
+
+            // The arguments for the call through JDA, and for the call with only a CommandContext (if possible)
+            List<String> arguments = new ArrayList<>();
+            List<String> contextArguments = new ArrayList<>();
+            boolean takesContext = false;
+            boolean needsMessage = false;
+
+            for (VariableElement parameter : method.getParameters()) {
+                String type = parameter.asType().toString();
+                if (type.equals(MESSAGE)) {
+                    arguments.add("message");
+                    needsMessage = true;
+                } else if (type.equals(COMMAND_ARGS)) {
+                    arguments.add("args");
+                    contextArguments.add("context.args()");
+                } else if (type.equals(COMMAND_CONTEXT)) {
+                    arguments.add("CommandContext.of(message, args, sink)");
+                    contextArguments.add("context");
+                    takesContext = true;
+                } else
+                    error(parameter, "@TextHandler parameters must be a Message, CommandArgs, or CommandContext");
+            }
+
+            String returnType = method.getReturnType().toString();
+            boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+            if (isVoid && !takesContext) {
+                error(method, "@TextHandler methods must return a reply, or take a CommandContext to reply through");
+                continue;
+            }
+
+            // Through JDA, the reply is either returned by the handler or captured by a TextReplySink
+            String call = call(method, arguments.toArray(new String[0]));
+            StringBuilder body = new StringBuilder("case " + name + " -> {");
+            if (takesContext)
+                body.append("\n                TextReplySink sink = new TextReplySink(message);");
+            if (isVoid)
+                body.append("\n                ").append(call).append(";")
+                        .append("\n                return sink.toCommandReply(").append(name).append(");");
+            else if (returnType.equals(COMMAND_REPLY))
+                body.append("\n                return ").append(call).append(";");
+            else
+                body.append("\n                return CommandReply.ofReply(").append(name).append(", ").append(call)
+                        .append(", message);");
+            cases.add(body.append("\n            }").toString());
+
+            // Without JDA, the reply is sent to the context's ReplySink
+            if (!needsMessage && (isVoid || SINK_TYPES.contains(returnType))) {
+                String contextCall = call(method, contextArguments.toArray(new String[0]));
+                contextCases.add("case " + name + " -> " +
+                                 (isVoid ? contextCall : "context.replies().reply(" + contextCall + ", false)") + ";");
+            }
+
+            if (handler.admin())
+                admin.add(name);
+        }
+
+        String pkg = getPackage(handlers);
+        if (pkg == null)
+            return;
+
+        try (PrintWriter out = createSource(pkg, "TextCommandDispatcher", handlers)) {
+            out.println("package " + pkg + ";");
+            out.println();
+            out.println("import " + COMMAND_CONTEXT + ";");
+            out.println("import " + COMMAND_ARGS + ";");
+            out.println("import " + COMMAND_REPLY + ";");
+            out.println("import " + TEXT_REPLY_SINK + ";");
+            out.println("import " + MESSAGE + ";");
+            out.println();
+            writeClassHeader(out, "TextCommandDispatcher", "@TextHandler");
+            out.println();
+            out.println("    /**");
+            out.println("     * Call the handler for a text command.");
+            out.println("     *");
+            out.println("     * @param name    the command name in lowercase");
+            out.println("     * @param message the message containing the command");
+            out.println("     * @param args    the command arguments");
+            out.println("     * @return the reply, or null if the command is unknown");
+            out.println("     */");
+            out.println("    public static CommandReply dispatch(String name, Message message, CommandArgs args) {");
+            writeSwitch(out, "name", cases, "return null;");
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * Call the handler for a text command without a Message, sending the reply to the context's");
+            out.println("     * ReplySink. Handlers that need the Message can't be called this way.");
+            out.println("     *");
+            out.println("     * @param context the command context");
+            out.println("     * @return true if a handler was found; false if the command is unknown or needs a Message");
+            out.println("     */");
+            out.println("    public static boolean dispatch(CommandContext context) {");
+            writeSwitch(out, "context.command()", contextCases);
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * Check whether a text command is reserved for administrators.");
+            out.println("     *");
+            out.println("     * @param name the command name in lowercase");
+            out.println("     * @return true if only administrators may use the command");
+            out.println("     */");
+            out.println("    public static boolean isAdminOnly(String name) {");
+            if (admin.isEmpty())
+                out.println("        return false;");
+            else {
+                out.println("        return switch (name) {");
+                out.println("            case " + String.join(", ", admin) + " -> true;");
+                out.println("            default -> false;");
+                out.println("        };");
+            }
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            error(handlers.get(0), "Failed to write TextCommandDispatcher: " + e);
+        }
+    }
+
+    // ================ Components ================
+
+    private void writeComponentDispatcher(List<ExecutableElement> handlers) {
+        Set<String> buttonPrefixes = new HashSet<>();
+        Set<String> selectionPrefixes = new HashSet<>();
+        List<String> buttons = new ArrayList<>();
+        List<String> selections = new ArrayList<>();
+
+        for (ExecutableElement method : handlers) {
+            String prefix = method.getAnnotation(ComponentHandler.class).value();
+            if (prefix.isEmpty() || prefix.contains(":")) {
+                error(method, "Component id prefixes must be non-empty and cannot contain ':'");
+                continue;
+            }
+
+            Set<String> prefixes;
+            List<String> cases;
+            if (hasParameters(method, BUTTON_EVENT)) {
+                prefixes = buttonPrefixes;
+                cases = buttons;
+            } else if (hasParameters(method, SELECTION_EVENT)) {
+                prefixes = selectionPrefixes;
+                cases = selections;
+            } else {
+                error(method, "@ComponentHandler methods must take a single ButtonClickEvent or SelectionMenuEvent");
+                continue;
+            }
+
+            if (!prefixes.add(prefix))
+                error(method, "Duplicate component handler for '" + prefix + "'");
+            else
+                cases.add("case " + literal(prefix) + " -> " + call(method, "event") + ";");
+        }
+
+        String pkg = getPackage(handlers);
+        if (pkg == null)
+            return;
+
+        try (PrintWriter out = createSource(pkg, "ComponentDispatcher", handlers)) {
+            out.println("package " + pkg + ";");
+            out.println();
+            out.println("import " + BUTTON_EVENT + ";");
+            out.println("import " + SELECTION_EVENT + ";");
+            out.println();
+            writeClassHeader(out, "ComponentDispatcher", "@ComponentHandler");
+            out.println();
+            out.println("    /**");
+            out.println("     * Call the handler for a button, based on the prefix of its component id.");
+            out.println("     *");
+            out.println("     * @param event the button click event");
+            out.println("     * @return true if a handler was found; false if the button is unknown");
+            out.println("     */");
+            out.println("    public static boolean dispatch(ButtonClickEvent event) {");
+            writeSwitch(out, "getPrefix(event.getComponentId())", buttons);
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * Call the handler for a selection menu, based on the prefix of its component id.");
+            out.println("     *");
+            out.println("     * @param event the selection menu event");
+            out.println("     * @return true if a handler was found; false if the selection menu is unknown");
+            out.println("     */");
+            out.println("    public static boolean dispatch(SelectionMenuEvent event) {");
+            writeSwitch(out, "getPrefix(event.getComponentId())", selections);
+            out.println("    }");
+            out.println();
+            out.println("    private static String getPrefix(String componentId) {");
+            out.println("        int end = componentId.indexOf(':');");
+            out.println("        return end < 0 ? componentId : componentId.substring(0, end);");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            error(handlers.get(0), "Failed to write ComponentDispatcher: " + e);
+        }
+    }
+
+    // ================ Utilities ================
+
+    /**
+     * Write a <code>switch</code> statement that returns <code>true</code> after running a matching case and
+     * <code>false</code> otherwise.
+     */
+    private static void writeSwitch(PrintWriter out, String selector, List<String> cases) {
+        if (cases.isEmpty()) {
+            out.println("        return false;");
+            return;
+        }
+
+        writeSwitch(out, selector, cases, "return false;");
+        out.println("        return true;");
+    }
+
+    private static void writeSwitch(PrintWriter out, String selector, List<String> cases, String otherwise) {
+        out.println("        switch (" + selector + ") {");
+        for (String c : cases)
+            out.println("            " + c);
+        out.println("            default -> {");
+        out.println("                " + otherwise);
+        out.println("            }");
+        out.println("        }");
+    }
+
+    private static void writeClassHeader(PrintWriter out, String name, String annotation) {
+        out.println("/**");
+        out.println(" * This class is generated by <code>processor.CommandProcessor</code> from the " + annotation
+                    + " methods in this package.");
+        out.println(" * Do not edit it by hand.");
+        out.println(" */");
+        out.println("@javax.annotation.processing.Generated(\"processor.CommandProcessor\")");
+        out.println("public final class " + name + " {");
+        out.println("    private " + name + "() {");
+        out.println("    }");
+    }
+
+    private PrintWriter createSource(String pkg, String name, List<ExecutableElement> handlers) throws IOException {
+        Element[] origins = handlers.stream().map(Element::getEnclosingElement).distinct().toArray(Element[]::new);
+        return new PrintWriter(processingEnv.getFiler().createSourceFile(pkg + "." + name, origins).openWriter());
+    }
+
+    /**
+     * Get the package that all the given handlers are declared in. If they are spread across several packages, an
+     * error is reported and <code>null</code> is returned.
+     */
+    private String getPackage(List<ExecutableElement> handlers) {
+        String pkg = null;
+        for (ExecutableElement method : handlers) {
+            String p = processingEnv.getElementUtils().getPackageOf(method).getQualifiedName().toString();
+            if (pkg == null)
+                pkg = p;
+            else if (!pkg.equals(p)) {
+                error(method, "All handlers of the same kind must be in one package (expected " + pkg + ")");
+                return null;
+            }
+        }
+        return pkg;
+    }
+
+    private static boolean hasParameters(ExecutableElement method, String... types) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        if (parameters.size() != types.length)
+            return false;
+        for (int i = 0; i < types.length; i++)
+            if (!parameters.get(i).asType().toString().equals(types[i]))
+                return false;
+        return true;
+    }
+
+    private static String call(ExecutableElement method, String... arguments) {
+        return method.getEnclosingElement().getSimpleName() + "." + method.getSimpleName()
+               + "(" + String.join(", ", arguments) + ")";
+    }
+
+    /**
+     * Convert a string to a Java string literal.
+     */
+    private static String literal(String s) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\t' -> literal.append("\\t");
+                default -> {
+                    if (c < 0x20 || c > 0x7e)
+                        literal.append(String.format("\\u%04x", (int) c));
+                    else
+                        literal.append(c);
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import data.Colors;
+import main.Utils;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * These benchmarks cover building embeds with {@link Utils#makeEmbed}, which nearly every response from the bot goes
+ * through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EmbedBenchmark {
+    private static final String DESCRIPTION =
+            "Looking for answers to common questions? Check out this handy AP Stats FAQ. It's based on data " +
+            "from a survey of over 100 past students.";
+
+    private MessageEmbed.Field[] fields;
+
+    @Setup
+    public void setup() {
+        fields = new MessageEmbed.Field[5];
+        for (int i = 0; i < fields.length; i++)
+            fields[i] = Utils.makeField("Field " + i, "1. Question one\n2. Question two\n3. Question three");
+    }
+
+    @Benchmark
+    public EmbedBuilder makeEmbed() {
+        return Utils.makeEmbed("Frequently Asked Questions", DESCRIPTION, Colors.INFO);
+    }
+
+    @Benchmark
+    public MessageEmbed makeEmbedWithFields() {
+        return Utils.makeEmbed("Frequently Asked Questions", DESCRIPTION, Colors.INFO, fields).build();
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.*;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * This creates lightweight stand-ins for the JDA entities that the benchmarks need. Each entity is a dynamic {@link
+ * Proxy} of its JDA interface that answers a handful of getters from a fixed map and returns <code>null</code> (or
+ * zero) for everything else. The events themselves are real JDA event objects built from these entities, so the code
+ * under test runs exactly as it would for an event from Discord.
+ * <p>
+ * Anything that would make a request to Discord (such as sending a reply) returns <code>null</code>, so benchmarks must
+ * stick to paths that don't respond to the message.
+ */
+final class JDAStubs {
+    static final JDA JDA = stub(JDA.class, Map.of());
+
+    private JDAStubs() {
+    }
+
+    static Guild guild(long id) {
+        return stub(Guild.class, Map.of("getIdLong", id, "getName", "Guild " + id));
+    }
+
+    static TextChannel textChannel(long id, Guild guild) {
+        return stub(TextChannel.class, Map.of(
+                "getIdLong", id,
+                "getName", "channel-" + id,
+                "getType", ChannelType.TEXT,
+                "getGuild", guild));
+    }
+
+    static PrivateChannel privateChannel(long id) {
+        return stub(PrivateChannel.class, Map.of("getIdLong", id, "getType", ChannelType.PRIVATE));
+    }
+
+    static User user(long id) {
+        return stub(User.class, Map.of("getIdLong", id, "getName", "User " + id, "isBot", false));
+    }
+
+    static Message message(long id, String content, MessageChannel channel, User author) {
+        return stub(Message.class, Map.of(
+                "getIdLong", id,
+                "getContentRaw", content,
+                "getContentDisplay", content,
+                "getChannel", channel,
+                "getAuthor", author,
+                "getJDA", JDA));
+    }
+
+    static MessageReceivedEvent messageReceived(Message message) {
+        return new MessageReceivedEvent(JDA, 0, message);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Object> values) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object value = values.get(method.getName());
+            if (value != null)
+                return value;
+
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "toString" -> type.getSimpleName() + values;
+                default -> defaultValue(method.getReturnType());
+            };
+        };
+
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class)
+            return null;
+        if (type == boolean.class)
+            return false;
+        if (type == char.class)
+            return '\0';
+        if (type == long.class)
+            return 0L;
+        if (type == float.class)
+            return 0f;
+        if (type == double.class)
+            return 0d;
+        if (type == int.class)
+            return 0;
+        if (type == short.class)
+            return (short) 0;
+        return (byte) 0;
+    }
+}
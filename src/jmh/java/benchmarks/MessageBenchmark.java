@@ -0,0 +1,114 @@
+package benchmarks;
+
+import commands.text.CommandArgs;
+import commands.text.CommandManager;
+import data.ID;
+import data.Setting;
+import events.OnMessage;
+import main.BotMode;
+import main.RoutingTable;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * These benchmarks cover the work done for every incoming message: routing it according to the {@link BotMode},
+ * matching it against the {@link OnMessage} rules, and checking it for the command prefix.
+ * <p>
+ * None of the messages here cause the bot to respond, as responding would make a request to Discord. That is also the
+ * common case: the vast majority of messages the bot sees are ordinary conversation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageBenchmark {
+    private RoutingTable routes;
+    private OnMessage onMessage;
+
+    /**
+     * An ordinary message in #apstats, where the bot responds to messages
+     */
+    private MessageReceivedEvent allowed;
+
+    /**
+     * An ordinary message in an AP Students channel where the bot ignores messages
+     */
+    private MessageReceivedEvent ignored;
+
+    /**
+     * An ordinary direct message
+     */
+    private MessageReceivedEvent direct;
+
+    /**
+     * A message that matches a dad bot prefix, which is checked but doesn't get a response
+     */
+    private MessageReceivedEvent dadBot;
+
+    private String command;
+
+    @Setup
+    public void setup() {
+        Setting.importSettings();
+        Setting.DAD_BOT_CHANCE = 0;
+        OnMessage.loadRules();
+
+        routes = RoutingTable.compile(BotMode.running());
+        onMessage = new OnMessage();
+
+        Guild apStudents = JDAStubs.guild(ID.AP_STUDENTS_GUILD);
+        User author = JDAStubs.user(123456789012345678L);
+        String text = "does anyone know how to find the standard error of a sample proportion?";
+
+        allowed = JDAStubs.messageReceived(JDAStubs.message(
+                1L, text, JDAStubs.textChannel(ID.BOT_COMMANDS_CHANNEL, apStudents), author));
+        ignored = JDAStubs.messageReceived(JDAStubs.message(
+                2L, text, JDAStubs.textChannel(181970867549503490L, apStudents), author));
+        direct = JDAStubs.messageReceived(JDAStubs.message(
+                3L, text, JDAStubs.privateChannel(876543210987654321L), author));
+        dadBot = JDAStubs.messageReceived(JDAStubs.message(
+                4L, "i'm so confused about this", JDAStubs.textChannel(ID.BOT_COMMANDS_CHANNEL, apStudents), author));
+
+        command = Setting.PREFIX + "faq 12";
+    }
+
+    @Benchmark
+    public boolean routeAllowedChannel() {
+        return routes.accepts(allowed);
+    }
+
+    @Benchmark
+    public boolean routeIgnoredChannel() {
+        return routes.accepts(ignored);
+    }
+
+    @Benchmark
+    public boolean routeDirectMessage() {
+        return routes.accepts(direct);
+    }
+
+    @Benchmark
+    public void onMessageReceived() {
+        onMessage.onMessageReceived(allowed);
+    }
+
+    @Benchmark
+    public void onMessageReceivedDadBot() {
+        onMessage.onMessageReceived(dadBot);
+    }
+
+    @Benchmark
+    public void commandManagerNotCommand() {
+        CommandManager.onMessageReceived(allowed);
+    }
+
+    @Benchmark
+    public CommandArgs parseCommand() {
+        return CommandArgs.parse(command, Setting.PREFIX);
+    }
+}
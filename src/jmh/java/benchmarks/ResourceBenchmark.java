@@ -0,0 +1,87 @@
+package benchmarks;
+
+import announcements.AnnouncementLoader;
+import ch.qos.logback.classic.Level;
+import commands.faq.FAQCatalog;
+import commands.faq.FAQEntry;
+import commands.faq.FAQLoader;
+import commands.slash.Diagram;
+import main.CsvReader;
+import main.Resources;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * These benchmarks cover lookups in the bot's resources (the FAQ, diagrams, and announcements) and the parsing of the
+ * FAQ table of contents.
+ * <p>
+ * The diagram lookups use a synthetic list of {@link #DIAGRAM_COUNT} diagrams, as the real list is small enough that
+ * its lookups would be dominated by noise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResourceBenchmark {
+    private static final int DIAGRAM_COUNT = 50;
+
+    private static final String FAQ_LINE =
+            "question,How do I calculate the standard deviation of a sampling distribution?,h.3znysh7";
+
+    private List<CsvReader.Row> faqRows;
+    private String lastDiagramValue;
+    private String lastDiagramLink;
+
+    @Setup
+    public void setup() throws IOException {
+        // Loading the FAQ logs a message each time, which would drown out the benchmark output
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        faqRows = Resources.readCsv("/faq.csv", null, FAQCatalog.COLUMNS).rows();
+        FAQLoader.loadFAQ();
+        AnnouncementLoader.loadAnnouncements();
+
+        Diagram.diagrams.clear();
+        for (int i = 0; i < DIAGRAM_COUNT; i++)
+            Diagram.diagrams.add(new Diagram(
+                    "Diagram " + i,
+                    "/diagrams/diagram-" + i + ".png",
+                    "diagram-" + i,
+                    "8701138946376581" + (10 + i) + "/diagram-" + i + ".png"));
+
+        Diagram last = Diagram.diagrams.get(DIAGRAM_COUNT - 1);
+        lastDiagramValue = last.value();
+        lastDiagramLink = last.getFullLink();
+    }
+
+    @Benchmark
+    public FAQEntry parseFAQEntry() {
+        return FAQEntry.of(FAQ_LINE);
+    }
+
+    @Benchmark
+    public FAQCatalog parseFAQCatalog() {
+        return FAQCatalog.parse(faqRows);
+    }
+
+    @Benchmark
+    public Diagram getDiagram() {
+        return Diagram.getDiagram(lastDiagramValue);
+    }
+
+    @Benchmark
+    public Diagram getDiagramFromLink() {
+        return Diagram.getDiagramFromLink(lastDiagramLink);
+    }
+
+    @Benchmark
+    public int getRandomAnnouncementId() {
+        return AnnouncementLoader.getRandomId();
+    }
+}
@@ -0,0 +1,345 @@
+package loadtest;
+
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is a local stand-in for the Discord gateway. It accepts a websocket connection from JDA, completes the
+ * handshake (<code>HELLO</code>, <code>IDENTIFY</code>, <code>READY</code>), and then {@link #dispatch(String,
+ * DataObject) dispatches} whatever events the load test generates.
+ * <p>
+ * The websocket protocol is implemented directly on a {@link ServerSocket}, as only the small part of RFC 6455 that
+ * JDA uses is needed: uncompressed text frames, pings, and close frames. Only one connection (one shard) is served at
+ * a time. If JDA reconnects, the new connection replaces the old one and is sent a fresh <code>READY</code>.
+ * <p>
+ * The session sent after <code>IDENTIFY</code> is either the synthetic guilds from {@link Payloads}, or the
+ * <code>READY</code> and <code>GUILD_CREATE</code> payloads from a recorded {@link main.EventLog EventLog}.
+ */
+public class FakeGateway implements Closeable {
+    private static final Logger LOG = JDALogger.getLog(FakeGateway.class);
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private static final int OP_DISPATCH = 0;
+    private static final int OP_HEARTBEAT = 1;
+    private static final int OP_IDENTIFY = 2;
+    private static final int OP_RESUME = 6;
+    private static final int OP_INVALID_SESSION = 9;
+    private static final int OP_HELLO = 10;
+    private static final int OP_HEARTBEAT_ACK = 11;
+
+    private static final int FRAME_CONTINUATION = 0x0;
+    private static final int FRAME_TEXT = 0x1;
+    private static final int FRAME_CLOSE = 0x8;
+    private static final int FRAME_PING = 0x9;
+    private static final int FRAME_PONG = 0xA;
+
+    private final List<byte[]> session;
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private volatile Connection connection;
+
+    /**
+     * Create a gateway that sends the synthetic session from {@link Payloads}.
+     */
+    public FakeGateway() throws IOException {
+        this(Payloads.session());
+    }
+
+    /**
+     * Create a gateway that sends the given session.
+     *
+     * @param session the raw dispatch payloads to send after JDA identifies, starting with <code>READY</code>
+     */
+    public FakeGateway(List<byte[]> session) throws IOException {
+        this.session = session;
+        this.server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::accept, "FakeGateway-Acceptor");
+        acceptor.setDaemon(true);
+    }
+
+    public void start() {
+        acceptor.start();
+        LOG.info("Fake gateway listening at " + getUrl());
+    }
+
+    public String getUrl() {
+        return "ws://127.0.0.1:" + server.getLocalPort();
+    }
+
+    /**
+     * Wait until JDA has identified and been sent the <code>READY</code> event and the guilds.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return <code>true</code> if the session is ready; <code>false</code> if the timeout elapsed first
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return ready.await(timeout, unit);
+    }
+
+    /**
+     * Send a dispatch event to JDA over the current connection. This blocks if JDA is not keeping up with the events,
+     * the same as it would for a real gateway connection.
+     *
+     * @param type the event type, such as <code>MESSAGE_CREATE</code>
+     * @param data the event data
+     * @throws IOException if there is no connection, or it was closed
+     */
+    public void dispatch(String type, DataObject data) throws IOException {
+        Connection current = connection;
+        if (current == null)
+            throw new IOException("JDA is not connected to the gateway");
+        current.dispatch(type, data);
+    }
+
+    /**
+     * Send a raw payload, such as one from a recorded {@link main.EventLog EventLog}, to JDA over the current
+     * connection. Its sequence number is replaced with the next one on this connection, so that recorded events and
+     * events sent with {@link #dispatch(String, DataObject)} can be mixed without reusing sequence numbers.
+     *
+     * @param payload the payload, as UTF-8 JSON
+     * @throws IOException if there is no connection, or it was closed
+     */
+    public void dispatchRaw(byte[] payload) throws IOException {
+        Connection current = connection;
+        if (current == null)
+            throw new IOException("JDA is not connected to the gateway");
+        current.dispatchRaw(payload);
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        Connection current = connection;
+        if (current != null)
+            current.socket.close();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+
+                Connection next = new Connection(socket);
+                Connection previous = connection;
+                connection = next;
+                if (previous != null)
+                    previous.socket.close();
+
+                Thread reader = new Thread(next::run, "FakeGateway-Connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!server.isClosed())
+                    LOG.error("Failed to accept gateway connection", e);
+            }
+        }
+    }
+
+    /**
+     * A single websocket connection from JDA.
+     */
+    private class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        void run() {
+            try {
+                handshake();
+                send(DataObject.empty()
+                        .put("op", OP_HELLO)
+                        .put("d", DataObject.empty().put("heartbeat_interval", 41250)));
+
+                String message;
+                while ((message = readMessage()) != null)
+                    receive(DataObject.fromJson(message));
+
+            } catch (SocketException | EOFException e) {
+                // The connection was closed, by JDA or by a newer connection
+            } catch (IOException e) {
+                LOG.error("Gateway connection failed", e);
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void receive(DataObject payload) throws IOException {
+            switch (payload.getInt("op")) {
+                case OP_HEARTBEAT -> send(DataObject.empty().put("op", OP_HEARTBEAT_ACK));
+                case OP_IDENTIFY -> {
+                    synchronized (out) {
+                        for (byte[] event : session)
+                            writeFrame(FRAME_TEXT, event);
+                        sequence.set(session.size());
+                    }
+                    ready.countDown();
+                }
+                // Sessions aren't kept, so JDA has to identify again
+                case OP_RESUME -> send(DataObject.empty().put("op", OP_INVALID_SESSION).put("d", false));
+                default -> {
+                    // Presence updates and other requests don't need a response
+                }
+            }
+        }
+
+        void dispatch(String type, DataObject data) throws IOException {
+            // The sequence number must match the order the events are written, so take it inside the write lock
+            synchronized (out) {
+                send(DataObject.empty()
+                        .put("op", OP_DISPATCH)
+                        .put("t", type)
+                        .put("s", sequence.incrementAndGet())
+                        .put("d", data));
+            }
+        }
+
+        void dispatchRaw(byte[] payload) throws IOException {
+            DataObject event = DataObject.fromJson(payload);
+            synchronized (out) {
+                if (event.getInt("op", OP_DISPATCH) == OP_DISPATCH)
+                    event.put("s", sequence.incrementAndGet());
+                send(event);
+            }
+        }
+
+        private void send(DataObject payload) throws IOException {
+            writeFrame(FRAME_TEXT, payload.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Read the HTTP upgrade request and accept it.
+         */
+        private void handshake() throws IOException {
+            String key = null;
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty())
+                if (line.toLowerCase(Locale.ROOT).startsWith("sec-websocket-key:"))
+                    key = line.substring(line.indexOf(':') + 1).trim();
+
+            if (key == null)
+                throw new IOException("Gateway connection is not a websocket upgrade");
+
+            String accept;
+            try {
+                accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                        .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-1 is not available", e);
+            }
+
+            synchronized (out) {
+                out.write(("HTTP/1.1 101 Switching Protocols\r\n" +
+                           "Upgrade: websocket\r\n" +
+                           "Connection: Upgrade\r\n" +
+                           "Sec-WebSocket-Accept: " + accept + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n')
+                if (b != '\r')
+                    line.append((char) b);
+            return b == -1 && line.length() == 0 ? null : line.toString();
+        }
+
+        /**
+         * Read the next text message, joining fragmented frames and answering control frames along the way.
+         *
+         * @return the message, or <code>null</code> if the connection was closed
+         */
+        private String readMessage() throws IOException {
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+            while (true) {
+                int header = in.readUnsignedByte();
+                boolean fin = (header & 0x80) != 0;
+                int opcode = header & 0x0F;
+
+                int second = in.readUnsignedByte();
+                long length = second & 0x7F;
+                if (length == 126)
+                    length = in.readUnsignedShort();
+                else if (length == 127)
+                    length = in.readLong();
+
+                byte[] mask = new byte[4];
+                if ((second & 0x80) != 0)
+                    in.readFully(mask);
+
+                byte[] payload = new byte[Math.toIntExact(length)];
+                in.readFully(payload);
+                for (int i = 0; i < payload.length; i++)
+                    payload[i] ^= mask[i & 3];
+
+                switch (opcode) {
+                    case FRAME_CLOSE -> {
+                        writeFrame(FRAME_CLOSE, payload);
+                        return null;
+                    }
+                    case FRAME_PING -> writeFrame(FRAME_PONG, payload);
+                    case FRAME_PONG -> {
+                    }
+                    case FRAME_TEXT, FRAME_CONTINUATION -> {
+                        message.write(payload);
+                        if (fin)
+                            return message.toString(StandardCharsets.UTF_8);
+                    }
+                    default -> throw new IOException("Unsupported websocket opcode " + opcode);
+                }
+            }
+        }
+
+        void writeFrame(int opcode, byte[] payload) throws IOException {
+            synchronized (out) {
+                out.write(0x80 | opcode);
+                if (payload.length < 126)
+                    out.write(payload.length);
+                else if (payload.length <= 0xFFFF) {
+                    out.write(126);
+                    out.write(payload.length >>> 8);
+                    out.write(payload.length);
+                } else {
+                    out.write(127);
+                    for (int shift = 56; shift >= 0; shift -= 8)
+                        out.write((int) ((long) payload.length >>> shift));
+                }
+                out.write(payload);
+                out.flush();
+            }
+        }
+    }
+}
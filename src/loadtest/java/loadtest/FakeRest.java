@@ -0,0 +1,311 @@
+package loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import data.ID;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This is a local stand-in for the Discord REST API. JDA is pointed at it through the {@link #httpClient() HTTP
+ * client}, which rewrites every request to <code>discord.com</code> to go here instead.
+ * <p>
+ * Each request is {@link #getRequests() recorded} and answered with a plausible response after a simulated network
+ * latency. Responses carry Discord's rate limit headers, and each route allows {@link Options#rateLimit()} requests
+ * per {@link Options#rateLimitWindow()} before responding with <code>429 Too Many Requests</code>, so that JDA's own
+ * rate limiter is exercised as it would be in production.
+ */
+public class FakeRest implements Closeable {
+    private static final Logger LOG = JDALogger.getLog(FakeRest.class);
+
+    private static final Pattern API_PREFIX = Pattern.compile("^/api/v\\d+/");
+    private static final Pattern CHANNEL_MESSAGES = Pattern.compile("^channels/(\\d+)/messages(?:/(\\d+))?$");
+    private static final Pattern WEBHOOK_MESSAGE = Pattern.compile("^webhooks/\\d+/[^/]+(?:/messages/[^/]+)?$");
+    private static final Pattern USER = Pattern.compile("^users/(\\d+)$");
+
+    /**
+     * The settings for the fake server.
+     *
+     * @param latency         the simulated round-trip time of each request, in milliseconds
+     * @param jitter          the maximum random variation added to the latency, in milliseconds
+     * @param rateLimit       the number of requests allowed on each route per window
+     * @param rateLimitWindow the length of the rate limit window, in milliseconds
+     */
+    public record Options(int latency, int jitter, int rateLimit, int rateLimitWindow) {
+        /**
+         * These match Discord's limit for sending messages to a channel, and a typical latency from a server in the
+         * same region.
+         */
+        public static Options defaults() {
+            return new Options(50, 20, 5, 5000);
+        }
+    }
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Queue<RecordedRequest> requests = new ConcurrentLinkedQueue<>();
+    private final LongAdder rateLimited = new LongAdder();
+    private volatile String gatewayUrl;
+    private volatile Consumer<RecordedRequest> listener = request -> {
+    };
+
+    public FakeRest(Options options) throws IOException {
+        this.options = options;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start(String gatewayUrl) {
+        this.gatewayUrl = gatewayUrl;
+        server.start();
+        LOG.info("Fake REST API listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Set a listener that is called with every request after it is answered.
+     *
+     * @param listener the listener
+     */
+    public void setListener(Consumer<RecordedRequest> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return every request received so far, in the order they were answered
+     */
+    public Queue<RecordedRequest> getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return the number of requests that were answered with <code>429 Too Many Requests</code>
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * This creates an HTTP client for JDA that sends all of its requests to this server instead of Discord.
+     *
+     * @return the client
+     */
+    public OkHttpClient httpClient() {
+        return new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    HttpUrl url = chain.request().url().newBuilder()
+                            .scheme("http")
+                            .host("127.0.0.1")
+                            .port(getPort())
+                            .build();
+                    return chain.proceed(chain.request().newBuilder().url(url).build());
+                })
+                .build();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long receivedAt = System.nanoTime();
+        String method = exchange.getRequestMethod();
+        String route = API_PREFIX.matcher(exchange.getRequestURI().getPath()).replaceFirst("");
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+        try {
+            simulateLatency();
+
+            RecordedRequest request;
+            Bucket bucket = route.startsWith("interactions/") || route.startsWith("gateway") ?
+                    null : buckets.computeIfAbsent(method + " " + majorRoute(route), Bucket::new);
+
+            if (bucket != null && !bucket.tryAcquire(exchange)) {
+                rateLimited.increment();
+                request = new RecordedRequest(method, route, body, 429, receivedAt);
+            } else {
+                Response response = respond(method, route, body);
+                send(exchange, response.status(), response.body());
+                request = new RecordedRequest(method, route, body, response.status(), receivedAt);
+            }
+
+            requests.add(request);
+            listener.accept(request);
+
+        } catch (Exception e) {
+            LOG.error("Failed to answer " + method + " " + route, e);
+            send(exchange, 500, "{\"message\": \"Internal Server Error\", \"code\": 0}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * This determines how to answer a request. Routes that return an entity get a realistic one, most of them built
+     * from the request body; anything else is acknowledged with an empty response.
+     */
+    private Response respond(String method, String route, String body) {
+        if (route.equals("gateway") || route.equals("gateway/bot"))
+            return Response.ok(Payloads.gateway(gatewayUrl));
+
+        if (route.equals("users/@me"))
+            return Response.ok(Payloads.selfUser());
+
+        if (route.equals("oauth2/applications/@me"))
+            return Response.ok(Payloads.application());
+
+        Matcher user = USER.matcher(route);
+        if (user.matches())
+            return Response.ok(Payloads.user(Long.parseLong(user.group(1)), "user" + user.group(1), false));
+
+        Matcher messages = CHANNEL_MESSAGES.matcher(route);
+        if (messages.matches()) {
+            long channelId = Long.parseLong(messages.group(1));
+            return switch (method) {
+                case "GET" -> messages.group(2) == null ?
+                        new Response(200, DataArray.empty().toString()) :
+                        Response.ok(Payloads.botMessage(Long.parseLong(messages.group(2)), channelId,
+                                DataObject.empty()));
+                case "POST" -> Response.ok(Payloads.botMessage(Payloads.nextId(), channelId, parse(body)));
+                case "PATCH" -> Response.ok(Payloads.botMessage(Long.parseLong(messages.group(2)), channelId,
+                        parse(body)));
+                default -> Response.noContent();
+            };
+        }
+
+        // Follow-up and edited interaction responses. These are sent as if in the StatsBot Central #ap-stats channel,
+        // as the response doesn't say where the interaction was used.
+        if (WEBHOOK_MESSAGE.matcher(route).matches() && !method.equals("DELETE"))
+            return Response.ok(Payloads.botMessage(Payloads.nextId(), ID.AP_STATS_STATSBOT_CHANNEL, parse(body)));
+
+        // Slash command registration returns the commands that were registered
+        if (route.endsWith("/commands") && method.equals("PUT")) {
+            DataArray commands = DataArray.fromJson(body);
+            for (int i = 0; i < commands.length(); i++)
+                commands.getObject(i)
+                        .put("id", Long.toString(Payloads.nextId()))
+                        .put("application_id", Long.toString(ID.SELF))
+                        .put("version", "1");
+            return new Response(200, commands.toString());
+        }
+
+        return method.equals("GET") ? Response.ok(DataObject.empty()) : Response.noContent();
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        int delay = options.latency();
+        if (options.jitter() > 0)
+            delay += ThreadLocalRandom.current().nextInt(options.jitter() + 1);
+        if (delay > 0)
+            Thread.sleep(delay);
+    }
+
+    /**
+     * Get the part of a route that Discord rate limits by: the endpoint, plus the id of the channel, guild, or webhook
+     * it belongs to. Other ids (such as the message being edited) share the same limit.
+     */
+    private static String majorRoute(String route) {
+        return RecordedRequest.template(route);
+    }
+
+    private static DataObject parse(String body) {
+        return body.isEmpty() ? DataObject.empty() : DataObject.fromJson(body);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private record Response(int status, String body) {
+        static Response ok(DataObject body) {
+            return new Response(200, body.toString());
+        }
+
+        static Response noContent() {
+            return new Response(204, null);
+        }
+    }
+
+    /**
+     * A fixed-window rate limit for a single route. Every response on the route carries the Discord rate limit
+     * headers, and requests over the limit are answered with a <code>429</code> here.
+     */
+    private class Bucket {
+        private final String hash;
+        private long resetAt;
+        private int remaining;
+
+        Bucket(String route) {
+            this.hash = Integer.toHexString(route.hashCode());
+        }
+
+        /**
+         * Take a request from the bucket and add the rate limit headers to the response.
+         *
+         * @return <code>true</code> if the request is allowed; <code>false</code> if a 429 response was sent
+         */
+        synchronized boolean tryAcquire(HttpExchange exchange) throws IOException {
+            long now = System.currentTimeMillis();
+            if (now >= resetAt) {
+                resetAt = now + options.rateLimitWindow();
+                remaining = options.rateLimit();
+            }
+
+            boolean allowed = remaining > 0;
+            if (allowed)
+                remaining--;
+
+            double resetAfter = (resetAt - now) / 1000.0;
+            exchange.getResponseHeaders().set("X-RateLimit-Limit", Integer.toString(options.rateLimit()));
+            exchange.getResponseHeaders().set("X-RateLimit-Remaining", Integer.toString(remaining));
+            exchange.getResponseHeaders().set("X-RateLimit-Reset", String.format(Locale.ROOT, "%.3f", resetAt / 1000.0));
+            exchange.getResponseHeaders().set("X-RateLimit-Reset-After", String.format(Locale.ROOT, "%.3f", resetAfter));
+            exchange.getResponseHeaders().set("X-RateLimit-Bucket", hash);
+
+            if (!allowed) {
+                exchange.getResponseHeaders().set("Retry-After", Long.toString((long) Math.ceil(resetAfter)));
+                exchange.getResponseHeaders().set("X-RateLimit-Scope", "user");
+                send(exchange, 429, DataObject.empty()
+                        .put("message", "You are being rate limited.")
+                        .put("retry_after", resetAfter)
+                        .put("global", false)
+                        .toString());
+            }
+
+            return allowed;
+        }
+    }
+}
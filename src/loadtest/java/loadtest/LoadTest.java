@@ -0,0 +1,232 @@
+package loadtest;
+
+import announcements.AnnouncementLoader;
+import data.ID;
+import data.Setting;
+import events.Throttle;
+import main.Main;
+import net.dv8tion.jda.api.utils.Compression;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * This runs the bot's real listener stack against the {@link FakeGateway} and {@link FakeRest} servers and measures
+ * how it holds up under load. It starts the bot with {@link Main#configure(String)}, waits for the usual startup
+ * tasks to finish, and then sends a stream of synthetic traffic:
+ * <ul>
+ *     <li>Ordinary messages in <code>#apstats</code>, which the bot reads but rarely responds to.
+ *     <li>Ordinary messages in an AP Students channel that the bot ignores.
+ *     <li><code>faq</code> text commands in <code>#bot-commands</code>, which the bot replies to.
+ *     <li><code>/faq</code> slash commands in <code>#bot-commands</code>, which the bot responds to.
+ * </ul>
+ * The reply latency of a command is the time from when its event is sent on the gateway to when the bot's response
+ * reaches the REST server. At the end, this reports the event throughput, the reply latency percentiles, and a count
+ * of the outbound requests by route.
+ * <p>
+ * Run this with <code>gradlew loadTest --args="[events] [events per second] [latency ms]"</code>. An event rate of 0
+ * sends events as fast as the bot accepts them.
+ */
+public class LoadTest {
+    private static final Logger LOG = JDALogger.getLog(LoadTest.class);
+
+    private static final Pattern MESSAGE_REPLY = Pattern.compile("^channels/\\d+/messages$");
+    private static final Pattern INTERACTION_CALLBACK = Pattern.compile("^interactions/(\\d+)/[^/]+/callback$");
+
+    private static final String[] CHAT = {
+            "does anyone know how to find the standard error of a sample proportion?",
+            "is the 2021 exam going to be online again",
+            "i'm so confused about confidence intervals",
+            "can someone check my answer for 4b? I got a p-value of 0.032",
+            "what's the difference between a stratified and a cluster sample",
+            "thanks, that makes sense now"
+    };
+
+    /**
+     * The time that each command was sent on the gateway, keyed by the id of its message or interaction. Entries are
+     * removed when the bot responds.
+     */
+    private static final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    private static final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        FakeRest.Options defaults = FakeRest.Options.defaults();
+        FakeRest.Options options = args.length > 2 ?
+                new FakeRest.Options(Integer.parseInt(args[2]), defaults.jitter(),
+                        defaults.rateLimit(), defaults.rateLimitWindow()) :
+                defaults;
+
+        try (FakeGateway gateway = new FakeGateway(); FakeRest rest = new FakeRest(options)) {
+            gateway.start();
+            rest.start(gateway.getUrl());
+            rest.setListener(LoadTest::recordReply);
+
+            Main.JDA = Main.configure("load-test-token")
+                    .setHttpClient(rest.httpClient())
+                    .setCompression(Compression.NONE)
+                    .build();
+
+            if (!gateway.awaitReady(30, TimeUnit.SECONDS))
+                throw new IllegalStateException("JDA did not identify with the fake gateway");
+            Main.JDA.awaitReady();
+            awaitStartup();
+
+            // Every synthetic command expects an answer, so lift the rate limits that would otherwise drop most of them
+            Setting.USER_RATE_LIMIT = Setting.CHANNEL_RATE_LIMIT = Setting.GLOBAL_RATE_LIMIT = Integer.MAX_VALUE / 2;
+            Throttle.loadSettings();
+
+            LOG.info("Sending " + events + " events" + (rate > 0 ? " at " + rate + "/s" : ""));
+            long start = System.nanoTime();
+            int commands = sendEvents(gateway, events, rate, start);
+            long sent = System.nanoTime();
+
+            awaitReplies(rest);
+            long finished = System.nanoTime();
+
+            report(rest, events, commands, start, sent, finished);
+        } finally {
+            if (Main.JDA != null)
+                Main.JDA.shutdownNow();
+            AnnouncementLoader.shutdown();
+        }
+    }
+
+    /**
+     * The {@link events.Startup Startup} tasks run on the event manager after the ready event. The announcement timer
+     * is started near the end, so wait for that before sending any traffic.
+     */
+    static void awaitStartup() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!AnnouncementLoader.isTimerStarted()) {
+            if (System.nanoTime() > deadline)
+                throw new IllegalStateException("Startup tasks did not finish");
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * Send the synthetic traffic on the gateway. The mix of events is the same on every run.
+     *
+     * @return the number of commands sent, each of which should get a response
+     */
+    private static int sendEvents(FakeGateway gateway, int events, int rate, long start) throws Exception {
+        Random random = new Random(42);
+        int commands = 0;
+
+        for (int i = 0; i < events; i++) {
+            if (rate > 0)
+                LockSupport.parkNanos(start + i * 1_000_000_000L / rate - System.nanoTime());
+
+            int user = random.nextInt(Payloads.USER_COUNT);
+            int roll = random.nextInt(100);
+            long id = Payloads.nextId();
+
+            if (roll < 10) {
+                String content = Setting.PREFIX + "faq " + (1 + random.nextInt(10));
+                pending.put(id, System.nanoTime());
+                gateway.dispatch("MESSAGE_CREATE",
+                        Payloads.message(id, ID.AP_STUDENTS_GUILD, ID.BOT_COMMANDS_CHANNEL, user, content));
+                commands++;
+            } else if (roll < 15) {
+                pending.put(id, System.nanoTime());
+                gateway.dispatch("INTERACTION_CREATE",
+                        Payloads.slashCommand(id, ID.AP_STUDENTS_GUILD, ID.BOT_COMMANDS_CHANNEL, user, "faq"));
+                commands++;
+            } else {
+                long channel = roll < 60 ? ID.AP_STATS_CHANNEL : Payloads.GENERAL_CHANNEL;
+                gateway.dispatch("MESSAGE_CREATE", Payloads.message(
+                        id, ID.AP_STUDENTS_GUILD, channel, user, CHAT[random.nextInt(CHAT.length)]));
+            }
+        }
+
+        return commands;
+    }
+
+    /**
+     * Match a request from the bot to the command it responds to, if any, and record the reply latency.
+     */
+    private static void recordReply(RecordedRequest request) {
+        if (request.status() == 429)
+            return;
+
+        long id = -1;
+        Matcher callback = INTERACTION_CALLBACK.matcher(request.route());
+        if (callback.matches())
+            id = Long.parseLong(callback.group(1));
+        else if (request.method().equals("POST") && MESSAGE_REPLY.matcher(request.route()).matches()) {
+            DataObject body = DataObject.fromJson(request.body());
+            if (body.hasKey("message_reference"))
+                id = body.getObject("message_reference").getLong("message_id", -1);
+        }
+
+        Long sentAt = pending.remove(id);
+        if (sentAt != null)
+            latencies.add(request.receivedAt() - sentAt);
+    }
+
+    /**
+     * Wait until every command has been answered, or until the bot stops making requests.
+     */
+    private static void awaitReplies(FakeRest rest) throws InterruptedException {
+        int lastCount = -1;
+        long idleSince = System.nanoTime();
+
+        while (!pending.isEmpty()) {
+            int count = rest.getRequests().size();
+            if (count != lastCount) {
+                lastCount = count;
+                idleSince = System.nanoTime();
+            } else if (System.nanoTime() - idleSince > TimeUnit.SECONDS.toNanos(10)) {
+                LOG.warn(pending.size() + " commands were never answered");
+                return;
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static void report(FakeRest rest, int events, int commands, long start, long sent, long finished) {
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        Map<String, Long> routes = rest.getRequests().stream()
+                .collect(Collectors.groupingBy(RecordedRequest::template, TreeMap::new, Collectors.counting()));
+
+        StringBuilder report = new StringBuilder("\n\nLoad test results\n");
+        report.append(String.format("  Events sent:          %d in %.2f s (%.0f events/s)%n",
+                events, seconds(sent - start), events / seconds(sent - start)));
+        report.append(String.format("  Events handled:       %d (%d dropped by routing)%n",
+                Main.EVENTS.getHandledCount(), Main.EVENTS.getDroppedCount()));
+        report.append(String.format("  Commands answered:    %d of %d in %.2f s%n",
+                sorted.length, commands, seconds(finished - start)));
+
+        if (sorted.length > 0)
+            report.append(String.format("  Reply latency (ms):   p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    sorted[sorted.length - 1] / 1e6));
+
+        report.append(String.format("  Rate limited (429):   %d%n", rest.getRateLimitedCount()));
+        report.append("  Requests by route:\n");
+        routes.forEach((route, count) -> report.append(String.format("    %6d  %s%n", count, route)));
+
+        LOG.info(report.toString());
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
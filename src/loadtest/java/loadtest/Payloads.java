@@ -0,0 +1,320 @@
+package loadtest;
+
+import data.ID;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This builds the JSON payloads that the {@link FakeGateway} and {@link FakeRest} send to JDA. They describe a small
+ * copy of the real Discord setup: the AP Students and StatsBot Central guilds from {@link ID}, each with the channels
+ * that the bot uses, and a pool of synthetic users who send messages and use commands.
+ * <p>
+ * Only the fields that JDA reads are included, but those are filled in with realistic values so that the payloads
+ * take the same path through JDA's entity builder as real ones.
+ */
+final class Payloads {
+    /**
+     * The id of the legacy default channel in AP Students, which shares the id of the guild. The bot ignores messages
+     * here when running in its usual mode.
+     */
+    static final long GENERAL_CHANNEL = ID.AP_STUDENTS_GUILD;
+
+    /**
+     * The number of synthetic users that send messages to the bot.
+     */
+    static final int USER_COUNT = 500;
+
+    private static final long FIRST_USER = 600000000000000000L;
+
+    /**
+     * Ids for the messages, interactions, and replies created during the test. These start well above the real ids
+     * in {@link ID}, so they can't collide.
+     */
+    private static final AtomicLong SNOWFLAKES = new AtomicLong(900000000000000000L);
+
+    private Payloads() {
+    }
+
+    static long nextId() {
+        return SNOWFLAKES.incrementAndGet();
+    }
+
+    static long userId(int index) {
+        return FIRST_USER + index;
+    }
+
+    static DataObject user(long id, String name, boolean bot) {
+        return DataObject.empty()
+                .put("id", Long.toString(id))
+                .put("username", name)
+                .put("discriminator", String.format("%04d", id % 10000))
+                .putNull("avatar")
+                .put("bot", bot)
+                .put("public_flags", 0);
+    }
+
+    static DataObject selfUser() {
+        return user(ID.SELF, "Stats Bot", true)
+                .put("verified", true)
+                .put("mfa_enabled", false)
+                .put("flags", 0);
+    }
+
+    static DataObject application() {
+        return DataObject.empty()
+                .put("id", Long.toString(ID.SELF))
+                .put("name", "Stats Bot")
+                .put("description", "")
+                .putNull("icon")
+                .put("bot_public", false)
+                .put("bot_require_code_grant", false)
+                .put("flags", 0)
+                .put("owner", user(ID.SIMON, "Simon", false));
+    }
+
+    /**
+     * This is the response to <code>/gateway/bot</code>, which tells JDA where to connect.
+     *
+     * @param url the url of the {@link FakeGateway}
+     */
+    static DataObject gateway(String url) {
+        return DataObject.empty()
+                .put("url", url)
+                .put("shards", 1)
+                .put("session_start_limit", DataObject.empty()
+                        .put("total", 1000)
+                        .put("remaining", 1000)
+                        .put("reset_after", 0)
+                        .put("max_concurrency", 1));
+    }
+
+    /**
+     * This is the session that the {@link FakeGateway} sends after JDA identifies: <code>READY</code>, followed by a
+     * <code>GUILD_CREATE</code> for each guild.
+     *
+     * @return the raw dispatch payloads
+     */
+    static List<byte[]> session() {
+        DataObject[] events = {ready("load-test-" + System.nanoTime()), apStudents(), statsBotCentral()};
+        String[] types = {"READY", "GUILD_CREATE", "GUILD_CREATE"};
+
+        List<byte[]> session = new ArrayList<>();
+        for (int i = 0; i < events.length; i++)
+            session.add(DataObject.empty()
+                    .put("op", 0)
+                    .put("t", types[i])
+                    .put("s", i + 1)
+                    .put("d", events[i])
+                    .toJson());
+        return session;
+    }
+
+    static DataObject ready(String sessionId) {
+        return DataObject.empty()
+                .put("v", 9)
+                .put("user", selfUser())
+                .put("session_id", sessionId)
+                .put("guilds", DataArray.empty()
+                        .add(DataObject.empty().put("id", Long.toString(ID.AP_STUDENTS_GUILD)).put("unavailable", true))
+                        .add(DataObject.empty().put("id", Long.toString(ID.STATSBOT_CENTRAL_GUILD)).put("unavailable", true)))
+                .put("private_channels", DataArray.empty())
+                .put("relationships", DataArray.empty())
+                .put("application", DataObject.empty().put("id", Long.toString(ID.SELF)).put("flags", 0))
+                .put("_trace", DataArray.empty());
+    }
+
+    static DataObject apStudents() {
+        return guild(ID.AP_STUDENTS_GUILD, "AP Students",
+                channel(GENERAL_CHANNEL, ID.AP_STUDENTS_GUILD, "general", 0),
+                channel(ID.AP_STATS_CHANNEL, ID.AP_STUDENTS_GUILD, "apstats", 1),
+                channel(ID.BOT_COMMANDS_CHANNEL, ID.AP_STUDENTS_GUILD, "bot-commands", 2));
+    }
+
+    static DataObject statsBotCentral() {
+        return guild(ID.STATSBOT_CENTRAL_GUILD, "StatsBot Central",
+                channel(ID.AP_STATS_STATSBOT_CHANNEL, ID.STATSBOT_CENTRAL_GUILD, "ap-stats", 0),
+                channel(ID.PRIVATE_TESTING_CHANNEL, ID.STATSBOT_CENTRAL_GUILD, "private-testing", 1),
+                channel(ID.STARTUP_LOG_CHANNEL, ID.STATSBOT_CENTRAL_GUILD, "startup-log", 2));
+    }
+
+    private static DataObject guild(long id, String name, DataObject... channels) {
+        DataArray channelArray = DataArray.empty();
+        for (DataObject channel : channels)
+            channelArray.add(channel);
+
+        return DataObject.empty()
+                .put("id", Long.toString(id))
+                .put("name", name)
+                .putNull("icon")
+                .putNull("splash")
+                .putNull("banner")
+                .putNull("description")
+                .putNull("vanity_url_code")
+                .put("owner_id", Long.toString(ID.SIMON))
+                .put("region", "us-east")
+                .putNull("afk_channel_id")
+                .put("afk_timeout", 300)
+                .putNull("system_channel_id")
+                .put("system_channel_flags", 0)
+                .putNull("rules_channel_id")
+                .put("verification_level", 1)
+                .put("default_message_notifications", 1)
+                .put("explicit_content_filter", 2)
+                .put("mfa_level", 0)
+                .put("nsfw_level", 0)
+                .put("premium_tier", 0)
+                .put("premium_subscription_count", 0)
+                .put("preferred_locale", "en-US")
+                .put("max_members", 500000)
+                .put("features", DataArray.empty())
+                .put("roles", DataArray.empty().add(everyoneRole(id)))
+                .put("emojis", DataArray.empty())
+                .put("channels", channelArray)
+                .put("threads", DataArray.empty())
+                .put("stage_instances", DataArray.empty())
+                .put("members", DataArray.empty().add(member(selfUser())))
+                .put("member_count", USER_COUNT + 1)
+                .put("voice_states", DataArray.empty())
+                .put("presences", DataArray.empty())
+                .put("joined_at", timestamp())
+                .put("large", false)
+                .put("unavailable", false);
+    }
+
+    private static DataObject everyoneRole(long guildId) {
+        return DataObject.empty()
+                .put("id", Long.toString(guildId))
+                .put("name", "@everyone")
+                .put("color", 0)
+                .put("hoist", false)
+                .put("position", 0)
+                .put("permissions", "104324673")
+                .put("managed", false)
+                .put("mentionable", false);
+    }
+
+    private static DataObject channel(long id, long guildId, String name, int position) {
+        return DataObject.empty()
+                .put("id", Long.toString(id))
+                .put("guild_id", Long.toString(guildId))
+                .put("type", 0)
+                .put("name", name)
+                .put("position", position)
+                .put("permission_overwrites", DataArray.empty())
+                .putNull("topic")
+                .putNull("parent_id")
+                .putNull("last_message_id")
+                .put("rate_limit_per_user", 0)
+                .put("nsfw", false);
+    }
+
+    private static DataObject member(DataObject user) {
+        return DataObject.empty()
+                .put("user", user)
+                .putNull("nick")
+                .put("roles", DataArray.empty())
+                .put("joined_at", timestamp())
+                .putNull("premium_since")
+                .put("deaf", false)
+                .put("mute", false)
+                .put("pending", false)
+                .put("permissions", "104324673");
+    }
+
+    /**
+     * A <code>MESSAGE_CREATE</code> event for a message sent by one of the synthetic users.
+     *
+     * @param id        the message id
+     * @param guildId   the guild the message was sent in
+     * @param channelId the channel the message was sent in
+     * @param userIndex which synthetic user sent the message
+     * @param content   the message content
+     */
+    static DataObject message(long id, long guildId, long channelId, int userIndex, String content) {
+        DataObject author = user(userId(userIndex), "student" + userIndex, false);
+        DataObject member = member(author);
+        member.remove("user");
+
+        return DataObject.empty()
+                .put("id", Long.toString(id))
+                .put("channel_id", Long.toString(channelId))
+                .put("guild_id", Long.toString(guildId))
+                .put("author", author)
+                .put("member", member)
+                .put("content", content)
+                .put("timestamp", timestamp())
+                .putNull("edited_timestamp")
+                .put("tts", false)
+                .put("mention_everyone", false)
+                .put("mentions", DataArray.empty())
+                .put("mention_roles", DataArray.empty())
+                .put("attachments", DataArray.empty())
+                .put("embeds", DataArray.empty())
+                .put("components", DataArray.empty())
+                .put("pinned", false)
+                .put("type", 0)
+                .put("flags", 0);
+    }
+
+    /**
+     * An <code>INTERACTION_CREATE</code> event for a slash command with no options used by one of the synthetic users.
+     *
+     * @param id        the interaction id
+     * @param guildId   the guild the command was used in
+     * @param channelId the channel the command was used in
+     * @param userIndex which synthetic user used the command
+     * @param command   the name of the slash command
+     */
+    static DataObject slashCommand(long id, long guildId, long channelId, int userIndex, String command) {
+        return DataObject.empty()
+                .put("id", Long.toString(id))
+                .put("application_id", Long.toString(ID.SELF))
+                .put("type", 2)
+                .put("token", "interaction-" + id)
+                .put("version", 1)
+                .put("guild_id", Long.toString(guildId))
+                .put("channel_id", Long.toString(channelId))
+                .put("member", member(user(userId(userIndex), "student" + userIndex, false)))
+                .put("data", DataObject.empty()
+                        .put("id", Long.toString(ID.SELF + command.hashCode()))
+                        .put("name", command)
+                        .put("type", 1));
+    }
+
+    /**
+     * This builds the message that Discord would return after the bot sends or edits a message. The content, embeds,
+     * and components are copied from the bot's request.
+     *
+     * @param id        the id of the message
+     * @param channelId the channel of the message
+     * @param request   the body of the bot's request
+     */
+    static DataObject botMessage(long id, long channelId, DataObject request) {
+        return DataObject.empty()
+                .put("id", Long.toString(id))
+                .put("channel_id", Long.toString(channelId))
+                .put("author", selfUser())
+                .put("content", request.getString("content", ""))
+                .put("timestamp", timestamp())
+                .putNull("edited_timestamp")
+                .put("tts", false)
+                .put("mention_everyone", false)
+                .put("mentions", DataArray.empty())
+                .put("mention_roles", DataArray.empty())
+                .put("attachments", DataArray.empty())
+                .put("embeds", request.hasKey("embeds") ? request.getArray("embeds") : DataArray.empty())
+                .put("components", request.hasKey("components") ? request.getArray("components") : DataArray.empty())
+                .put("pinned", false)
+                .put("type", 0)
+                .put("flags", 0);
+    }
+
+    private static String timestamp() {
+        return OffsetDateTime.now().toString();
+    }
+}
@@ -0,0 +1,50 @@
+package loadtest;
+
+/**
+ * This is a single outbound request that the bot made to the {@link FakeRest} server.
+ *
+ * @param method     the HTTP method
+ * @param route      the path of the request, relative to the API version (e.g. <code>channels/123/messages</code>)
+ * @param body       the request body, or an empty string if there was none
+ * @param status     the HTTP status that the fake server responded with
+ * @param receivedAt the {@link System#nanoTime()} at which the request was received
+ */
+public record RecordedRequest(String method, String route, String body, int status, long receivedAt) {
+    /**
+     * This replaces the ids and tokens in the {@link #route} with placeholders, so that requests to the same endpoint
+     * can be grouped together. The id of a channel, guild, or webhook at the start of the route is kept, as Discord
+     * rate limits each of those separately.
+     *
+     * @return the route template, prefixed with the method
+     */
+    public String template() {
+        return method + " " + template(route);
+    }
+
+    /**
+     * This is the implementation of {@link #template()}, without the method.
+     *
+     * @param route a route relative to the API version
+     * @return the route template
+     */
+    static String template(String route) {
+        String[] segments = route.split("/");
+        StringBuilder template = new StringBuilder(segments[0]);
+
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            template.append('/');
+
+            if (i == 1 && segment.chars().allMatch(Character::isDigit))
+                template.append(segments[0].equals("interactions") ? "{id}" : segment);
+            else if (i == 2 && (segments[0].equals("interactions") || segments[0].equals("webhooks")))
+                template.append("{token}");
+            else if (!segment.isEmpty() && segment.chars().allMatch(Character::isDigit))
+                template.append("{id}");
+            else
+                template.append(segment);
+        }
+
+        return template.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package loadtest;
+
+import announcements.AnnouncementLoader;
+import main.EventLog;
+import main.Main;
+import net.dv8tion.jda.api.utils.Compression;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * This replays a recorded {@link EventLog} through the bot's real listeners (<code>OnMessage</code>,
+ * <code>SlashCommand</code>, <code>OnInteraction</code>, and <code>OnReaction</code>), so that production traffic
+ * such as the peak on AP score release day can be reproduced offline and compared between builds.
+ * <p>
+ * The <code>READY</code> and <code>GUILD_CREATE</code> payloads at the start of the log become the session sent by
+ * the {@link FakeGateway}, so the bot sees the same guilds, channels, and members as it did when the log was recorded.
+ * Every later dispatch is sent on the gateway either at its recorded pace (optionally sped up) or as fast as the bot
+ * accepts it. Outbound REST calls go to a {@link FakeRest} sink with no latency or rate limits.
+ * <p>
+ * The whole log is read into memory before the replay starts, so that reading it doesn't affect the measurements. The
+ * reported allocation is the total allocated by all live threads during the replay, so it doesn't include threads
+ * that finished before the replay ended; it is best used to compare builds rather than as an absolute figure.
+ * <p>
+ * Run this with <code>gradlew replay --args="[log file] [speed]"</code>, where a speed of 1 replays in real time, 10
+ * replays ten times faster, and 0 (the default) replays as fast as possible.
+ */
+public class Replay {
+    private static final Logger LOG = JDALogger.getLog(Replay.class);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: Replay [log file] [speed]");
+            return;
+        }
+
+        Path path = Path.of(args[0]);
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+
+        List<byte[]> session = new ArrayList<>();
+        List<EventLog.Entry> entries = new ArrayList<>();
+        int skipped = load(path, session, entries);
+        if (session.isEmpty())
+            throw new IllegalStateException(path + " does not start with a READY event");
+
+        LOG.info("Loaded " + entries.size() + " events from " + path +
+                 (skipped > 0 ? " (skipped " + skipped + " from later sessions)" : ""));
+
+        try (FakeGateway gateway = new FakeGateway(session);
+             FakeRest rest = new FakeRest(new FakeRest.Options(0, 0, Integer.MAX_VALUE, 1000))) {
+            gateway.start();
+            rest.start(gateway.getUrl());
+
+            Main.JDA = Main.configure("replay-token")
+                    .setHttpClient(rest.httpClient())
+                    .setCompression(Compression.NONE)
+                    .build();
+
+            if (!gateway.awaitReady(60, TimeUnit.SECONDS))
+                throw new IllegalStateException("JDA did not identify with the fake gateway");
+            Main.JDA.awaitReady();
+            LoadTest.awaitStartup();
+
+            long handledBefore = Main.EVENTS.getHandledCount();
+            int requestsBefore = rest.getRequests().size();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+
+            replay(gateway, entries, speed, start);
+            long sent = System.nanoTime();
+            awaitDrained();
+            long finished = System.nanoTime();
+
+            long allocated = allocatedBytes() - allocatedBefore;
+            long handled = Main.EVENTS.getHandledCount() - handledBefore;
+            long recorded = entries.isEmpty() ? 0 :
+                    entries.get(entries.size() - 1).receivedAt() - entries.get(0).receivedAt();
+
+            Map<String, Long> routes = rest.getRequests().stream()
+                    .skip(requestsBefore)
+                    .collect(Collectors.groupingBy(RecordedRequest::template, TreeMap::new, Collectors.counting()));
+
+            StringBuilder report = new StringBuilder("\n\nReplay results\n");
+            report.append(String.format("  Events replayed:   %d in %.2f s (recorded over %.2f s)%n",
+                    entries.size(), (sent - start) / 1e9, recorded / 1e3));
+            report.append(String.format("  Events handled:    %d in %.2f s (%.0f events/s)%n",
+                    handled, (finished - start) / 1e9, handled / ((finished - start) / 1e9)));
+            report.append(String.format("  Dispatch lag:      average %d \u00b5s, max %d \u00b5s%n",
+                    Main.EVENTS.getAverageLagMicros(), Main.EVENTS.getMaxLagMicros()));
+            report.append(String.format("  Allocated:         %.1f MB (%.1f KB per event)%n",
+                    allocated / 1e6, entries.isEmpty() ? 0 : allocated / 1e3 / entries.size()));
+            report.append("  Requests by route:\n");
+            routes.forEach((route, count) -> report.append(String.format("    %6d  %s%n", count, route)));
+
+            LOG.info(report.toString());
+        } finally {
+            if (Main.JDA != null)
+                Main.JDA.shutdownNow();
+            AnnouncementLoader.shutdown();
+        }
+    }
+
+    /**
+     * Read a log into memory. The leading <code>READY</code> and <code>GUILD_CREATE</code> payloads are added to the
+     * session, and every later dispatch is added to the entries. If the log holds several recordings, the
+     * <code>READY</code> and <code>RESUMED</code> events of the later ones are skipped, as JDA would not expect them
+     * again on the same connection.
+     *
+     * @return the number of payloads skipped
+     */
+    private static int load(Path path, List<byte[]> session, List<EventLog.Entry> entries) throws Exception {
+        int skipped = 0;
+
+        try (EventLog.Reader reader = EventLog.read(path)) {
+            EventLog.Entry entry;
+            while ((entry = reader.next()) != null) {
+                String type = DataObject.fromJson(entry.payload()).getString("t", "");
+
+                if (entries.isEmpty() && (type.equals("READY") || type.equals("GUILD_CREATE")))
+                    session.add(entry.payload());
+                else if (type.equals("READY") || type.equals("RESUMED"))
+                    skipped++;
+                else
+                    entries.add(entry);
+            }
+        }
+
+        return skipped;
+    }
+
+    private static void replay(FakeGateway gateway, List<EventLog.Entry> entries, double speed, long start)
+            throws Exception {
+        if (entries.isEmpty())
+            return;
+
+        long firstReceivedAt = entries.get(0).receivedAt();
+        for (EventLog.Entry entry : entries) {
+            if (speed > 0) {
+                long offset = (long) ((entry.receivedAt() - firstReceivedAt) * 1_000_000 / speed);
+                LockSupport.parkNanos(start + offset - System.nanoTime());
+            }
+            gateway.dispatchRaw(entry.payload());
+        }
+    }
+
+    /**
+     * Wait until every event sent on the gateway has been handled. JDA reads the websocket on its own thread, so the
+     * event manager's queue can be briefly empty while events are still on their way. It must stay empty and the
+     * handled count must stop changing before the replay is considered finished.
+     */
+    private static void awaitDrained() throws InterruptedException {
+        long lastHandled = -1;
+        while (true) {
+            Thread.sleep(250);
+            long handled = Main.EVENTS.getHandledCount();
+            if (Main.EVENTS.getQueueDepth() == 0 && handled == lastHandled)
+                return;
+            lastHandled = handled;
+        }
+    }
+
+    /**
+     * @return the total bytes allocated so far by all live threads
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+            if (allocated > 0)
+                total += allocated;
+        return total;
+    }
+}
@@ -0,0 +1,254 @@
+package announcements;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a constant-memory model of how many messages a channel receives in each hour of the week. It is used to send
+ * announcements at times when the channel is quiet, but there are still people around to read them.
+ * <p>
+ * The week is divided into {@link #BUCKETS} one-hour buckets, starting at midnight UTC on Monday. Messages are counted
+ * for the current hour, and when the hour ends, its count is folded into the bucket for that hour of the week as an
+ * exponentially weighted moving average. The latest week makes up {@link #DECAY} of the average, and each earlier week
+ * a little less than the one after it, so the profile follows gradual changes such as the school year, while a single
+ * unusual day makes little difference.
+ * Hours without any messages while the bot is online count as zero.
+ * <p>
+ * Each bucket also tracks how much weight its average has accumulated, and the rate is divided by that weight. Without
+ * this, every bucket would start near zero and take several weeks to reach its true rate.
+ * <p>
+ * Recording a message is constant time. Closing an hour is too, except after a long gap with no messages, when every
+ * bucket is decayed at once. All methods are synchronized, but they are only called by the channel's event lane, the
+ * announcement timer, and admin commands.
+ */
+public class ActivityProfile {
+    /**
+     * The number of buckets: one for each hour of the week.
+     */
+    public static final int BUCKETS = 7 * 24;
+
+    /**
+     * The weight of the most recent week in each bucket's moving average.
+     */
+    private static final double DECAY = 0.25;
+
+    /**
+     * Announcements are sent in hours whose predicted rate is between these percentiles of the active hours in the
+     * profile: above the lower one so that there are readers, and below the upper one so that the announcement isn't
+     * buried. Hours without any activity are left out, or else a channel that is dead overnight would have its readers
+     * threshold at zero.
+     */
+    private static final double READERS_PERCENTILE = 0.25, QUIET_PERCENTILE = 0.5;
+
+    /**
+     * The lowest rate, in messages per hour, at which an hour counts as active.
+     */
+    private static final double MIN_ACTIVE_RATE = 0.1;
+
+    /**
+     * The Unix epoch was a Thursday, which is 72 hours into a week starting on Monday.
+     */
+    private static final int EPOCH_HOUR_OF_WEEK = 3 * 24;
+
+    private final double[] rates = new double[BUCKETS];
+    private final double[] weights = new double[BUCKETS];
+
+    /**
+     * The number of hours since the epoch of the hour currently being counted, or <code>-1</code> if no message has
+     * been recorded since the bot started.
+     */
+    private long currentHour = -1;
+    private int currentCount = 0;
+
+    /**
+     * The number of hours that have been folded into the profile. It is only trusted once it has seen a full week.
+     */
+    private long hoursObserved = 0;
+
+    /**
+     * Start counting hours without messages from now, if no message has been recorded yet. This is called when the
+     * announcement timer starts, so that quiet channels are profiled too.
+     *
+     * @param nowMillis the current time, in epoch milliseconds
+     */
+    public synchronized void start(long nowMillis) {
+        if (currentHour == -1)
+            currentHour = TimeUnit.MILLISECONDS.toHours(nowMillis);
+    }
+
+    /**
+     * Record a message.
+     *
+     * @param timeMillis the time of the message, in epoch milliseconds
+     */
+    public synchronized void record(long timeMillis) {
+        advance(TimeUnit.MILLISECONDS.toHours(timeMillis));
+        currentCount++;
+    }
+
+    /**
+     * Move on to the given hour, folding the count for the current hour and zeros for any hours skipped in between into
+     * the profile.
+     */
+    private void advance(long hour) {
+        if (currentHour == -1) {
+            currentHour = hour;
+            return;
+        }
+        if (hour <= currentHour)
+            return;
+
+        fold(bucketOf(currentHour), currentCount, 1);
+        currentCount = 0;
+
+        // Every skipped hour had no messages. After a gap of more than a week, some buckets are skipped several times.
+        long skipped = hour - currentHour - 1;
+        if (skipped > 0) {
+            int first = bucketOf(currentHour + 1);
+            for (int i = 0; i < Math.min(skipped, BUCKETS); i++)
+                fold((first + i) % BUCKETS, 0, skipped / BUCKETS + (i < skipped % BUCKETS ? 1 : 0));
+        }
+
+        hoursObserved += hour - currentHour;
+        currentHour = hour;
+    }
+
+    /**
+     * Fold the same count into a bucket several times.
+     */
+    private void fold(int bucket, int count, long times) {
+        double keep = Math.pow(1 - DECAY, times);
+        rates[bucket] = rates[bucket] * keep + count * (1 - keep);
+        weights[bucket] = weights[bucket] * keep + (1 - keep);
+    }
+
+    private static int bucketOf(long hour) {
+        return (int) ((hour + EPOCH_HOUR_OF_WEEK) % BUCKETS);
+    }
+
+    /**
+     * Get the bucket for a time.
+     *
+     * @param timeMillis the time, in epoch milliseconds
+     * @return the hour of the week, from 0 (midnight UTC on Monday) to {@link #BUCKETS}<code> - 1</code>
+     */
+    public static int getBucket(long timeMillis) {
+        return bucketOf(TimeUnit.MILLISECONDS.toHours(timeMillis));
+    }
+
+    /**
+     * Get the predicted message rate in each hour of the week.
+     *
+     * @param nowMillis the current time, in epoch milliseconds, so that hours since the last message are included
+     * @return the messages per hour for each {@link #getBucket(long) bucket}
+     */
+    public synchronized double @NotNull [] getRates(long nowMillis) {
+        if (currentHour != -1)
+            advance(TimeUnit.MILLISECONDS.toHours(nowMillis));
+
+        double[] predicted = new double[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            predicted[i] = weights[i] == 0 ? 0 : rates[i] / weights[i];
+        return predicted;
+    }
+
+    /**
+     * @return whether the profile has seen at least a full week of activity, so that its predictions can be trusted
+     */
+    public synchronized boolean isTrained() {
+        return hoursObserved >= BUCKETS;
+    }
+
+    /**
+     * @return the number of hours that have been folded into the profile
+     */
+    public synchronized long getHoursObserved() {
+        return hoursObserved;
+    }
+
+    /**
+     * Get the range of message rates in which an announcement should be sent.
+     *
+     * @param rates the predicted {@link #getRates(long) rates}
+     * @return the lowest and highest rates, in messages per hour. Both are <code>0</code> if there is no activity.
+     */
+    public static double @NotNull [] getWindowRange(double @NotNull [] rates) {
+        double[] active = Arrays.stream(rates).filter(rate -> rate >= MIN_ACTIVE_RATE).sorted().toArray();
+        if (active.length == 0)
+            return new double[]{0, 0};
+
+        return new double[]{
+                active[(int) (READERS_PERCENTILE * (active.length - 1))],
+                active[(int) (QUIET_PERCENTILE * (active.length - 1))]
+        };
+    }
+
+    /**
+     * Find the next time to send an announcement: the start of the first hour whose predicted rate is within the
+     * {@link #getWindowRange(double[]) window range}. If the profile isn't {@link #isTrained() trained} yet, the
+     * channel has had no activity, or no hour within the horizon qualifies, the announcement is sent right away.
+     *
+     * @param nowMillis the current time, in epoch milliseconds
+     * @param horizon   the number of hours ahead to look
+     * @return the time to send the announcement, in epoch milliseconds. This is <code>nowMillis</code> if it should be
+     * sent now.
+     */
+    public long nextWindow(long nowMillis, int horizon) {
+        if (!isTrained())
+            return nowMillis;
+
+        double[] rates = getRates(nowMillis);
+        double[] range = getWindowRange(rates);
+        if (range[1] == 0)
+            return nowMillis;
+
+        long hour = TimeUnit.MILLISECONDS.toHours(nowMillis);
+
+        for (int i = 0; i <= horizon; i++) {
+            double rate = rates[bucketOf(hour + i)];
+            if (rate >= range[0] && rate <= range[1])
+                return i == 0 ? nowMillis : TimeUnit.HOURS.toMillis(hour + i);
+        }
+
+        return nowMillis;
+    }
+
+    /**
+     * Write the profile as a string, for the saved announcement schedule.
+     *
+     * @return the hours observed, followed by the rate and weight of each bucket, separated by <code>|</code>
+     */
+    public synchronized @NotNull String save() {
+        StringJoiner joiner = new StringJoiner("|");
+        joiner.add(Long.toString(hoursObserved));
+        for (double rate : rates)
+            joiner.add(Double.toString(rate));
+        for (double weight : weights)
+            joiner.add(Double.toString(weight));
+        return joiner.toString();
+    }
+
+    /**
+     * Restore a profile written by {@link #save()}. The hour that was being counted when it was saved is lost, and the
+     * time that the bot was offline isn't counted as hours without messages.
+     *
+     * @param saved the saved profile
+     * @throws IllegalArgumentException if the profile is malformed
+     */
+    public synchronized void restore(@NotNull String saved) {
+        String[] values = saved.split("\\|");
+        if (values.length != 1 + 2 * BUCKETS)
+            throw new IllegalArgumentException("Expected " + (1 + 2 * BUCKETS) + " values, but found " + values.length);
+
+        hoursObserved = Long.parseLong(values[0]);
+        for (int i = 0; i < BUCKETS; i++) {
+            rates[i] = Double.parseDouble(values[1 + i]);
+            weights[i] = Double.parseDouble(values[1 + BUCKETS + i]);
+        }
+        currentHour = -1;
+        currentCount = 0;
+    }
+}
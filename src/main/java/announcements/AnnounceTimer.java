@@ -2,64 +2,113 @@ package announcements;
 
 import data.Colors;
 import data.ID;
-import data.Setting;
 import main.*;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.TextChannel;
 
 import java.util.List;
-import java.util.TimerTask;
 
-public class AnnounceTimer extends TimerTask {
+/**
+ * This sends an announcement to a single {@link AnnouncementChannel} once its countdown has elapsed, provided the
+ * channel passes {@link #validateChannel(TextChannel) validation}. It runs on the {@link AnnouncementLoader#wheel timing
+ * wheel}, which is shared by every channel, so it never blocks: the messages are checked in memory, and anything that
+ * needs Discord is queued.
+ */
+public class AnnounceTimer implements Runnable {
+    private final AnnouncementChannel announcementChannel;
+
+    /**
+     * @param announcementChannel the channel to send an announcement to
+     */
+    public AnnounceTimer(AnnouncementChannel announcementChannel) {
+        this.announcementChannel = announcementChannel;
+    }
 
     @Override
     public void run() {
         try {
-            TextChannel channel = Main.JDA.getTextChannelById(Setting.ANNOUNCEMENT_CHANNEL);
-            assert channel != null;
-
-            // Validate the channel to confirm that an announcement can be sent right now.
-            // If validation fails, disable the timer. (It'll restart when another message is sent in the channel)
-            if (!validateChannel(channel)) {
-                AnnouncementLoader.LOG.warn("Channel validation failed. Postponing...");
-                AnnouncementLoader.clearTimer();
+            TextChannel channel = Main.JDA.getTextChannelById(announcementChannel.getChannelId());
+            if (channel == null) {
+                AnnouncementLoader.LOG.warn("Announcement channel " + announcementChannel.getChannelId() +
+                                            " not found. Postponing...");
+                return;
+            }
+
+            RecentMessages recent = announcementChannel.getRecentMessages();
+            int count = announcementChannel.getMessagesCheck();
+
+            // If the buffer doesn't know the latest messages yet, such as shortly after a restart, fill it in from the
+            // channel history before validating it
+            if (!recent.isComplete(count)) {
+                channel.getHistory().retrievePast(count).queue(
+                        history -> {
+                            recent.backfill(history);
+                            AnnouncementLoader.LOG.info("Backfilled recent messages in " + channel.getName() + ".");
+                            send(channel);
+                        },
+                        e -> AnnouncementLoader.LOG.error("Failed to retrieve messages for announcement.", e)
+                );
                 return;
             }
 
-            channel.sendMessage(AnnouncementLoader.getAnnouncementMessage())
-                    .queue(s -> AnnouncementLoader.LOG.info("Posted scheduled announcement."));
+            send(channel);
         } catch (Exception e) {
             AnnouncementLoader.LOG.error("Failed to send announcement.", e);
         }
     }
 
+    /**
+     * Validate the channel, and send an announcement from its catalog if it passes.
+     *
+     * @param channel the channel
+     */
+    private void send(TextChannel channel) {
+        // Validate the channel to confirm that an announcement can be sent right now.
+        // If validation fails, the timer stays disarmed. (It'll restart when another message is sent in the channel)
+        if (!validateChannel(channel)) {
+            AnnouncementLoader.LOG.warn("Channel validation failed in " + channel.getName() + ". Postponing...");
+            return;
+        }
+
+        Message announcement = AnnouncementLoader.getAnnouncementMessage(announcementChannel);
+        if (announcement == null) {
+            AnnouncementLoader.LOG.warn("No announcements are loaded. Skipping announcement in " + channel.getName() +
+                                        ".");
+            return;
+        }
+
+        channel.sendMessage(announcement)
+                .queue(s -> AnnouncementLoader.LOG.info("Posted scheduled announcement in " + channel.getName() + "."));
+    }
+
     /**
      * This checks to see if the announcement channel is ready to have another announcement sent to it, by attempting to
      * discern if it already has a recently posted announcement, or if a question was asked recently that takes
      * priority.
      * <p>
-     * It retrieves the last {@link Setting#ANNOUNCEMENT_MESSAGES_CHECK} number of messages from the announcements
+     * It checks the last {@link AnnouncementChannel#getMessagesCheck() messages check} number of messages from the
      * channel. The bot will avoid sending an announcement if any of the following are found in the latest messages:
      * <ul>
      * <li>A previous announcement message
      * <li>Any message from AP Bot
      * <li>An image (which indicates that a question was asked)
      * </ul>
+     * The messages come from the channel's {@link AnnouncementChannel#getRecentMessages() recent messages}, which are
+     * kept up to date from message events and {@link #run() backfilled} from the history if necessary.
      *
-     * @param channel the announcements channel to check
+     * @param channel the channel to check
      * @return true if the channel passed validation and an announcement should be sent; false otherwise
      */
     private boolean validateChannel(TextChannel channel) {
         try {
-            List<Message> messages = channel.getHistory().retrievePast(Setting.ANNOUNCEMENT_MESSAGES_CHECK).complete();
-
-            if (messages.size() != Setting.ANNOUNCEMENT_MESSAGES_CHECK)
-                throw new Exception("Failed to retrieve " + Setting.ANNOUNCEMENT_MESSAGES_CHECK + " messages. " +
-                                    "Retrieved " + messages.size() + " messages from announcements channel instead.");
+            int count = announcementChannel.getMessagesCheck();
+            List<RecentMessages.Summary> messages = announcementChannel.getRecentMessages().latest(count);
+            if (messages.size() != count)
+                throw new Exception("Failed to find " + count + " messages. " +
+                                    "Found " + messages.size() + " messages in " + channel.getName() + " instead.");
 
             // If any messages fail validation, return false to postpone the announcement message
-            for (Message message : messages)
+            for (RecentMessages.Summary message : messages)
                 if (!validateMessage(message))
                     return false;
 
@@ -76,30 +125,22 @@ public class AnnounceTimer extends TimerTask {
      * valid according to the rules outlined in that method's documentation. If the message is acceptable and does not
      * prevent sending an announcement message, true is returned.
      *
-     * @param message the message to validate
+     * @param message the summary of the message to validate
      * @return true if the message is acceptable and does not prevent sending an announcement; false otherwise
      */
-    private boolean validateMessage(Message message) {
+    private boolean validateMessage(RecentMessages.Summary message) {
         // Check to see if the message is from AP Bot, and if so validation fails.
-        if (message.getAuthor().getIdLong() == ID.AP_BOT)
+        if (message.authorId() == ID.AP_BOT)
             return false;
 
         // Check to see if the message is a previous announcement by confirming that it is (a) sent by Stats Bot
-        // and (b) uses the announcements color.
-        if (message.getAuthor().getIdLong() == ID.SELF) {
-            List<MessageEmbed> embeds = message.getEmbeds();
-            // If there's at least one embed and it uses the announcement color, return false. Otherwise, return true.
-            return embeds.size() != 1 || !Colors.ANNOUNCEMENTS.equals(embeds.get(0).getColor());
-        }
+        // and (b) has a single embed that uses the announcements color.
+        if (message.authorId() == ID.SELF)
+            return !message.hasEmbedColor(Colors.ANNOUNCEMENTS);
 
         // Check attachments for images. Images indicate questions, and therefore they fail validation.
         // Note that images sent by Stats Bot are ignored as the Stats Bot check occurred first.
-        List<Message.Attachment> attachments = message.getAttachments();
-        for (Message.Attachment attachment : attachments)
-            if (attachment.isImage())
-                return false;
-
-        return true;
+        return !message.hasImage();
     }
 
 }
@@ -12,13 +12,10 @@ import org.jetbrains.annotations.NotNull;
 
 public class Announcement extends MessageBuilder {
     /**
-     * This is the probability that this {@link Announcement} will be chosen when randomly selecting an announcement to
-     * send.
-     * <p><br>
-     * On initial creation of the announcement, this is a relative integer representing the announcement's frequency
-     * weight. But after all the announcements are loaded, this is adjusted to a fixed probability.
+     * This is the relative frequency weight of this {@link Announcement}. When randomly selecting an announcement to
+     * send, it is chosen with probability proportional to its weight.
      */
-    private double weight;
+    private final double weight;
     private Message message;
 
     /**
@@ -80,7 +77,7 @@ public class Announcement extends MessageBuilder {
     }
 
     /**
-     * Get the announcement's probability {@link #weight}.
+     * Get the announcement's relative frequency {@link #weight}.
      *
      * @return the weight
      */
@@ -88,15 +85,6 @@ public class Announcement extends MessageBuilder {
         return weight;
     }
 
-    /**
-     * Set the announcement's probability {@link #weight}.
-     *
-     * @param weight the new weight
-     */
-    public void setWeight(double weight) {
-        this.weight = weight;
-    }
-
     /**
      * This returns the {@link Message} built during {@link #prepareBuild()}. For a current build, use {@link
      * #build()}.
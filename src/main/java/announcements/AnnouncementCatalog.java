@@ -0,0 +1,273 @@
+package announcements;
+
+import commands.interactions.Paginator;
+import data.Colors;
+import main.AliasTable;
+import main.CsvReader;
+import main.Utils;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * This is an immutable snapshot of the announcements loaded from <code>announcements.csv</code>, with their messages
+ * already built, the pages of the <code>/announcement list</code> message, and an {@link AliasTable} for picking one at
+ * random in constant time.
+ * <p>
+ * When the file changes, {@link AnnouncementLoader} parses a whole new catalog and swaps it in at once. Anything that
+ * is in the middle of sending an announcement keeps using the catalog it started with, so a reload never leaves the
+ * announcements half updated and never pauses the timer.
+ * <p>
+ * Each announcement has a key, which channel catalogs use to refer to it. Unlike the announcement ids, which are just
+ * positions in the file, keys stay the same when announcements are added, removed, or reordered.
+ */
+public final class AnnouncementCatalog {
+    /**
+     * The number of columns in <code>announcements.csv</code>: the key, title, emoji, weight, button URL, button label,
+     * and content. The content comes last, so that it may contain commas without quoting. The emoji, URL, and label may
+     * be blank.
+     */
+    public static final int COLUMNS = 7;
+
+    /**
+     * The key of the announcement list {@link Paginator}.
+     */
+    private static final String PAGINATOR_KEY = "ann";
+
+    /**
+     * The number of announcements in each field of the announcement list.
+     */
+    private static final int LIST_FIELD_LINES = 20;
+
+    /**
+     * A catalog with no announcements, used until the first one is loaded.
+     */
+    static final AnnouncementCatalog EMPTY = new AnnouncementCatalog(List.of(), List.of(), null);
+
+    private final List<Announcement> announcements;
+    private final List<String> keys;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Selection all;
+    private final Paginator listPages;
+
+    private AnnouncementCatalog(List<Announcement> announcements, List<String> keys, Paginator listPages) {
+        this.announcements = announcements;
+        this.keys = keys;
+        this.listPages = listPages;
+        for (int i = 0; i < keys.size(); i++)
+            ids.put(keys.get(i), i);
+
+        int[] every = new int[announcements.size()];
+        for (int i = 0; i < every.length; i++)
+            every[i] = i;
+        this.all = every.length == 0 ? null : new Selection(this, every);
+    }
+
+    /**
+     * Parse a catalog from the rows of <code>announcements.csv</code>. Every announcement's message is built here, as
+     * is the announcement list, so that sending one later is just a lookup.
+     *
+     * @param rows the rows of the file, read with {@link #COLUMNS} columns
+     * @return the catalog
+     * @throws IllegalArgumentException if a row is invalid, a key is repeated, or there are no announcements
+     */
+    public static @NotNull AnnouncementCatalog parse(@NotNull List<CsvReader.Row> rows) {
+        List<Announcement> announcements = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+
+        for (CsvReader.Row row : rows) {
+            String key = row.get(0);
+            String title = row.get(1);
+            String emoji = row.get(2);
+            String url = row.get(4);
+            String label = row.get(5);
+            String content = row.get(6);
+
+            double weight;
+            try {
+                weight = Double.parseDouble(row.get(3));
+            } catch (NumberFormatException e) {
+                weight = -1;
+            }
+
+            if (!isKey(key) || title.isEmpty() || content.isEmpty() || !(weight >= 0) || Double.isInfinite(weight))
+                throw new IllegalArgumentException("Invalid announcement on " + row);
+            if (keys.contains(key))
+                throw new IllegalArgumentException("Repeated announcement key " + key);
+
+            Announcement announcement = url.isEmpty()
+                    ? new Announcement(title, emoji, content, weight)
+                    : new Announcement(title, emoji, content, url, label.isEmpty() ? title : label, weight);
+
+            keys.add(key);
+            announcements.add(announcement.prepareBuild());
+        }
+
+        if (announcements.isEmpty())
+            throw new IllegalArgumentException("There are no announcements in the catalog");
+
+        return new AnnouncementCatalog(List.copyOf(announcements), List.copyOf(keys), buildList(announcements));
+    }
+
+    /**
+     * Build the pages of the announcement list, which shows the id and title of every announcement.
+     */
+    private static Paginator buildList(List<Announcement> announcements) {
+        List<String> lines = new ArrayList<>(announcements.size());
+        for (int i = 0; i < announcements.size(); i++)
+            lines.add(i + ". " + Utils.getEmbedTitle(announcements.get(i).getMessage()));
+
+        List<MessageEmbed.Field> fields = Paginator.fields("ID. TITLE", lines, LIST_FIELD_LINES);
+        return Paginator.of(
+                PAGINATOR_KEY,
+                Utils.makeEmbed(
+                        "Announcement List",
+                        "Here's a list of all the pre-written announcements I support, sorted by id. " +
+                        "To view a specific announcement, type `/announcement get [id]`.",
+                        Colors.ADMIN),
+                fields,
+                Paginator.MAX_FIELDS
+        );
+    }
+
+    /**
+     * @return whether the string is a valid announcement key: not empty, and only letters, digits, underscores, and
+     * hyphens
+     */
+    private static boolean isKey(String key) {
+        if (key.isEmpty())
+            return false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the pages of the <code>/announcement list</code> message, or <code>null</code> if the catalog is empty
+     */
+    public @Nullable Paginator getListPages() {
+        return listPages;
+    }
+
+    /**
+     * @return <code>true</code> if there are no announcements, as in the catalog used until the first one is loaded
+     */
+    public boolean isEmpty() {
+        return announcements.isEmpty();
+    }
+
+    /**
+     * @return the number of announcements
+     */
+    public int size() {
+        return announcements.size();
+    }
+
+    /**
+     * Get an announcement by its id.
+     *
+     * @param id the id, which is the position of the announcement in the file
+     * @return the announcement
+     */
+    public @NotNull Announcement get(int id) {
+        return announcements.get(id);
+    }
+
+    /**
+     * Get the key of an announcement.
+     *
+     * @param id the id of the announcement
+     * @return its key
+     */
+    public @NotNull String getKey(int id) {
+        return keys.get(id);
+    }
+
+    /**
+     * Get the id of an announcement from its key.
+     *
+     * @param key the key
+     * @return the id, or <code>-1</code> if there is no announcement with that key
+     */
+    public int indexOf(@NotNull String key) {
+        return ids.getOrDefault(key, -1);
+    }
+
+    /**
+     * Pick a random announcement from the whole catalog, with probability proportional to its weight.
+     *
+     * @return the id of the announcement
+     * @throws IllegalStateException if the catalog is empty
+     */
+    public int sample() {
+        if (all == null)
+            throw new IllegalStateException("There are no announcements in the catalog");
+        return all.sample();
+    }
+
+    /**
+     * Get a {@link Selection} of some of the announcements in this catalog, for channels that only receive some of
+     * them. Keys that aren't in this catalog are ignored, and if none of them are, every announcement is selected.
+     *
+     * @param keys the keys of the announcements, or <code>null</code> to select every announcement
+     * @return the selection
+     * @throws IllegalStateException if the catalog is empty
+     */
+    public @NotNull Selection select(String @Nullable [] keys) {
+        if (all == null)
+            throw new IllegalStateException("There are no announcements in the catalog");
+        if (keys == null)
+            return all;
+
+        int[] selected = Arrays.stream(keys).mapToInt(this::indexOf).filter(id -> id >= 0).distinct().toArray();
+        return selected.length == 0 ? all : new Selection(this, selected);
+    }
+
+    /**
+     * This is a subset of the announcements in a catalog, with its own {@link AliasTable} so that the weights of the
+     * selected announcements keep the same proportions as in the whole catalog.
+     */
+    public static final class Selection {
+        private final AnnouncementCatalog catalog;
+        private final int[] ids;
+        private final AliasTable table;
+
+        private Selection(AnnouncementCatalog catalog, int[] ids) {
+            this.catalog = catalog;
+            this.ids = ids;
+
+            double[] weights = new double[ids.length];
+            for (int i = 0; i < ids.length; i++)
+                weights[i] = catalog.get(ids[i]).getWeight();
+            this.table = new AliasTable(weights);
+        }
+
+        /**
+         * @return the catalog that the announcements were selected from
+         */
+        public @NotNull AnnouncementCatalog getCatalog() {
+            return catalog;
+        }
+
+        /**
+         * @return the number of selected announcements
+         */
+        public int size() {
+            return ids.length;
+        }
+
+        /**
+         * Pick a random announcement from the selection, with probability proportional to its weight.
+         *
+         * @return the id of the announcement in the {@link #getCatalog() catalog}
+         */
+        public int sample() {
+            return ids[table.sample()];
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package announcements;
+
+import data.Setting;
+import main.TimingWheel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This is a channel that receives periodic announcements, along with the state of its countdown to the next one. Each
+ * channel has its own delay, message check count, and selection from the {@link AnnouncementCatalog}, loaded from the
+ * <code>announcement_channels.csv</code> resource by {@link AnnouncementLoader#loadChannels()}.
+ * <p>
+ * The countdown works the same way in every channel. Messages in the channel {@link #recordActivity() record activity},
+ * which is no more than a volatile write. A single {@link #check()} is armed on the shared {@link TimingWheel}, and when
+ * it runs, it re-arms itself for the rest of the delay if there has been activity since. Otherwise, it disarms and
+ * hands the channel to an {@link AnnounceTimer}. A channel that is waiting therefore costs one entry on the wheel, no
+ * matter how busy it is.
+ */
+public class AnnouncementChannel {
+    /**
+     * The maximum number of times to redraw an announcement that was sent recently.
+     */
+    private static final int MAX_REDRAWS = 32;
+
+    /**
+     * The number of hours ahead to look for a good {@link ActivityProfile#nextWindow(long, int) window} to send an
+     * announcement in.
+     */
+    private static final int WINDOW_HORIZON = 24;
+
+    private final long channelId;
+    private final int delay;
+    private final int messagesCheck;
+    private final String[] catalog;
+
+    /**
+     * The selection of announcements from the current {@link AnnouncementCatalog} that this channel may receive. It is
+     * rebuilt when the catalog is reloaded.
+     */
+    private AnnouncementCatalog.Selection selection = null;
+
+    /**
+     * The keys of the most recent announcements sent to this channel, newest first, which are not repeated.
+     */
+    private final Deque<String> history = new ArrayDeque<>();
+
+    /**
+     * The most recent messages in this channel, which the {@link AnnounceTimer} checks before sending an announcement.
+     * The {@link #messagesCheck} can't be larger than its capacity.
+     */
+    private final RecentMessages recentMessages = new RecentMessages(100);
+
+    /**
+     * The hourly message rates in this channel, which decide when during the day its announcements are sent.
+     */
+    private final ActivityProfile profile = new ActivityProfile();
+
+    /**
+     * The time of the most recent message in this channel, in epoch milliseconds. This is wall clock time rather than
+     * {@link System#nanoTime()} so that the {@link AnnouncementLoader#saveSchedule() saved schedule} is still
+     * meaningful after a restart.
+     */
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * Whether a {@link #check()} is currently scheduled. At most one check is scheduled at a time.
+     */
+    private final AtomicBoolean armed = new AtomicBoolean();
+
+    /**
+     * The time at which an announcement is due, in epoch milliseconds, once the channel has been quiet for the delay
+     * and is only waiting for a good window. This is <code>0</code> otherwise.
+     */
+    private volatile long deferredUntil = 0;
+
+    /**
+     * Create an announcement channel.
+     *
+     * @param channelId     the id of the channel
+     * @param delay         the number of seconds the channel must be quiet before an announcement is sent
+     * @param messagesCheck the number of recent messages to {@link AnnounceTimer validate} before an announcement
+     * @param catalog       the keys of the announcements that may be sent in this channel, or <code>null</code> for
+     *                      every announcement
+     */
+    public AnnouncementChannel(long channelId, int delay, int messagesCheck, String @Nullable [] catalog) {
+        this.channelId = channelId;
+        this.delay = delay;
+        this.messagesCheck = Math.min(messagesCheck, recentMessages.capacity());
+        this.catalog = catalog;
+    }
+
+    /**
+     * @return the id of the channel
+     */
+    public long getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * @return the number of seconds the channel must be quiet before an announcement is sent
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+    /**
+     * @return the number of recent messages to validate before an announcement is sent
+     */
+    public int getMessagesCheck() {
+        return messagesCheck;
+    }
+
+    /**
+     * @return the keys of the announcements that may be sent in this channel, or <code>null</code> for every
+     * announcement
+     */
+    public String @Nullable [] getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Pick a random announcement to send to this channel from its catalog, with probability proportional to its
+     * weight. An announcement that was among the last {@link Setting#ANNOUNCEMENT_REPEAT_WINDOW} sent to this channel
+     * is redrawn, unless the catalog is too small to avoid it. The pick is recorded, so that it won't be repeated.
+     *
+     * @param catalog the current catalog
+     * @return the id of the announcement in the catalog
+     */
+    public synchronized int pickAnnouncement(@NotNull AnnouncementCatalog catalog) {
+        if (selection == null || selection.getCatalog() != catalog)
+            selection = catalog.select(this.catalog);
+
+        // With n announcements to choose from, at most n - 1 can be excluded
+        int window = Math.max(0, Math.min(Setting.ANNOUNCEMENT_REPEAT_WINDOW, selection.size() - 1));
+        while (history.size() > window)
+            history.removeLast();
+
+        // Rejection sampling keeps the relative weights of the other announcements. It is bounded in case the
+        // remaining announcements have very little weight.
+        int id = selection.sample();
+        for (int attempt = 0; attempt < MAX_REDRAWS && history.contains(catalog.getKey(id)); attempt++)
+            id = selection.sample();
+
+        if (window > 0) {
+            history.remove(catalog.getKey(id));
+            history.addFirst(catalog.getKey(id));
+            if (history.size() > window)
+                history.removeLast();
+        }
+        return id;
+    }
+
+    /**
+     * @return the most recent messages in this channel
+     */
+    public @NotNull RecentMessages getRecentMessages() {
+        return recentMessages;
+    }
+
+    /**
+     * @return the profile of the hourly message rates in this channel
+     */
+    public @NotNull ActivityProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return the time at which the next announcement is due, in epoch milliseconds, if it is waiting for a good
+     * window; <code>0</code> otherwise
+     */
+    public long getDeferredUntil() {
+        return deferredUntil;
+    }
+
+    /**
+     * @return the time of the most recent message in this channel, in epoch milliseconds
+     */
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * @return whether a countdown to the next announcement is running
+     */
+    public boolean isArmed() {
+        return armed.get();
+    }
+
+    /**
+     * Record a message in this channel, postponing the next announcement until the channel has been quiet for the full
+     * delay again. This is called for every message in the channel, from its event lane, so it does no more than a
+     * volatile write unless the countdown needs to be started.
+     */
+    public void recordActivity() {
+        lastActivity = System.currentTimeMillis();
+        profile.record(lastActivity);
+
+        // Nothing is armed after an announcement is sent or postponed, so the next message starts a new countdown
+        if (AnnouncementLoader.isRunning() && !armed.get() && armed.compareAndSet(false, true))
+            arm(TimeUnit.SECONDS.toMillis(delay));
+    }
+
+    /**
+     * Restore the countdown from a {@link AnnouncementLoader#saveSchedule() saved schedule}. If a countdown was running,
+     * the channel is armed for whatever remains of the delay since the saved activity, which may be nothing at all if
+     * the delay elapsed while the bot was offline. Otherwise, the channel waits for the next message, just as it did
+     * before the restart.
+     *
+     * @param savedActivity the saved time of the most recent message, in epoch milliseconds
+     * @param pending       whether a countdown was running when the schedule was saved
+     */
+    void restore(long savedActivity, boolean pending) {
+        lastActivity = savedActivity;
+        if (pending && armed.compareAndSet(false, true))
+            arm(savedActivity + TimeUnit.SECONDS.toMillis(delay) - System.currentTimeMillis());
+    }
+
+    private void arm(long delayMillis) {
+        AnnouncementLoader.wheel.schedule(this::check, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This runs on the {@link AnnouncementLoader#wheel timing wheel} once the delay since the last recorded activity
+     * may have elapsed. If there has been more activity since, the check is re-armed for the rest of the delay.
+     * <p>
+     * Once the channel has been quiet for the delay, the announcement waits for the next hour in which the {@link
+     * #profile} predicts that the channel is quiet but still has readers, such as the next morning. The delay is no
+     * longer checked during that wait, as a window with readers is rarely quiet for long.
+     * <p>
+     * Finally, the check disarms and sends an announcement. The {@link AnnounceTimer} may decide to postpone the
+     * announcement, in which case the channel stays disarmed until the next message is {@link #recordActivity()
+     * recorded}.
+     */
+    private void check() {
+        if (!AnnouncementLoader.isRunning()) {
+            deferredUntil = 0;
+            armed.set(false);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (deferredUntil == 0) {
+            long remaining = lastActivity + TimeUnit.SECONDS.toMillis(delay) - now;
+            if (remaining > 0) {
+                arm(remaining);
+                return;
+            }
+
+            long window = profile.nextWindow(now, WINDOW_HORIZON);
+            if (window > now) {
+                deferredUntil = window;
+                arm(window - now);
+                return;
+            }
+        } else if (deferredUntil > now) {
+            arm(deferredUntil - now);
+            return;
+        }
+
+        deferredUntil = 0;
+        armed.set(false);
+        new AnnounceTimer(this).run();
+    }
+}
@@ -1,218 +1,391 @@
 package announcements;
 
-import commands.faq.FAQEntry;
 import data.*;
-import main.Utils;
-import net.dv8tion.jda.api.EmbedBuilder;
+import main.CsvReader;
+import main.FileWatcher;
+import main.Resources;
+import main.TimingWheel;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TimerTask;
-import java.util.concurrent.*;
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class AnnouncementLoader {
     /**
-     * This list contains all the possible announcement messages that the bot can choose from when it sends an
-     * announcement to the AP Students server.
+     * This is the current {@link AnnouncementCatalog} of all the possible announcement messages that the bot can choose
+     * from when it sends an announcement. It is replaced as a whole whenever <code>announcements.csv</code> changes.
      */
-    private static final List<Announcement> announcements = new ArrayList<>();
+    private static volatile AnnouncementCatalog catalog = AnnouncementCatalog.EMPTY;
 
     public static final Logger LOG = JDALogger.getLog(AnnouncementLoader.class);
-    public static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
-    public static final TimerTask announcementTask = new AnnounceTimer();
-    public static ScheduledFuture<?> schedule;
 
     /**
-     * This loads all the announcements into {@link #announcements} and their corresponding frequency weights into
-     * weights. They will later be used to send announcements in the <code>#apstats</code> channel.
+     * The timing wheel shared by the countdowns in every {@link AnnouncementChannel}. Announcement delays are measured
+     * in minutes or hours, so a one second tick is plenty, and a single thread can keep thousands of channels waiting.
+     */
+    static final TimingWheel wheel = new TimingWheel("StatsBot Announcements", 1, TimeUnit.SECONDS, 512);
+
+    /**
+     * How often the announcement schedule is {@link #saveSchedule() saved}, in seconds.
+     */
+    private static final int SAVE_INTERVAL = 60;
+
+    /**
+     * The channels that receive announcements, by channel id. This is replaced as a whole by {@link #loadChannels()},
+     * so that the event threads can look up channels without locking.
+     */
+    private static volatile Map<Long, AnnouncementChannel> channels = Map.of();
+
+    /**
+     * Whether the timer has been {@link #initiateTimer() initiated}. Until then, activity is recorded but no
+     * announcements are scheduled.
+     */
+    private static volatile boolean started = false;
+
+    /**
+     * While this is true, no announcements are sent and activity doesn't schedule any. It is set by the {@link
+     * events.SurgeMonitor SurgeMonitor} during traffic surges, when an announcement would only get in the way.
+     */
+    private static volatile boolean suspended = false;
+
+    /**
+     * This loads the {@link #catalog} of announcements. If {@link Setting#ANNOUNCEMENTS_FILE} exists, the catalog is
+     * loaded from that file, so that announcements can be edited without rebuilding the bot. Otherwise, it is loaded
+     * from the <code>announcements.csv</code> resource.
+     * <p>
+     * If the catalog can't be loaded, the previous one is kept.
      */
     public static void loadAnnouncements() {
-        announcements.add(
-                new Announcement(
-                        "Survey Reminder",
-                        Discord.EMOJI_MEGA,
-                        "Have you taken AP Statistics already? Don't forget to complete " +
-                        Utils.link("this survey", Link.SURVEY) + " to help future students!",
-                        Link.SURVEY,
-                        "Take the Survey!",
-                        3)
-                        .prepareBuild()
-        );
-
-        announcements.add(
-                new Announcement(
-                        "Frequently Asked Questions",
-                        Discord.EMOJI_GREY_QUESTION,
-                        "Are you new to AP Statistics? Check out " +
-                        Utils.link("this FAQ", Link.FAQ) + " from pins with plenty of pre-written " +
-                        "answers to common questions.",
-                        Link.FAQ,
-                        "View the FAQ!",
-                        3)
-                        .prepareBuild()
-        );
-
-        announcements.add(
-                new Announcement(
-                        "Question Help",
-                        Discord.EMOJI_PENCIL,
-                        "Looking for help with a specific problem? See our " +
-                        Utils.link("guide", Link.FAQ_ASKING_QUESTIONS) + " to asking good questions, " +
-                        "and don't forget to use " + Utils.mention(ID.AP_BOT) + "'s `;question` command to ping " +
-                        "helpers.",
-                        1
-                ).prepareBuild()
-        );
-
-        announcements.add(
-                new Announcement(
-                        "Resources",
-                        Discord.EMOJI_BOOKS,
-                        "Looking for high quality AP Statistics resources? Check out our " +
-                        Utils.link("resources list", FAQEntry.entries.get(0).getFullLink()) +
-                        " for college board resources, textbooks, prep books, practice exams, curricula, and more.",
-                        3
-                ).prepareBuild()
-        );
-
-        announcements.add(
-                new Announcement(
-                        "Update AP Scores",
-                        Discord.EMOJI_NEWSPAPER,
-                        "Was your AP Statistics score released? Don't forget to update your " +
-                        Utils.link("survey response", Link.SURVEY) + "!",
-                        Link.SURVEY,
-                        "AP Stats Survey",
-                        1
-                ).prepareBuild()
-        );
-
-        announcements.add(
-                new Announcement(
-                        "FAQ Feedback",
-                        "",
-                        "Have you been using the " + Utils.link("AP Statistics FAQ", Link.FAQ) + "? Don't " +
-                        "forget to fill out the " + Utils.link("FAQ feedback survey", Link.FAQ_FEEDBACK) +
-                        " to help us improve it.",
-                        Link.FAQ_FEEDBACK,
-                        "FAQ Feedback Survey",
-                        1
-                ).prepareBuild()
-        );
-
-        weightAnnouncements();
-        LOG.info("Loaded pre-written announcements");
-    }
-
-    /**
-     * Configures an instance of {@link AnnounceTimer} to send periodic announcements to Discord. This is done by simply
-     * calling {@link #resetTimer()} and logging the initiation of the timer.
+        try {
+            Resources.Csv csv = Resources.readCsv(
+                    "/announcements.csv", getAnnouncementsFile(), AnnouncementCatalog.COLUMNS);
+            AnnouncementCatalog loaded = AnnouncementCatalog.parse(csv.rows());
+            catalog = loaded;
+            loaded.getListPages().publish();
+            LOG.info("Loaded " + loaded.size() + " announcements from " + csv.source());
+
+        } catch (Exception e) {
+            LOG.error("Failed to load announcements. Keeping the previous " + catalog.size() + " announcements.", e);
+        }
+    }
+
+    /**
+     * Watch {@link Setting#ANNOUNCEMENTS_FILE} and {@link #loadAnnouncements() reload} the catalog whenever it changes.
+     * The new catalog replaces the old one atomically, and the channels pick it up the next time they send an
+     * announcement, so the timer keeps running throughout.
      */
-    public static void initiateTimer() {
-        resetTimer();
-        LOG.info("Initiated announcement timer");
+    public static void watchAnnouncements() {
+        Path file = getAnnouncementsFile();
+        if (file == null)
+            return;
+
+        try {
+            FileWatcher.watch(file, AnnouncementLoader::loadAnnouncements);
+        } catch (Exception e) {
+            LOG.error("Failed to watch " + file + " for changes", e);
+        }
+    }
+
+    /**
+     * @return the path of {@link Setting#ANNOUNCEMENTS_FILE}, or <code>null</code> if it isn't set
+     */
+    private static @Nullable Path getAnnouncementsFile() {
+        return Setting.ANNOUNCEMENTS_FILE.isEmpty() ? null : Path.of(Setting.ANNOUNCEMENTS_FILE);
     }
 
     /**
-     * Reset the timer countdown in the event that it must be postponed, such as when a user sends a message in the
-     * announcements channel. This method simply cancels creates the timer again, and is identical to {@link
-     * #initiateTimer()} except that it does not log any output.
+     * This loads the channels that receive announcements from the <code>announcement_channels.csv</code> resource.
+     * Each line has a channel id, followed by the delay (in seconds) and messages check for that channel, and its
+     * catalog: either <code>all</code>, or the {@link AnnouncementCatalog keys} of the announcements it may receive
+     * separated by <code>|</code>.
+     * A blank delay or messages check falls back to {@link Setting#ANNOUNCEMENT_DELAY} or {@link
+     * Setting#ANNOUNCEMENT_MESSAGES_CHECK}.
+     * <p>
+     * If the file can't be loaded, announcements are only sent in the default {@link Setting#ANNOUNCEMENT_CHANNEL}.
+     * This must be called before {@link #initiateTimer()}.
      */
-    public static void resetTimer() {
-        // If the timer is running, cancel it
-        clearTimer();
+    public static void loadChannels() {
+        Map<Long, AnnouncementChannel> loaded = new LinkedHashMap<>();
 
-        schedule = timer.schedule(
-                announcementTask,
-                Setting.ANNOUNCEMENT_DELAY,
-                TimeUnit.SECONDS);
+        try {
+            for (CsvReader.Row row : Resources.readCsv("/announcement_channels.csv", null, 4).rows()) {
+                long id = Long.parseLong(row.get(0));
+                loaded.put(id, new AnnouncementChannel(
+                        id,
+                        row.get(1).isEmpty() ? Setting.ANNOUNCEMENT_DELAY : Integer.parseInt(row.get(1)),
+                        row.get(2).isEmpty() ? Setting.ANNOUNCEMENT_MESSAGES_CHECK : Integer.parseInt(row.get(2)),
+                        parseCatalog(row.get(3))));
+            }
+
+            LOG.info("Loaded " + loaded.size() + " announcement channels");
+
+        } catch (Exception e) {
+            LOG.error("Failed to load announcement_channels.csv. Using the default announcement channel.", e);
+            loaded.clear();
+            loaded.put(Setting.ANNOUNCEMENT_CHANNEL, new AnnouncementChannel(Setting.ANNOUNCEMENT_CHANNEL,
+                    Setting.ANNOUNCEMENT_DELAY, Setting.ANNOUNCEMENT_MESSAGES_CHECK, null));
+        }
+
+        channels = Collections.unmodifiableMap(loaded);
     }
 
     /**
-     * This stops the timer (if a timer exists), either in preparation for resetting it, or because channel validation
-     * failed and the bot must wait until another message is sent before restarting the timer.
+     * Parse the catalog of an announcement channel. Keys that aren't in the current {@link #catalog} are logged, but
+     * kept, in case they are added to the catalog later.
+     *
+     * @param catalog either <code>all</code> or a list of announcement keys separated by <code>|</code>
+     * @return the announcement keys, or <code>null</code> for every announcement
      */
-    public static void clearTimer() {
-        if (schedule != null)
-            schedule.cancel(false);
+    private static String[] parseCatalog(String catalog) {
+        if (catalog.equalsIgnoreCase("all"))
+            return null;
+
+        String[] keys = Arrays.stream(catalog.split("\\|")).map(String::strip).toArray(String[]::new);
+        for (String key : keys)
+            if (AnnouncementLoader.catalog.indexOf(key) == -1)
+                LOG.warn("Unknown announcement key " + key + " in catalog " + catalog);
+        return keys;
     }
 
     /**
-     * Returns the desired announcement message from {@link #announcements} to post to Discord.
+     * Get the announcement settings and state for a channel.
      *
-     * @param id the position of the desired announcement in the {@link #announcements} array
-     * @return the announcement message to send
+     * @param channelId the id of the channel
+     * @return the channel, or <code>null</code> if it doesn't receive announcements
      */
-    public static Message getAnnouncementMessage(int id) {
-        return announcements.get(id).getMessage();
+    public static @Nullable AnnouncementChannel getChannel(long channelId) {
+        return channels.get(channelId);
     }
 
     /**
-     * Returns a random announcement message from {@link #announcements} to post to Discord. The random assignment is
-     * based on the announcement weights. This method works by simply using {@link #getRandomId()} to obtain an id and
-     * retrieving the corresponding announcement from the {@link #announcements} list.
+     * @return the ids of every channel that receives announcements
+     */
+    public static long @NotNull [] getChannelIds() {
+        return channels.keySet().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Starts the timer that sends periodic announcements to Discord through the {@link AnnounceTimer}. Each channel
+     * picks up its countdown from the {@link #saveSchedule() saved schedule}, so a restart doesn't postpone every
+     * announcement by the full delay. Channels that aren't in the saved schedule start a full delay from now. The
+     * {@link ActivityProfile activity profiles} are restored as well.
+     * <p>
+     * From then on, the schedule is saved every {@link #SAVE_INTERVAL} seconds and when the bot shuts down.
+     */
+    public static void initiateTimer() {
+        started = true;
+
+        Map<Long, SavedChannel> saved = readSchedule();
+        long now = System.currentTimeMillis();
+        for (AnnouncementChannel channel : channels.values()) {
+            SavedChannel entry = saved.get(channel.getChannelId());
+            if (entry != null && entry.profile() != null) {
+                try {
+                    channel.getProfile().restore(entry.profile());
+                } catch (Exception e) {
+                    LOG.warn("Failed to restore the activity profile of channel " + channel.getChannelId(), e);
+                }
+            }
+            channel.getProfile().start(now);
+
+            if (entry == null)
+                channel.restore(now, true);
+            else
+                channel.restore(entry.lastActivity(), entry.pending());
+        }
+
+        scheduleSave();
+        Runtime.getRuntime().addShutdownHook(new Thread(AnnouncementLoader::saveSchedule, "StatsBot Schedule-Saver"));
+        LOG.info("Initiated announcement timer for " + channels.size() + " channels (" +
+                 (channels.size() - saved.size()) + " not in the saved schedule)");
+    }
+
+    /**
+     * Save the schedule periodically. The save task re-arms itself on the {@link #wheel}, and as writing the file is
+     * slow compared to a countdown check, the write itself runs on a separate thread.
+     */
+    private static void scheduleSave() {
+        wheel.schedule(() -> {
+            Thread thread = new Thread(AnnouncementLoader::saveSchedule, "StatsBot Schedule-Saver");
+            thread.setDaemon(true);
+            thread.start();
+            scheduleSave();
+        }, SAVE_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Save the time of the latest activity in each announcement channel to {@link Setting#ANNOUNCEMENT_SCHEDULE_FILE},
+     * along with whether its countdown is running and its {@link ActivityProfile#save() activity profile}. The file is
+     * written in full to a temporary file first and then
+     * moved into place, so that a crash can't leave a partially written schedule behind.
+     */
+    public static synchronized void saveSchedule() {
+        if (!started || Setting.ANNOUNCEMENT_SCHEDULE_FILE.isEmpty())
+            return;
+
+        try {
+            Path file = Path.of(Setting.ANNOUNCEMENT_SCHEDULE_FILE).toAbsolutePath();
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (BufferedWriter out = Files.newBufferedWriter(temp)) {
+                out.write("CHANNEL,LAST_ACTIVITY,PENDING,PROFILE");
+                out.newLine();
+                for (AnnouncementChannel channel : channels.values()) {
+                    out.write(channel.getChannelId() + "," + channel.getLastActivity() + "," + channel.isArmed() +
+                              "," + channel.getProfile().save());
+                    out.newLine();
+                }
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LOG.error("Failed to save the announcement schedule", e);
+        }
+    }
+
+    /**
+     * The state of a channel in the {@link #saveSchedule() saved schedule}.
      *
-     * @return the announcement message to send
+     * @param lastActivity the time of the latest activity, in epoch milliseconds
+     * @param pending      whether a countdown was running
+     * @param profile      the saved {@link ActivityProfile}, or <code>null</code> if the schedule predates profiles
      */
-    public static Message getAnnouncementMessage() {
-        return announcements.get(getRandomId()).getMessage();
+    private record SavedChannel(long lastActivity, boolean pending, @Nullable String profile) {
     }
 
     /**
-     * This returns a random announcement ID based on the announcement weights.
+     * Read the schedule saved by {@link #saveSchedule()}.
      *
-     * @return a random announcement id
+     * @return the saved state of each channel, by channel id. This is empty if there is no saved schedule or it can't
+     * be read.
      */
-    public static int getRandomId() {
-        double r = Math.random();
-        for (int i = 0; i < announcements.size() - 1; i++)
-            if (announcements.get(i).getWeight() >= r)
-                return i;
-            else
-                r -= announcements.get(i).getWeight();
+    private static Map<Long, SavedChannel> readSchedule() {
+        Map<Long, SavedChannel> saved = new HashMap<>();
+        if (Setting.ANNOUNCEMENT_SCHEDULE_FILE.isEmpty())
+            return saved;
 
-        return announcements.size() - 1;
+        Path file = Path.of(Setting.ANNOUNCEMENT_SCHEDULE_FILE);
+        if (!Files.exists(file))
+            return saved;
+
+        try {
+            List<String> lines = Files.readAllLines(file);
+            for (String line : lines.subList(1, lines.size())) {
+                String[] cells = line.split(",");
+                saved.put(Long.parseLong(cells[0]), new SavedChannel(
+                        Long.parseLong(cells[1]), Boolean.parseBoolean(cells[2]), cells.length > 3 ? cells[3] : null));
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to read the saved announcement schedule. Starting every countdown from now.", e);
+            saved.clear();
+        }
+
+        return saved;
     }
 
     /**
-     * This returns the number of pre-written announcements that were loaded on startup with {@link
-     * #loadAnnouncements()}.
+     * Save the schedule and stop the timer. No more announcements are sent after this.
+     */
+    public static void shutdown() {
+        saveSchedule();
+        started = false;
+        wheel.close();
+    }
+
+    /**
+     * Suspend or resume the announcement timer. While suspended, no announcements are sent, and messages in the
+     * announcement channels don't start a countdown. When resumed, every channel restarts with a full delay, but only
+     * if the timer had been {@link #initiateTimer() initiated} before.
      *
-     * @return the size of the {@link #announcements} list
+     * @param suspend <code>true</code> to suspend the timer; <code>false</code> to resume it
      */
-    public static int getAnnouncementCount() {
-        return announcements.size();
+    public static void setSuspended(boolean suspend) {
+        suspended = suspend;
+        if (!suspend && started)
+            for (AnnouncementChannel channel : channels.values())
+                channel.recordActivity();
+    }
+
+    /**
+     * @return whether the announcement timer has been {@link #initiateTimer() initiated}
+     */
+    public static boolean isTimerStarted() {
+        return started;
     }
 
     /**
-     * This converts announcement weights from relative integers to a 0-1 scale designed for comparison against {@link
-     * Math#random()}.
+     * @return whether countdowns should run: the timer is {@link #initiateTimer() initiated} and not {@link
+     * #setSuspended(boolean) suspended}
      */
-    private static void weightAnnouncements() {
-        // Compute the total sum of all the raw weights
-        double sum = 0;
-        for (Announcement a : announcements)
-            sum += a.getWeight();
+    static boolean isRunning() {
+        return started && !suspended;
+    }
 
-        // Adjust all the weights to their relative probabilities
-        for (Announcement announcement : announcements)
-            announcement.setWeight(announcement.getWeight() / sum);
+    /**
+     * @return the current {@link AnnouncementCatalog}. Use the same catalog for every lookup in one operation, as the
+     * ids may change when it is reloaded.
+     */
+    public static @NotNull AnnouncementCatalog getCatalog() {
+        return catalog;
     }
 
     /**
-     * Creates a template {@link EmbedBuilder} for announcements based on a title and description. The emoji is placed
-     * on either side of the title. The color of the embed is set to {@link Colors#ANNOUNCEMENTS} by default.
+     * Returns the desired announcement message from the {@link #catalog} to post to Discord.
      *
-     * @param title       the title of the embed
-     * @param emoji       the emoji to be placed on either side of the title
-     * @param description the description of the embed with the actual content
-     * @return a brand new {@link EmbedBuilder}
+     * @param id the position of the desired announcement in the {@link #catalog}
+     * @return the announcement message to send
      */
-    private static EmbedBuilder announcementEmbed(@NotNull String title, @NotNull String emoji, @NotNull String description) {
-        return Utils.makeEmbed(emoji + "  " + title + "  " + emoji, description, Colors.ANNOUNCEMENTS);
+    public static Message getAnnouncementMessage(int id) {
+        return catalog.get(id).getMessage();
+    }
+
+    /**
+     * Returns a random announcement message from the {@link #catalog} to post to Discord. The random assignment is
+     * based on the announcement weights.
+     *
+     * @return the announcement message to send, or <code>null</code> if no announcements are loaded
+     */
+    public static @Nullable Message getAnnouncementMessage() {
+        AnnouncementCatalog catalog = AnnouncementLoader.catalog;
+        return catalog.isEmpty() ? null : catalog.get(catalog.sample()).getMessage();
+    }
+
+    /**
+     * Returns a random announcement message for an announcement channel, chosen by {@link
+     * AnnouncementChannel#pickAnnouncement(AnnouncementCatalog)} from its catalog.
+     *
+     * @param channel the channel
+     * @return the announcement message to send, or <code>null</code> if no announcements are loaded
+     */
+    public static @Nullable Message getAnnouncementMessage(@NotNull AnnouncementChannel channel) {
+        AnnouncementCatalog catalog = AnnouncementLoader.catalog;
+        return catalog.isEmpty() ? null : catalog.get(channel.pickAnnouncement(catalog)).getMessage();
+    }
+
+    /**
+     * This returns a random announcement ID based on the announcement weights.
+     *
+     * @return a random announcement id, or <code>-1</code> if no announcements are loaded
+     */
+    public static int getRandomId() {
+        AnnouncementCatalog catalog = AnnouncementLoader.catalog;
+        return catalog.isEmpty() ? -1 : catalog.sample();
+    }
+
+    /**
+     * This returns the number of pre-written announcements in the current {@link #catalog}.
+     *
+     * @return the size of the {@link #catalog}
+     */
+    public static int getAnnouncementCount() {
+        return catalog.size();
     }
 }
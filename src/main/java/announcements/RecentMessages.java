@@ -0,0 +1,195 @@
+package announcements;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a bounded ring buffer of the most recent messages in a single channel, kept up to date from the message
+ * events the bot already receives. Each message is stored as a small {@link Summary} holding only what the {@link
+ * AnnounceTimer} needs to decide whether an announcement can be sent, so checking the channel is an in-memory scan
+ * rather than a REST request for the message history.
+ * <p>
+ * After a restart the buffer starts empty, so it doesn't know about messages sent while the bot was offline. Until it
+ * has been {@link #backfill(List) backfilled} from the channel history, {@link #isComplete(int)} is false. The same
+ * happens if deletions leave it with too few messages to be sure it has the latest ones.
+ * <p>
+ * All methods are synchronized. The buffer is written by the event lane for its channel and read by the announcement
+ * timer, so there is essentially no contention.
+ */
+public class RecentMessages {
+    /**
+     * The minimal data about a message needed to validate an announcement.
+     *
+     * @param id         the message id
+     * @param authorId   the id of the message author
+     * @param embedColor the RGB color of the message's embed if it has exactly one, or <code>-1</code> otherwise
+     * @param hasImage   whether any attachment is an image
+     */
+    public record Summary(long id, long authorId, int embedColor, boolean hasImage) {
+        /**
+         * Summarize a message.
+         *
+         * @param message the message
+         * @return the summary
+         */
+        public static @NotNull Summary of(@NotNull Message message) {
+            List<MessageEmbed> embeds = message.getEmbeds();
+            Color color = embeds.size() == 1 ? embeds.get(0).getColor() : null;
+
+            boolean hasImage = false;
+            for (Message.Attachment attachment : message.getAttachments())
+                hasImage |= attachment.isImage();
+
+            return new Summary(message.getIdLong(), message.getAuthor().getIdLong(),
+                    color == null ? -1 : color.getRGB() & 0xFFFFFF, hasImage);
+        }
+
+        /**
+         * @param color a color
+         * @return true if the message has exactly one embed, and it uses the given color
+         */
+        public boolean hasEmbedColor(@NotNull Color color) {
+            return embedColor == (color.getRGB() & 0xFFFFFF);
+        }
+    }
+
+    private final Summary[] buffer;
+
+    /**
+     * The index in the {@link #buffer} where the next message will be written.
+     */
+    private int head = 0;
+
+    private int size = 0;
+
+    /**
+     * Whether the buffer holds every recent message in the channel, up to its capacity. This is false until the
+     * buffer is {@link #backfill(List) backfilled}.
+     */
+    private boolean complete = false;
+
+    /**
+     * Create an empty buffer.
+     *
+     * @param capacity the maximum number of messages to keep
+     */
+    public RecentMessages(int capacity) {
+        this.buffer = new Summary[capacity];
+    }
+
+    /**
+     * @return the maximum number of messages kept
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Add a new message to the buffer as the most recent message, evicting the oldest if it is full.
+     *
+     * @param message the new message
+     */
+    public synchronized void add(@NotNull Message message) {
+        buffer[head] = Summary.of(message);
+        head = (head + 1) % buffer.length;
+        size = Math.min(size + 1, buffer.length);
+    }
+
+    /**
+     * Update the summary of an edited message, if it is in the buffer.
+     *
+     * @param message the edited message
+     */
+    public synchronized void update(@NotNull Message message) {
+        int index = indexOf(message.getIdLong());
+        if (index >= 0)
+            buffer[index] = Summary.of(message);
+    }
+
+    /**
+     * Remove a deleted message from the buffer, if it is in it. The messages before it move up to fill the gap, and
+     * as the buffer no longer knows the message that preceded them, it is marked incomplete.
+     *
+     * @param id the id of the deleted message
+     */
+    public synchronized void remove(long id) {
+        int index = indexOf(id);
+        if (index < 0)
+            return;
+
+        // Shift every older message forward by one slot, overwriting the deleted one
+        int oldest = (head - size + buffer.length) % buffer.length;
+        for (int i = index; i != oldest; ) {
+            int previous = (i - 1 + buffer.length) % buffer.length;
+            buffer[i] = buffer[previous];
+            i = previous;
+        }
+        buffer[oldest] = null;
+        size--;
+        complete = false;
+    }
+
+    /**
+     * Fill in older messages from the channel history, such as after a restart. Messages already in the buffer were
+     * received live and are newer, so they are kept, and the history fills the remaining space behind them.
+     *
+     * @param history the channel history, newest first (as returned by JDA)
+     */
+    public synchronized void backfill(@NotNull List<Message> history) {
+        List<Summary> merged = latest(size);
+        for (Message message : history) {
+            if (merged.size() >= buffer.length)
+                break;
+            if (indexOf(message.getIdLong()) < 0)
+                merged.add(Summary.of(message));
+        }
+
+        // Rewrite the buffer from oldest to newest
+        for (int i = 0; i < buffer.length; i++)
+            buffer[i] = null;
+        size = merged.size();
+        head = size % buffer.length;
+        for (int i = 0; i < size; i++)
+            buffer[i] = merged.get(size - 1 - i);
+        complete = true;
+    }
+
+    /**
+     * Determine whether the buffer can be trusted to hold the latest messages in the channel.
+     *
+     * @param count the number of messages needed
+     * @return true if the buffer has been {@link #backfill(List) backfilled} (since any deletion), or it has received
+     * at least <code>count</code> messages live
+     */
+    public synchronized boolean isComplete(int count) {
+        return complete || size >= count;
+    }
+
+    /**
+     * Get the most recent messages.
+     *
+     * @param count the maximum number of messages to return
+     * @return up to <code>count</code> messages, newest first
+     */
+    public synchronized @NotNull List<Summary> latest(int count) {
+        int n = Math.min(count, size);
+        List<Summary> list = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++)
+            list.add(buffer[(head - i + buffer.length) % buffer.length]);
+        return list;
+    }
+
+    private int indexOf(long id) {
+        for (int i = 1; i <= size; i++) {
+            int index = (head - i + buffer.length) % buffer.length;
+            if (buffer[index].id() == id)
+                return index;
+        }
+        return -1;
+    }
+}
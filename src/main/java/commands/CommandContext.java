@@ -0,0 +1,119 @@
+package commands;
+
+import commands.slash.SlashReplySink;
+import commands.text.CommandArgs;
+import events.EventUtils;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This is everything a command needs to know about a single request, independent of how the request arrived. The JDA
+ * listeners adapt {@link SlashCommandEvent SlashCommandEvents} and command {@link Message Messages} into contexts with
+ * the {@link #of(SlashCommandEvent)} and {@link #of(Message, CommandArgs, ReplySink)} methods, and the {@link
+ * main.Headless headless} driver creates them directly. Commands that take a context instead of a JDA object can
+ * therefore run, and be profiled, without a connection to Discord.
+ *
+ * @param command    the name of the command, without the prefix or slash
+ * @param subcommand the name of the slash subcommand, or <code>null</code> if there is none
+ * @param args       the arguments of a text command, or <code>null</code> for a slash command
+ * @param options    the options of a slash command as strings, keyed by name. This is empty for text commands.
+ * @param userId     the id of the user who used the command
+ * @param userName   the name to show for the user (their nickname, if they have one in the server)
+ * @param channelId  the id of the channel the command was used in
+ * @param guildId    the id of the server the command was used in, or <code>0</code> in direct messages
+ * @param replies    where to send the response
+ */
+public record CommandContext(
+        @NotNull String command,
+        @Nullable String subcommand,
+        @Nullable CommandArgs args,
+        @NotNull Map<String, String> options,
+        long userId,
+        @NotNull String userName,
+        long channelId,
+        long guildId,
+        @NotNull ReplySink replies) {
+
+    /**
+     * Create a context for a slash command. Replies are sent as interaction responses to the event.
+     *
+     * @param event the slash command event
+     * @return the context
+     */
+    public static @NotNull CommandContext of(@NotNull SlashCommandEvent event) {
+        Map<String, String> options = new HashMap<>();
+        for (OptionMapping option : event.getOptions())
+            options.put(option.getName(), option.getAsString());
+
+        return new CommandContext(
+                event.getName(),
+                event.getSubcommandName(),
+                null,
+                options,
+                event.getUser().getIdLong(),
+                getName(event.getUser(), event.getMember()),
+                event.getChannel() == null ? 0 : event.getChannel().getIdLong(),
+                event.getGuild() == null ? 0 : event.getGuild().getIdLong(),
+                new SlashReplySink(event));
+    }
+
+    /**
+     * Create a context for a prefixed text command.
+     *
+     * @param message the message containing the command
+     * @param args    the parsed command
+     * @param replies where to send the response
+     * @return the context
+     */
+    public static @NotNull CommandContext of(
+            @NotNull Message message, @NotNull CommandArgs args, @NotNull ReplySink replies) {
+        return new CommandContext(
+                args.get(0),
+                null,
+                args,
+                Map.of(),
+                message.getAuthor().getIdLong(),
+                getName(message.getAuthor(), message.getMember()),
+                message.getChannel().getIdLong(),
+                message.isFromGuild() ? message.getGuild().getIdLong() : 0,
+                replies);
+    }
+
+    /**
+     * Determine whether the user who used the command is an administrator, according to {@link
+     * EventUtils#isAdmin(long)}.
+     *
+     * @return <code>true</code> if the user is an administrator
+     */
+    public boolean isAdmin() {
+        return EventUtils.isAdmin(userId);
+    }
+
+    /**
+     * Get a slash command option as a number.
+     *
+     * @param name     the name of the option
+     * @param fallback the value to return if the option was not given or is not a number
+     * @return the option value
+     */
+    public long getOptionLong(@NotNull String name, long fallback) {
+        try {
+            String value = options.get(name);
+            return value == null ? fallback : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static String getName(User user, @Nullable Member member) {
+        return member == null ? user.getName() : member.getEffectiveName();
+    }
+}
@@ -0,0 +1,67 @@
+package commands;
+
+import main.Utils;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.MessageBuilder;
+import net.dv8tion.jda.api.entities.Message;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This is where a command sends its response. Commands reply through the sink in their {@link CommandContext} rather
+ * than through a JDA event, so the same command logic can answer a slash command, a prefixed text command, or a line
+ * typed into the {@link main.Headless headless} driver.
+ * <p>
+ * Replies are built as {@link Message Messages}, which are plain data and don't need a connection to Discord. Each
+ * transport decides what to do with them: the slash command sink sends an interaction response, the text command sink
+ * captures the reply so it can be tracked for edits, and the headless sink prints it.
+ */
+public interface ReplySink {
+    /**
+     * Send a reply.
+     *
+     * @param message   the reply
+     * @param ephemeral <code>true</code> if only the user who used the command should see the reply. This is ignored
+     *                  by transports that don't support it.
+     */
+    void reply(@NotNull Message message, boolean ephemeral);
+
+    /**
+     * Send a reply containing only text.
+     *
+     * @param text      the reply
+     * @param ephemeral whether only the user who used the command should see the reply
+     */
+    default void reply(@NotNull String text, boolean ephemeral) {
+        reply(new MessageBuilder(text).build(), ephemeral);
+    }
+
+    /**
+     * Send a reply containing only an embed.
+     *
+     * @param embed     the reply
+     * @param ephemeral whether only the user who used the command should see the reply
+     */
+    default void reply(@NotNull EmbedBuilder embed, boolean ephemeral) {
+        reply(Utils.buildEmbed(embed), ephemeral);
+    }
+
+    /**
+     * Send a reply to the message that the command was itself replying to. This lets a user point someone else to the
+     * reply (as with the <code>faq</code> command). If the command wasn't a reply, or the transport has no such
+     * concept, this is the same as an ordinary, non-ephemeral {@link #reply(Message, boolean) reply}.
+     *
+     * @param message the reply
+     */
+    default void replyToReferenced(@NotNull Message message) {
+        reply(message, false);
+    }
+
+    /**
+     * Acknowledge the command before a slow operation, so the transport doesn't time out waiting for the reply. The
+     * next {@link #reply(Message, boolean) reply} then completes the acknowledgement. By default, this does nothing.
+     *
+     * @param ephemeral whether the eventual reply will be ephemeral
+     */
+    default void defer(boolean ephemeral) {
+    }
+}
@@ -0,0 +1,176 @@
+package commands.faq;
+
+import commands.interactions.Paginator;
+import data.Colors;
+import data.Link;
+import main.CsvReader;
+import main.Utils;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.interactions.components.Button;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is an immutable snapshot of the FAQ table of contents loaded from <code>faq.csv</code>: every {@link FAQEntry},
+ * the questions alone, the {@link FAQIndex search index} over them, and the pages of the message sent in response to
+ * the <code>/faq</code> command, which are built once here by a {@link Paginator}.
+ * <p>
+ * When the file changes, {@link FAQLoader} parses a whole new catalog and swaps it in at once. A command that is
+ * already running keeps using the catalog it started with, so it never sees a half-loaded list, or search results
+ * numbered differently from the questions.
+ */
+public final class FAQCatalog {
+    /**
+     * The number of columns in <code>faq.csv</code>: the type, text, and link.
+     */
+    public static final int COLUMNS = 3;
+
+    /**
+     * The key of the table of contents {@link Paginator}.
+     */
+    private static final String PAGINATOR_KEY = "faq";
+
+    /**
+     * A catalog with no entries, used until the first one is loaded.
+     */
+    static final FAQCatalog EMPTY = new FAQCatalog(List.of(), List.of(), FAQIndex.EMPTY, null);
+
+    private final List<FAQEntry> entries;
+    private final List<FAQEntry> questions;
+    private final FAQIndex index;
+    private final Paginator pages;
+
+    private FAQCatalog(List<FAQEntry> entries, List<FAQEntry> questions, FAQIndex index, Paginator pages) {
+        this.entries = entries;
+        this.questions = questions;
+        this.index = index;
+        this.pages = pages;
+    }
+
+    /**
+     * Parse a catalog from the rows of <code>faq.csv</code>. Each row corresponds to a category or question in the
+     * document and contains a link to that section.
+     *
+     * @param rows the rows of the file, read with {@link #COLUMNS} columns
+     * @return the catalog
+     * @throws IllegalArgumentException if a line can't be parsed, a question comes before the first category, or there
+     *                                  are no questions
+     */
+    public static @NotNull FAQCatalog parse(@NotNull List<CsvReader.Row> rows) {
+        List<FAQEntry> entries = new ArrayList<>();
+        List<FAQEntry> questions = new ArrayList<>();
+        List<MessageEmbed.Field> fields = new ArrayList<>();
+
+        // The numbered questions in the current category, which become one or more fields when the category ends
+        String category = null;
+        List<String> lines = new ArrayList<>();
+
+        for (CsvReader.Row row : rows) {
+            FAQEntry entry = FAQEntry.of(row.cells());
+            if (entry.type().isEmpty())
+                throw new IllegalArgumentException("Invalid FAQ entry on " + row);
+            entries.add(entry);
+
+            if (entry.type().equals("category")) {
+                if (category != null)
+                    fields.addAll(categoryFields(category, lines));
+                category = entry.text();
+                lines.clear();
+            } else {
+                if (category == null)
+                    throw new IllegalArgumentException("Question on line " + row.line() + " has no category");
+                questions.add(entry);
+                lines.add(questions.size() + ". " + entry.getHyperlink());
+            }
+        }
+
+        if (questions.isEmpty())
+            throw new IllegalArgumentException("There are no questions in the FAQ");
+        fields.addAll(categoryFields(category, lines));
+
+        fields.add(Utils.makeField(
+                "",
+                "__**Submit Feedback**__\n" +
+                "Enjoying the FAQ? Help us improve it by completing " +
+                Utils.link("this survey", Link.FAQ_FEEDBACK) + "!")
+        );
+
+        // Build the actual embed, split into pages if it is too long for one
+        Paginator pages = Paginator.of(
+                PAGINATOR_KEY,
+                Utils.makeEmbed(
+                        "Frequently Asked Questions",
+                        "Looking for answers to common questions? Check out this " +
+                        "handy AP Stats " + Utils.link("FAQ", Link.FAQ) + ". It's based on data " +
+                        "from a " + Utils.link("survey", Link.SURVEY) + " of over 100 past " +
+                        "students.\n\n**__Table of Contents__**",
+                        Colors.INFO),
+                fields,
+                Paginator.MAX_FIELDS,
+                Button.link(Link.FAQ, "Open the FAQ")
+        );
+
+        return new FAQCatalog(List.copyOf(entries), List.copyOf(questions), FAQIndex.build(entries), pages);
+    }
+
+    /**
+     * Make the fields for a category of the table of contents. A category with too many questions for one field is
+     * continued in the next.
+     */
+    private static List<MessageEmbed.Field> categoryFields(String category, List<String> lines) {
+        if (lines.isEmpty())
+            return List.of(Utils.makeField(category, ""));
+        return Paginator.fields(category, lines, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return every entry in the FAQ in order, including categories
+     */
+    public @NotNull List<FAQEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the same as {@link #getEntries()}, except that categories are left out
+     */
+    public @NotNull List<FAQEntry> getQuestions() {
+        return questions;
+    }
+
+    /**
+     * @return the search index over the questions in this catalog
+     */
+    public @NotNull FAQIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Get a question by its number. Note that questions are 1 indexed, meaning the first question is number 1. For a
+     * complete list of questions and their numbers, use the <code>/faq</code> command in Discord.
+     *
+     * @param id the number of the question, from 1 to the number of {@link #getQuestions() questions}
+     * @return the question
+     */
+    public @NotNull FAQEntry getQuestion(int id) {
+        return questions.get(id - 1);
+    }
+
+    /**
+     * @return the first page of the message sent in response to the <code>/faq</code> command, or <code>null</code> if
+     * this is the {@link #EMPTY} catalog
+     */
+    public Message getMessage() {
+        return pages == null ? null : pages.getPage(0);
+    }
+
+    /**
+     * @return the pages of the message sent in response to the <code>/faq</code> command, or <code>null</code> if this
+     * is the {@link #EMPTY} catalog
+     */
+    public Paginator getPages() {
+        return pages;
+    }
+}
@@ -1,63 +1,62 @@
 package commands.faq;
 
-import commands.slash.GlobalCommands;
 import data.Link;
+import main.CsvReader;
 import main.Utils;
 import net.dv8tion.jda.api.EmbedBuilder;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
 
 public record FAQEntry(String type, String text, String link) {
-    /**
-     * This is the list of all {@link FAQEntry} instances imported from <code>faq.csv</code>. It is filled on startup by
-     * {@link GlobalCommands#loadFAQTableOfContents()}.
-     */
-    public static final List<FAQEntry> entries = new ArrayList<>();
-
-    /**
-     * This is the same as {@link #entries}, except that it excludes categories in the FAQ document and only contains
-     * questions.
-     */
-    public static final List<FAQEntry> questions = new ArrayList<>();
-
-    /**
-     * Get a {@link FAQEntry} by its index in {@link #entries}. Note that this list is 1 indexed, meaning the first
-     * entry has an index of 1. For a complete list of entries and corresponding ids, use the <code>/faq</code> command
-     * in Discord.
-     *
-     * @param index the index of the desired entry. Note that this ranges from 1 to {@link #getEntryCount()}.
-     * @return the {@link FAQEntry} at the specified index
-     */
-    public static FAQEntry getEntry(int index) {
-        return entries.get(index - 1);
-    }
-
-    public static int getEntryCount() {
-        return entries.size();
-    }
-
     /**
      * This takes a line from <code>faq.csv</code> containing an faq entry in the format
      * <br>
      * <code>[type],[text],[link]</code>
      * <br>
-     * and parses that into a {@link FAQEntry} record using regex. If the regex match fails, an {@link FAQEntry}
-     * instance with empty parameters is returned instead.
+     * and parses that into a {@link FAQEntry} record. If the text contains commas, it must be quoted. If the line is
+     * invalid, an {@link FAQEntry} instance with empty parameters is returned instead.
      *
      * @param csvLine the line of csv code to parse into a type, text, and link
      * @return the newly created {@link FAQEntry} instance
      */
     public static FAQEntry of(String csvLine) {
-        Matcher matcher = Pattern.compile("^(\\w+),(.+),(\\w\\.[\\w\\d]+)$").matcher(csvLine);
-        if (matcher.find())
-            return new FAQEntry(matcher.group(1), matcher.group(2), matcher.group(3));
+        return of(CsvReader.split(csvLine, 3));
+    }
+
+    /**
+     * This creates a {@link FAQEntry} from the cells of a row in <code>faq.csv</code>, which has already been split by
+     * a {@link CsvReader}. The type must be a single word and the link must look like a Google docs heading id, such as
+     * <code>h.8yqe24dedm9j</code>. If they don't, an {@link FAQEntry} instance with empty parameters is returned
+     * instead.
+     *
+     * @param cells the type, text, and link
+     * @return the newly created {@link FAQEntry} instance
+     */
+    public static FAQEntry of(String @NotNull [] cells) {
+        String type = cells[0].strip();
+        String text = cells[1].strip();
+        String link = cells[2].strip();
+
+        if (isWord(type) && !text.isEmpty()
+            && link.indexOf('.') == 1 && isWord(link.substring(0, 1)) && isWord(link.substring(2)))
+            return new FAQEntry(type, text, link);
         else
             return new FAQEntry("", "", "");
     }
 
+    /**
+     * @return whether the string is not empty and contains only letters, digits, and underscores
+     */
+    private static boolean isWord(String string) {
+        if (string.isEmpty())
+            return false;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_')
+                return false;
+        }
+        return true;
+    }
+
     /**
      * This returns an {@link EmbedBuilder}-ready hyperlink using the name of this entry and the Google docs section
      * link.
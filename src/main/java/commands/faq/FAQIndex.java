@@ -0,0 +1,257 @@
+package commands.faq;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.*;
+
+/**
+ * This is an immutable full-text index over the questions in the FAQ, ranked with
+ * <a href="https://en.wikipedia.org/wiki/Okapi_BM25">Okapi BM25</a>. It powers <code>%faq [keywords]</code>.
+ * <p>
+ * Each question is indexed along with the name of its category, so that a search for "calculator" finds every question
+ * about calculators. The text is split into words, which are then normalized in three steps:
+ * <ol>
+ *     <li>Common abbreviations are replaced with the words they stand for, according to {@link #SYNONYMS}.
+ *     <li>{@link #STOP_WORDS Stop words} such as "how" and "the" are dropped.
+ *     <li>The rest are {@link #stem(String) stemmed}, so that "studying" and "studies" both match "study".
+ * </ol>
+ * The index maps each resulting term to its postings: the questions that contain it, and how many times. A search only
+ * visits the postings of its own terms, so it takes microseconds.
+ * <p>
+ * Each {@link FAQCatalog} builds its own index when it is parsed, so the index always numbers the questions the same way
+ * as the catalog it belongs to, and is swapped in along with it.
+ */
+public final class FAQIndex {
+    private static final Logger LOG = JDALogger.getLog(FAQIndex.class);
+
+    /**
+     * The BM25 term frequency saturation parameter. Higher values give repeated words more weight.
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * The BM25 length normalization parameter, from 0 (none) to 1 (full). FAQ questions are short and similar in
+     * length, so this matters less than usual.
+     */
+    private static final double B = 0.75;
+
+    /**
+     * Words that are too common to say anything about a question.
+     */
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "about", "am", "an", "and", "any", "are", "as", "at", "be", "by", "can", "could", "do", "does",
+            "for", "from", "get", "how", "i", "if", "in", "is", "it", "me", "much", "my", "of", "on", "or",
+            "should", "so", "than", "that", "the", "there", "this", "to", "was", "we", "what", "when", "where",
+            "which", "who", "why", "will", "with", "would", "you", "your"
+    );
+
+    /**
+     * Abbreviations and alternative words, mapped to the words used in the FAQ. A synonym may expand to several words.
+     * Plurals are matched through their {@link #stem(String) stem}, so "calcs" is also replaced.
+     */
+    private static final Map<String, String> SYNONYMS = Map.ofEntries(
+            Map.entry("calc", "calculator"),
+            Map.entry("ti", "calculator"),
+            Map.entry("sd", "standard deviation"),
+            Map.entry("stdev", "standard deviation"),
+            Map.entry("stats", "statistics"),
+            Map.entry("apstats", "ap statistics"),
+            Map.entry("prereq", "prerequisite"),
+            Map.entry("frq", "free response"),
+            Map.entry("mcq", "multiple choice"),
+            Map.entry("test", "exam"),
+            Map.entry("difficult", "hard"),
+            Map.entry("difficulty", "hard"),
+            Map.entry("tough", "hard"),
+            Map.entry("prep", "prepare"),
+            Map.entry("hw", "homework")
+    );
+
+    /**
+     * An index with no questions, used by the {@link FAQCatalog#EMPTY empty catalog}.
+     */
+    static final FAQIndex EMPTY = new FAQIndex(List.of());
+
+    /**
+     * A question that matched a search.
+     *
+     * @param id    the number of the question, as used by <code>%faq [header #]</code> (starting at 1)
+     * @param entry the question
+     * @param score the BM25 score of the question. Higher scores are better matches.
+     */
+    public record Result(int id, @NotNull FAQEntry entry, double score) {
+    }
+
+    /**
+     * The questions that contain a term.
+     *
+     * @param questions   the indices of the questions, in ascending order
+     * @param frequencies the number of times the term appears in each question
+     * @param idf         the inverse document frequency of the term
+     */
+    private record Postings(int[] questions, int[] frequencies, double idf) {
+    }
+
+    private final List<FAQEntry> questions;
+    private final Map<String, Postings> postings;
+    private final int[] lengths;
+    private final double averageLength;
+
+    /**
+     * Build an index over FAQ entries.
+     *
+     * @param entries every FAQ entry in order, including categories
+     */
+    private FAQIndex(@NotNull List<FAQEntry> entries) {
+        List<FAQEntry> questions = new ArrayList<>();
+        List<List<String>> documents = new ArrayList<>();
+
+        // Index each question along with the name of the category it appears under
+        String category = "";
+        for (FAQEntry entry : entries) {
+            if (entry.type().equals("category")) {
+                category = entry.text();
+            } else if (entry.type().equals("question")) {
+                questions.add(entry);
+                documents.add(tokenize(entry.text() + " " + category));
+            }
+        }
+
+        // Count each term in each question
+        Map<String, Map<Integer, Integer>> counts = new HashMap<>();
+        lengths = new int[documents.size()];
+        long totalLength = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            for (String term : documents.get(i))
+                counts.computeIfAbsent(term, t -> new TreeMap<>()).merge(i, 1, Integer::sum);
+            lengths[i] = documents.get(i).size();
+            totalLength += lengths[i];
+        }
+
+        Map<String, Postings> postings = new HashMap<>();
+        int n = documents.size();
+        counts.forEach((term, frequencies) -> {
+            int[] ids = new int[frequencies.size()];
+            int[] tf = new int[frequencies.size()];
+            int j = 0;
+            for (Map.Entry<Integer, Integer> e : frequencies.entrySet()) {
+                ids[j] = e.getKey();
+                tf[j++] = e.getValue();
+            }
+
+            int df = ids.length;
+            postings.put(term, new Postings(ids, tf, Math.log(1 + (n - df + 0.5) / (df + 0.5))));
+        });
+
+        this.questions = List.copyOf(questions);
+        this.postings = Map.copyOf(postings);
+        this.averageLength = n == 0 ? 0 : (double) totalLength / n;
+    }
+
+    /**
+     * Build an index over FAQ entries, and log how long it took.
+     *
+     * @param entries every FAQ entry in order, including categories
+     * @return the index
+     */
+    static @NotNull FAQIndex build(@NotNull List<FAQEntry> entries) {
+        long start = System.nanoTime();
+        FAQIndex index = new FAQIndex(entries);
+        LOG.info(String.format("Indexed %d FAQ questions (%d terms) in %.1f ms",
+                index.questions.size(), index.postings.size(), (System.nanoTime() - start) / 1e6));
+        return index;
+    }
+
+    /**
+     * Search the FAQ for questions matching some keywords.
+     *
+     * @param query the keywords
+     * @param limit the maximum number of results
+     * @return the best matching questions, best first. Questions that don't match any of the keywords are left out.
+     */
+    public @NotNull List<Result> search(@NotNull String query, int limit) {
+        double[] scores = new double[questions.size()];
+        boolean matched = false;
+
+        // Each distinct term is scored once, no matter how many times it appears in the query
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Postings p = postings.get(term);
+            if (p == null)
+                continue;
+
+            matched = true;
+            for (int i = 0; i < p.questions().length; i++) {
+                int q = p.questions()[i];
+                double tf = p.frequencies()[i];
+                scores[q] += p.idf() * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[q] / averageLength));
+            }
+        }
+
+        if (!matched)
+            return List.of();
+
+        List<Result> results = new ArrayList<>();
+        for (int q = 0; q < scores.length; q++)
+            if (scores[q] > 0)
+                results.add(new Result(q + 1, questions.get(q), scores[q]));
+
+        results.sort(Comparator.comparingDouble(Result::score).reversed());
+        return results.size() > limit ? List.copyOf(results.subList(0, limit)) : results;
+    }
+
+    /**
+     * Split text into normalized search terms, as described in the {@link FAQIndex class documentation}.
+     *
+     * @param text the text
+     * @return the terms, in order
+     */
+    static @NotNull List<String> tokenize(@NotNull String text) {
+        List<String> terms = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (word.isEmpty())
+                continue;
+
+            String replacement = SYNONYMS.get(word);
+            if (replacement == null)
+                replacement = SYNONYMS.getOrDefault(stem(word), word);
+
+            for (String synonym : replacement.split(" "))
+                if (!STOP_WORDS.contains(synonym))
+                    terms.add(stem(synonym));
+        }
+        return terms;
+    }
+
+    /**
+     * A light suffix-stripping stemmer for English. It only handles the common plural and verb endings, which is enough
+     * to match the wording of the FAQ questions without conflating unrelated words.
+     *
+     * @param word a lowercase word
+     * @return the stem of the word
+     */
+    static @NotNull String stem(@NotNull String word) {
+        if (word.length() <= 3)
+            return word;
+
+        if (word.endsWith("ies") || word.endsWith("ied"))
+            word = word.substring(0, word.length() - 3) + "y";
+        else if (word.endsWith("sses"))
+            word = word.substring(0, word.length() - 2);
+        else if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && !word.endsWith("is"))
+            word = word.substring(0, word.length() - 1);
+        else if (word.endsWith("ing") && word.length() > 5)
+            word = word.substring(0, word.length() - 3);
+        else if (word.endsWith("ed") && word.length() > 4)
+            word = word.substring(0, word.length() - 2);
+        else if (word.endsWith("ly") && word.length() > 4)
+            word = word.substring(0, word.length() - 2);
+
+        // Drop a trailing e, so that "calculate" and "calculating" share a stem
+        if (word.endsWith("e") && word.length() > 3)
+            word = word.substring(0, word.length() - 1);
+
+        return word;
+    }
+}
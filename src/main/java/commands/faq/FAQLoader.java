@@ -1,20 +1,74 @@
 package commands.faq;
 
-import commands.slash.GlobalCommands;
+import data.Setting;
+import main.FileWatcher;
+import main.Resources;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
 
+/**
+ * This loads the FAQ table of contents into an immutable {@link FAQCatalog}, and reloads it whenever {@link
+ * Setting#FAQ_FILE} changes, so that the FAQ can be updated without restarting the bot.
+ */
 public class FAQLoader {
+    private static final Logger LOG = JDALogger.getLog(FAQLoader.class);
+
+    /**
+     * The current FAQ. It is replaced as a whole whenever the FAQ is reloaded, so commands should read it once and use
+     * that snapshot throughout.
+     */
+    private static volatile FAQCatalog catalog = FAQCatalog.EMPTY;
+
+    /**
+     * @return the current FAQ
+     */
+    public static @NotNull FAQCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * This loads the FAQ table of contents from {@link Setting#FAQ_FILE} if it exists, or from the <code>faq.csv</code>
+     * resource otherwise, along with its {@link FAQIndex search index}. The catalog and its index are swapped in
+     * together with a single write, and if the FAQ can't be loaded, the previous catalog is kept.
+     */
+    public static void loadFAQ() {
+        try {
+            Resources.Csv csv = Resources.readCsv("/faq.csv", getFAQFile(), FAQCatalog.COLUMNS);
+            FAQCatalog loaded = FAQCatalog.parse(csv.rows());
+            catalog = loaded;
+            loaded.getPages().publish();
+            LOG.info("Loaded " + loaded.getQuestions().size() + " FAQ questions from " + csv.source());
+
+        } catch (Exception e) {
+            LOG.error("Failed to load the FAQ. Keeping the previous " + catalog.getQuestions().size() + " questions.",
+                    e);
+        }
+    }
+
     /**
-     * This is the list of all {@link FAQEntry} instances imported from <code>faq.csv</code>. It is filled on startup by
-     * {@link GlobalCommands#loadFAQTableOfContents()}.
+     * Watch {@link Setting#FAQ_FILE} and {@link #loadFAQ() reload} the FAQ whenever it changes. The file is parsed on
+     * the watcher thread, so commands keep using the old catalog until the new one is swapped in.
      */
-    private static final List<FAQEntry> entries = new ArrayList<>();
+    public static void watchFAQ() {
+        Path file = getFAQFile();
+        if (file == null)
+            return;
+
+        try {
+            FileWatcher.watch(file, FAQLoader::loadFAQ);
+        } catch (Exception e) {
+            LOG.error("Failed to watch " + file + " for changes", e);
+        }
+    }
 
     /**
-     * This is the same as {@link #entries}, except that it excludes categories in the FAQ document and only contains
-     * questions.
+     * @return the path of {@link Setting#FAQ_FILE}, or <code>null</code> if it isn't set
      */
-    private static final List<FAQEntry> questions = new ArrayList<>();
+    private static @Nullable Path getFAQFile() {
+        return Setting.FAQ_FILE.isEmpty() ? null : Path.of(Setting.FAQ_FILE);
+    }
 }
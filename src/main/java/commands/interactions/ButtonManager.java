@@ -1,5 +1,6 @@
 package commands.interactions;
 
+import annotations.ComponentHandler;
 import commands.slash.Diagram;
 import data.Colors;
 import data.Setting;
@@ -22,20 +23,43 @@ import java.util.Objects;
 
 /**
  * This class contains the methods for processing all {@link ButtonClickEvent ButtonClickEvents}. Those methods are
- * called by {@link OnInteraction#onButtonClick(ButtonClickEvent)}. If a number of button responses are implemented,
- * this class may be separated into public and private events (at minimum).
+ * called by {@link OnInteraction#onButtonClick(ButtonClickEvent)} through the generated <code>ComponentDispatcher</code>,
+ * based on their {@link ComponentHandler} prefix. If a number of button responses are implemented, this class may be
+ * separated into public and private events (at minimum).
  */
 public class ButtonManager {
+    /**
+     * The {@link ComponentId} action for the status buttons on the control panel. These ids contain the {@link
+     * OnlineStatus#getKey() key} of the status to set.
+     */
+    public static final int PANEL_STATUS = 0;
+
+    /**
+     * The {@link ComponentId} action for the button that sends a diagram to the channel. These ids contain the {@link
+     * Diagram#value() value} of the diagram.
+     */
+    public static final int DIAGRAM_SEND = 1;
+
+    /**
+     * The {@link ComponentId} action for the buttons that turn the pages of a {@link Paginator}. These ids contain the
+     * key of the paginator and the number of the page to show.
+     */
+    public static final int PAGE_TURN = 2;
+
+    @ComponentHandler("diagram")
     public static void diagram(@Nonnull ButtonClickEvent event) {
-        Diagram diagram;
-        String value = event.getComponentId().substring(8);
+        // The id may be stale or forged, so check everything that was decoded from it
+        ComponentId id = ComponentId.decode(event.getComponentId());
+        Diagram diagram = null;
+        if (id != null && id.getAction() == DIAGRAM_SEND && id.hasNext()) {
+            try {
+                diagram = Diagram.getDiagram(id.requireSigned().nextString());
+            } catch (IllegalStateException ignore) {
+            }
+        }
 
-        try {
-            diagram = Diagram.getDiagram(value);
-            assert diagram != null;
-        } catch (Exception ignore) {
-            event.reply("Error. Failed to identify desired diagram. Please try again later.")
-                    .setEphemeral(true).queue();
+        if (diagram == null) {
+            OnInteraction.buttonError(event, "Error. Failed to identify desired diagram. Please try again later.");
             return;
         }
 
@@ -49,6 +73,37 @@ public class ButtonManager {
         ).queue();
     }
 
+    /**
+     * Show another page of a {@link Paginator}. The page was rendered when the paginator was created, so this only
+     * looks it up and edits the message.
+     *
+     * @param event the button click
+     */
+    @ComponentHandler("page")
+    public static void turnPage(@Nonnull ButtonClickEvent event) {
+        ComponentId id = ComponentId.decode(event.getComponentId());
+        if (id == null || id.getAction() != PAGE_TURN || !id.hasNext()) {
+            OnInteraction.buttonError(event);
+            return;
+        }
+
+        Paginator paginator;
+        int page;
+        try {
+            paginator = Paginator.get(id.nextString());
+            page = id.nextInt();
+        } catch (IllegalStateException | ArithmeticException e) {
+            OnInteraction.buttonError(event);
+            return;
+        }
+
+        if (paginator == null)
+            OnInteraction.buttonError(event, "Error. This list is no longer available.");
+        else
+            event.editMessage(paginator.getPage(page)).queue();
+    }
+
+    @ComponentHandler("panel")
     public static void runPanelButtons(@Nonnull ButtonClickEvent event) {
         // User must be an admin to use panel controls
         if (!EventUtils.isAdmin(event.getUser())) {
@@ -56,17 +111,46 @@ public class ButtonManager {
             return;
         }
 
-        String[] id = event.getComponentId().split(":");
+        // Panel buttons are signed, so an id without a valid signature was tampered with
+        ComponentId id = ComponentId.decode(event.getComponentId());
+        if (id == null || !id.isSigned() || !id.hasNext()) {
+            OnInteraction.buttonError(event);
+            return;
+        }
 
-        // All panel buttons have 3 section ids.
-        if (id.length != 3) {
+        if (id.getAction() != PANEL_STATUS) {
             OnInteraction.buttonError(event);
             return;
         }
 
-        if (id[1].equals("status")) {
-            updateStatus(event, id[2]);
+        String status;
+        try {
+            status = id.nextString();
+        } catch (IllegalStateException e) {
+            OnInteraction.buttonError(event);
+            return;
         }
+        updateStatus(event, status);
+    }
+
+    /**
+     * Create the signed {@link ComponentId} for a control panel status button.
+     *
+     * @param status the status that the button sets
+     * @return the component id
+     */
+    public static String statusButtonId(OnlineStatus status) {
+        return ComponentId.create("panel", PANEL_STATUS).add(status.getKey()).sign().build();
+    }
+
+    /**
+     * Create the signed {@link ComponentId} for a button that sends a diagram to the channel.
+     *
+     * @param diagram the diagram to send
+     * @return the component id
+     */
+    public static String diagramButtonId(Diagram diagram) {
+        return ComponentId.create("diagram", DIAGRAM_SEND).add(diagram.value()).sign().build();
     }
 
     public static void updateStatus(@Nonnull ButtonClickEvent event, String id) {
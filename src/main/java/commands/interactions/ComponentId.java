@@ -0,0 +1,336 @@
+package commands.interactions;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * This is a compact, versioned encoding for the custom ids of buttons and selection menus. Rather than keeping state
+ * for an interactive message on the server (and parsing it back out of a colon-separated string), all the state a
+ * handler needs is packed into the component id itself and {@link #decode(String) decoded} from the event when the
+ * component is used.
+ * <p>
+ * An encoded id has the form <code>handler:payload</code>. The handler is the plain-text prefix that the generated
+ * <code>ComponentDispatcher</code> uses to route the event to its {@link annotations.ComponentHandler
+ * ComponentHandler}. The payload is URL-safe base64 (which never contains a <code>:</code>) of the following bytes:
+ * <ol>
+ *     <li>A header byte. The low 7 bits are the format {@link #VERSION}, and the high bit is set if the id is signed.
+ *     <li>An action byte, which lets one handler support several kinds of component.
+ *     <li>The parameters, in the order they were added. Integers are stored as zig-zag varints, and strings as a
+ *     varint length followed by their UTF-8 bytes.
+ *     <li>For signed ids, the first {@link #TAG_LENGTH} bytes of an HMAC-SHA256 over the handler and all the
+ *     preceding bytes.
+ * </ol>
+ * Signed ids can't be forged or altered by a modified client without the {@link #setSigningKey(String) signing key},
+ * which is derived from the bot token. Ids with an unknown version, a bad signature, or any other corruption are
+ * rejected by {@link #decode(String)}. A forged id could still leave the signed flag clear, so handlers whose ids are
+ * signed must also {@link #requireSigned() require} a signature.
+ */
+public final class ComponentId {
+    /**
+     * The current format version. This must be changed whenever the payload layout changes, so that ids on old
+     * messages are rejected rather than misread.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The maximum length of a component id, as set by Discord.
+     */
+    public static final int MAX_LENGTH = 100;
+
+    private static final int SIGNED_FLAG = 0x80;
+
+    /**
+     * The number of bytes of the HMAC kept in signed ids. Eight bytes is plenty to prevent guessing, while keeping the
+     * ids short.
+     */
+    private static final int TAG_LENGTH = 8;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * The HMAC key for signed ids. This starts as a random key, so signing works even before {@link
+     * #setSigningKey(String)} is called, but ids signed with it stop working when the bot restarts.
+     */
+    private static volatile SecretKeySpec key = randomKey();
+
+    private final String handler;
+    private final int action;
+    private final boolean signed;
+    private final byte[] payload;
+    private final int end;
+    private int position;
+
+    private ComponentId(String handler, int action, boolean signed, byte[] payload, int start, int end) {
+        this.handler = handler;
+        this.action = action;
+        this.signed = signed;
+        this.payload = payload;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Start building a new component id.
+     *
+     * @param handler the {@link annotations.ComponentHandler ComponentHandler} prefix that will receive the event
+     * @param action  the action within that handler (0-255)
+     * @return the builder
+     */
+    public static @NotNull Builder create(@NotNull String handler, int action) {
+        return new Builder(handler, action);
+    }
+
+    /**
+     * This sets the key used to sign and verify component ids. The key is derived from the bot token, so that signed
+     * ids remain valid across restarts but can't be produced by anyone else.
+     *
+     * @param token the bot token
+     */
+    public static void setSigningKey(@NotNull String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(("component-id:" + token).getBytes(StandardCharsets.UTF_8));
+            key = new SecretKeySpec(digest, "HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Decode a component id. This checks the version and, for signed ids, the signature.
+     *
+     * @param id the component id from an interaction event
+     * @return the decoded id, or <code>null</code> if it isn't a valid id in the current format
+     */
+    public static @Nullable ComponentId decode(@NotNull String id) {
+        int separator = id.indexOf(':');
+        if (separator <= 0)
+            return null;
+
+        byte[] payload;
+        try {
+            payload = DECODER.decode(id.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        if (payload.length < 2 || (payload[0] & ~SIGNED_FLAG & 0xFF) != VERSION)
+            return null;
+
+        String handler = id.substring(0, separator);
+        int end = payload.length;
+
+        boolean signed = (payload[0] & SIGNED_FLAG) != 0;
+        if (signed) {
+            end -= TAG_LENGTH;
+            if (end < 2 || !MessageDigest.isEqual(
+                    Arrays.copyOfRange(payload, end, payload.length), computeTag(handler, payload, end)))
+                return null;
+        }
+
+        return new ComponentId(handler, payload[1] & 0xFF, signed, payload, 2, end);
+    }
+
+    /**
+     * @return the {@link annotations.ComponentHandler ComponentHandler} prefix of this id
+     */
+    public @NotNull String getHandler() {
+        return handler;
+    }
+
+    /**
+     * @return <code>true</code> if this id was signed, and so can't have been forged or altered
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * Check that this id was signed. Handlers whose ids are always built with {@link Builder#sign()} must call this,
+     * as {@link #decode(String)} only checks the signature of ids that claim to have one.
+     *
+     * @return this id
+     * @throws IllegalStateException if the id isn't signed
+     */
+    public @NotNull ComponentId requireSigned() {
+        if (!signed)
+            throw new IllegalStateException("Component id is not signed");
+        return this;
+    }
+
+    /**
+     * @return the action within the handler
+     */
+    public int getAction() {
+        return action;
+    }
+
+    /**
+     * @return <code>true</code> if there are parameters that haven't been read yet
+     */
+    public boolean hasNext() {
+        return position < end;
+    }
+
+    /**
+     * Read the next parameter as a <code>long</code>.
+     *
+     * @return the parameter
+     * @throws IllegalStateException if there are no more parameters or the payload is corrupt
+     */
+    public long nextLong() {
+        long raw = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= end)
+                throw new IllegalStateException("Component id is truncated");
+            byte b = payload[position++];
+            raw |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return (raw >>> 1) ^ -(raw & 1);
+        }
+        throw new IllegalStateException("Component id has an invalid number");
+    }
+
+    /**
+     * Read the next parameter as an <code>int</code>.
+     *
+     * @return the parameter
+     * @throws IllegalStateException if there are no more parameters or the payload is corrupt
+     */
+    public int nextInt() {
+        return Math.toIntExact(nextLong());
+    }
+
+    /**
+     * Read the next parameter as a {@link String}.
+     *
+     * @return the parameter
+     * @throws IllegalStateException if there are no more parameters or the payload is corrupt
+     */
+    public @NotNull String nextString() {
+        long length = nextLong();
+        if (length < 0 || length > end - position)
+            throw new IllegalStateException("Component id has an invalid string");
+        String s = new String(payload, position, (int) length, StandardCharsets.UTF_8);
+        position += (int) length;
+        return s;
+    }
+
+    private static byte[] computeTag(String handler, byte[] payload, int length) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            mac.update(handler.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) ':');
+            mac.update(payload, 0, length);
+            return Arrays.copyOf(mac.doFinal(), TAG_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static SecretKeySpec randomKey() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return new SecretKeySpec(bytes, "HmacSHA256");
+    }
+
+    /**
+     * A builder for encoded component ids. Parameters are written in order and must be read back in the same order.
+     */
+    public static final class Builder {
+        private final String handler;
+        private byte[] payload = new byte[16];
+        private int length = 0;
+        private boolean signed = false;
+
+        private Builder(String handler, int action) {
+            if (handler.isEmpty() || handler.indexOf(':') >= 0)
+                throw new IllegalArgumentException("Invalid component handler '" + handler + "'");
+            if (action < 0 || action > 0xFF)
+                throw new IllegalArgumentException("Component actions must be between 0 and 255");
+
+            this.handler = handler;
+            write(VERSION);
+            write(action);
+        }
+
+        /**
+         * Add a number parameter. Small values (positive or negative) take only one or two bytes.
+         *
+         * @param value the value
+         * @return this builder for chaining
+         */
+        public @NotNull Builder add(long value) {
+            long raw = (value << 1) ^ (value >> 63);
+            while ((raw & ~0x7FL) != 0) {
+                write((int) (raw & 0x7F) | 0x80);
+                raw >>>= 7;
+            }
+            write((int) raw);
+            return this;
+        }
+
+        /**
+         * Add a text parameter.
+         *
+         * @param value the value
+         * @return this builder for chaining
+         */
+        public @NotNull Builder add(@NotNull String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            add(bytes.length);
+            for (byte b : bytes)
+                write(b);
+            return this;
+        }
+
+        /**
+         * Sign the id, so that it is rejected by {@link #decode(String)} if it was altered.
+         *
+         * @return this builder for chaining
+         */
+        public @NotNull Builder sign() {
+            signed = true;
+            return this;
+        }
+
+        /**
+         * Encode the id.
+         *
+         * @return the component id
+         * @throws IllegalStateException if the encoded id is longer than {@link #MAX_LENGTH}
+         */
+        public @NotNull String build() {
+            byte[] bytes = Arrays.copyOf(payload, length);
+
+            if (signed) {
+                bytes[0] |= SIGNED_FLAG;
+                byte[] tag = computeTag(handler, bytes, bytes.length);
+                bytes = Arrays.copyOf(bytes, bytes.length + TAG_LENGTH);
+                System.arraycopy(tag, 0, bytes, length, TAG_LENGTH);
+            }
+
+            String id = handler + ":" + ENCODER.encodeToString(bytes);
+            if (id.length() > MAX_LENGTH)
+                throw new IllegalStateException("Component id is " + id.length() + " characters long");
+            return id;
+        }
+
+        private void write(int b) {
+            if (length == payload.length)
+                payload = Arrays.copyOf(payload, length * 2);
+            payload[length++] = (byte) b;
+        }
+    }
+}
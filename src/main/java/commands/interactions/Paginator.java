@@ -0,0 +1,176 @@
+package commands.interactions;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.MessageBuilder;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.Button;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This is an immutable set of pages for an embed that is too long for one message, such as the FAQ table of contents.
+ * <p>
+ * The fields of the embed are split into pages that each fit within Discord's limits of {@link #MAX_FIELDS} fields and
+ * {@link MessageEmbed#EMBED_MAX_LENGTH_BOT} characters. Every page is rendered into a finished {@link Message} when the
+ * paginator is created, along with its buttons. The previous and next buttons carry a {@link ComponentId} with the key
+ * of the paginator and the number of the page they lead to, so turning a page is an array lookup in {@link
+ * ButtonManager#turnPage(ButtonClickEvent)}, with nothing to rebuild and no state kept per message.
+ * <p>
+ * A paginator is found by its key once it is {@link #publish() published}. When its content is reloaded, a new
+ * paginator is published under the same key, and buttons on old messages lead to the new pages.
+ */
+public final class Paginator {
+    /**
+     * The maximum number of fields in one embed, as set by Discord.
+     */
+    public static final int MAX_FIELDS = 25;
+
+    private static final Map<String, Paginator> published = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final Message[] pages;
+
+    private Paginator(String key, Message[] pages) {
+        this.key = key;
+        this.pages = pages;
+    }
+
+    /**
+     * Split an embed into pages, and render each one.
+     *
+     * @param key       the key to {@link #publish() publish} the pages under, which is stored in the page buttons. It
+     *                  should be short, as component ids are limited to {@link ComponentId#MAX_LENGTH} characters.
+     * @param template  the embed to show on each page, without any fields. It is copied, so it can be reused.
+     * @param fields    the fields to split between the pages, in order
+     * @param maxFields the maximum number of fields on a page, up to {@link #MAX_FIELDS}
+     * @param buttons   extra buttons to show on every page after the page buttons, such as a link. There may be at
+     *                  most two.
+     * @return the paginator
+     */
+    public static @NotNull Paginator of(@NotNull String key, @NotNull EmbedBuilder template,
+                                        @NotNull List<MessageEmbed.Field> fields, int maxFields,
+                                        @NotNull Button... buttons) {
+        int perPage = Math.min(maxFields, MAX_FIELDS);
+        int space = MessageEmbed.EMBED_MAX_LENGTH_BOT - template.length();
+
+        // Fill each page until it runs out of fields or characters
+        List<List<MessageEmbed.Field>> split = new ArrayList<>();
+        List<MessageEmbed.Field> page = new ArrayList<>();
+        int length = 0;
+        for (MessageEmbed.Field field : fields) {
+            int fieldLength = field.getName().length() + field.getValue().length();
+            if (!page.isEmpty() && (page.size() == perPage || length + fieldLength > space)) {
+                split.add(page);
+                page = new ArrayList<>();
+                length = 0;
+            }
+            page.add(field);
+            length += fieldLength;
+        }
+        split.add(page);
+
+        Message[] pages = new Message[split.size()];
+        for (int i = 0; i < pages.length; i++) {
+            EmbedBuilder embed = new EmbedBuilder(template).clearFields();
+            split.get(i).forEach(embed::addField);
+
+            List<Button> row = new ArrayList<>();
+            if (pages.length > 1) {
+                row.add(Button.secondary(pageId(key, i - 1), "\u25C0").withDisabled(i == 0));
+                row.add(Button.secondary(pageId(key, i), (i + 1) + " / " + pages.length).withDisabled(true));
+                row.add(Button.secondary(pageId(key, i + 1), "\u25B6").withDisabled(i == pages.length - 1));
+            }
+            row.addAll(List.of(buttons));
+
+            MessageBuilder message = new MessageBuilder().setEmbeds(embed.build());
+            if (!row.isEmpty())
+                message.setActionRows(ActionRow.of(row));
+            pages[i] = message.build();
+        }
+
+        return new Paginator(key, pages);
+    }
+
+    /**
+     * Split lines of text into fields that each hold at most a number of lines, and no more than {@link
+     * MessageEmbed#VALUE_MAX_LENGTH} characters. Every field after the first is marked as continued.
+     *
+     * @param name     the name of the fields
+     * @param lines    the lines
+     * @param maxLines the maximum number of lines in each field
+     * @return the fields
+     */
+    public static @NotNull List<MessageEmbed.Field> fields(@NotNull String name, @NotNull List<String> lines,
+                                                           int maxLines) {
+        List<MessageEmbed.Field> fields = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        int count = 0;
+
+        for (String line : lines) {
+            boolean full = count == maxLines || value.length() + 1 + line.length() > MessageEmbed.VALUE_MAX_LENGTH;
+            if (count > 0 && full) {
+                fields.add(field(name, fields.size(), value));
+                value.setLength(0);
+                count = 0;
+            }
+            if (count > 0)
+                value.append('\n');
+            value.append(line);
+            count++;
+        }
+
+        fields.add(field(name, fields.size(), value));
+        return fields;
+    }
+
+    private static MessageEmbed.Field field(String name, int index, CharSequence value) {
+        return new MessageEmbed.Field(index == 0 ? name : name + " (cont.)", value.toString(), false);
+    }
+
+    private static String pageId(String key, int page) {
+        return ComponentId.create("page", ButtonManager.PAGE_TURN).add(key).add(page).build();
+    }
+
+    /**
+     * Make this the current paginator for its key, so that page buttons lead to its pages.
+     */
+    public void publish() {
+        published.put(key, this);
+    }
+
+    /**
+     * Get the current paginator for a key.
+     *
+     * @param key the key
+     * @return the paginator, or <code>null</code> if none has been {@link #publish() published} under that key
+     */
+    public static @Nullable Paginator get(@NotNull String key) {
+        return published.get(key);
+    }
+
+    /**
+     * @return the number of pages
+     */
+    public int size() {
+        return pages.length;
+    }
+
+    /**
+     * Get a page. If the number is out of range, which can happen if the content was reloaded with fewer pages, the
+     * nearest page is returned.
+     *
+     * @param page the number of the page, starting at 0
+     * @return the page
+     */
+    public @NotNull Message getPage(int page) {
+        return pages[Math.max(0, Math.min(page, pages.length - 1))];
+    }
+}
@@ -1,33 +1,32 @@
 package commands.slash;
 
+import commands.interactions.ComponentId;
+import commands.interactions.SelectionManager;
 import data.Discord;
 import events.Startup;
-import main.Utils;
-import net.dv8tion.jda.api.entities.ISnowflake;
+import main.CsvReader;
+import main.Resources;
 import net.dv8tion.jda.api.events.ReadyEvent;
 import net.dv8tion.jda.api.events.interaction.SelectionMenuEvent;
-import net.dv8tion.jda.api.interactions.InteractionHook;
 import net.dv8tion.jda.api.interactions.components.selections.SelectionMenu;
 
 import javax.annotation.Nonnull;
-import java.io.File;
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Instances of this class store a diagram file found in the <code>/diagrams/</code> resources directory. Each diagram
  * is composed of:
  * <ul>
  *     <li>A {@link #name}, which is shown to end users in Discord to let them select a diagram.
- *     <li>The {@link #file} that the diagram points to.
+ *     <li>The {@link #file} that the diagram points to, as the name of a classpath resource.
  *     <li>The {@link #value}, similar to the name, which is used by {@link #loadSelectionMenu()} to set the
  *     {@link SelectionMenu.Builder#addOption(String, String) option value}. This is used when a user chooses an option,
  *     and thus processing on a {@link SelectionMenuEvent} checks {@link #diagrams} based on their values.
  *     <li>A {@link #link} to the diagram in the assets channel in {@link Discord#STATSBOT_CENTRAL}.
  * </ul>
  */
-public record Diagram(String name, File file, String value, String link) {
+public record Diagram(String name, String file, String value, String link) {
     /**
      * This is the list of all the {@link Diagram diagrams} from the <code>/diagrams/</code> resource directory. It is
      * set once at startup via {@link #loadDiagrams()}.
@@ -41,14 +40,9 @@ public record Diagram(String name, File file, String value, String link) {
     public static SelectionMenu selectionMenu;
 
     /**
-     * The map of responses to the <code>/diagram</code> command based on their {@link ISnowflake#getIdLong() IDs}.
+     * The number of columns in <code>diagrams.csv</code>: the name, file name, value, and link.
      */
-    public static final Map<Long, InteractionHook> diagramResponses = new HashMap<>();
-
-    /**
-     * The regex {@link Pattern} used to parse diagram records from <code>diagrams.csv</code> in {@link #of(String)}.
-     */
-    private static final Pattern CSV_PATTERN = Pattern.compile("^(.+),(.+),(.+),([\\d]{18}/.+)$");
+    public static final int COLUMNS = 4;
 
     /**
      * This is the first part of the link to diagram images in the assets channel in Discord. The rest of the link (with
@@ -71,16 +65,8 @@ public record Diagram(String name, File file, String value, String link) {
      */
     public static void loadDiagrams() {
         try {
-            // Locate the diagrams resource directory
-            File csv = Utils.getResourceFile("/diagrams/diagrams.csv");
-            Scanner in = new Scanner(csv);
-            in.nextLine();
-
             // Load each diagram as a record instance
-            while (in.hasNextLine())
-                diagrams.add(of(in.nextLine()));
-
-            in.close();
+            diagrams.addAll(parse(Resources.readCsv("/diagrams/diagrams.csv", null, COLUMNS).rows()));
 
             // Load the selection menu
             loadSelectionMenu();
@@ -93,24 +79,52 @@ public record Diagram(String name, File file, String value, String link) {
     }
 
     /**
-     * Create a {@link Diagram} record based on <code>csv</code> data from
-     * <code>resources/diagrams/diagrams.csv</code>. The <code>csv</code> data is parsed using regex from {@link
-     * #CSV_PATTERN}. If the regex expression does not match the provided <code>csvData</code>, <code>null</code> is
-     * returned.
+     * Create a {@link Diagram} record for each row of <code>resources/diagrams/diagrams.csv</code>.
      *
-     * @param csvData a line from <code>diagrams.csv</code> to be parsed into a {@link Diagram} record
+     * @param rows the rows of the file, read with {@link #COLUMNS} columns
+     * @return the diagrams
+     * @throws IllegalArgumentException if a row is {@link #of(String[]) invalid}
      */
-    public static Diagram of(@Nonnull String csvData) {
-        Matcher matcher = CSV_PATTERN.matcher(csvData);
-        if (matcher.find())
-            return new Diagram(
-                    matcher.group(1),
-                    Utils.getResourceFile("/diagrams/" + matcher.group(2)),
-                    matcher.group(3),
-                    matcher.group(4)
-            );
+    public static List<Diagram> parse(@Nonnull List<CsvReader.Row> rows) {
+        List<Diagram> parsed = new ArrayList<>();
+        for (CsvReader.Row row : rows) {
+            Diagram diagram = of(row.cells());
+            if (diagram == null)
+                throw new IllegalArgumentException("Invalid diagram on " + row);
+            parsed.add(diagram);
+        }
+        return parsed;
+    }
 
-        return null;
+    /**
+     * Create a {@link Diagram} record based on a row from <code>resources/diagrams/diagrams.csv</code>. If a cell is
+     * blank, the link doesn't start with an 18 digit message id, or the diagram file isn't among the resources,
+     * <code>null</code> is returned.
+     *
+     * @param cells the name, file name, value, and link from a row in <code>diagrams.csv</code>
+     */
+    public static Diagram of(@Nonnull String[] cells) {
+        String name = cells[0].strip();
+        String file = "/diagrams/" + cells[1].strip();
+        String value = cells[2].strip();
+        String link = cells[3].strip();
+
+        if (name.isEmpty() || cells[1].isBlank() || value.isEmpty() || !isAssetLink(link) || !Resources.exists(file))
+            return null;
+
+        return new Diagram(name, file, value, link);
+    }
+
+    /**
+     * @return whether the link is an 18 digit message id, followed by a slash and a file name
+     */
+    private static boolean isAssetLink(String link) {
+        if (link.length() < 20 || link.charAt(18) != '/')
+            return false;
+        for (int i = 0; i < 18; i++)
+            if (!Character.isDigit(link.charAt(i)))
+                return false;
+        return true;
     }
 
     /**
@@ -120,7 +134,8 @@ public record Diagram(String name, File file, String value, String link) {
      * first 25.
      */
     public static void loadSelectionMenu() {
-        SelectionMenu.Builder menu = SelectionMenu.create("diagram");
+        SelectionMenu.Builder menu = SelectionMenu.create(
+                ComponentId.create("diagram", SelectionManager.DIAGRAM_SELECT).build());
         for (Diagram diagram : diagrams)
             menu.addOption(diagram.name.length() > 25 ? diagram.name.substring(0, 25) : diagram.name, diagram.value);
         selectionMenu = menu.build();
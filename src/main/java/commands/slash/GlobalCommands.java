@@ -1,41 +1,31 @@
 package commands.slash;
 
-import commands.faq.FAQEntry;
+import annotations.SlashHandler;
+import commands.CommandContext;
+import commands.faq.FAQCatalog;
+import commands.faq.FAQLoader;
 import data.Colors;
 import data.ID;
 import data.Link;
 import data.Setting;
-import events.Startup;
 import main.Utils;
-import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.MessageEmbed;
-import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
 
-import java.io.FileNotFoundException;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
 
 public class GlobalCommands {
-    /**
-     * This is the message sent in response to the <code>/faq</code> command. It is created by {@link
-     * #loadFAQTableOfContents()} on startup.
-     */
-    private static Message faqMessage;
-
-    public static void statsbot(SlashCommandEvent event) {
-        event.reply("Hi!").setEphemeral(true).queue();
+    @SlashHandler(name = "statsbot", description = "Say hello to Stats Bot")
+    public static void statsbot(CommandContext context) {
+        context.replies().reply("Hi!", true);
     }
 
     /**
      * Responds with the {@link Link#SURVEY} when the <code>/survey</code> command is used
      *
-     * @param event The {@link SlashCommandEvent}
+     * @param context the {@link CommandContext} of the command
      */
-    public static void survey(SlashCommandEvent event) {
-        Utils.replyEphemeral(event,
+    @SlashHandler(name = "survey", description = "Get the AP Stats survey link")
+    public static void survey(CommandContext context) {
+        context.replies().reply(
                 Utils.addLinkButton(
                         Utils.makeEmbed(
                                 "AP Statistics Survey",
@@ -48,17 +38,18 @@ public class GlobalCommands {
                                 "students to come.",
                                 Colors.INFO),
                         Link.SURVEY,
-                        "Take the survey!")
-        );
+                        "Take the survey!"),
+                true);
     }
 
     /**
      * Sends a generic help message containing info about AP Stats Bot.
      *
-     * @param event The {@link SlashCommandEvent}
+     * @param context the {@link CommandContext} of the command
      */
-    public static void help(SlashCommandEvent event) {
-        Utils.replyEphemeral(event,
+    @SlashHandler(name = "help", description = "Get basic info on Stats Bot")
+    public static void help(CommandContext context) {
+        context.replies().reply(
                 Utils.makeEmbed(
                         "AP Stats Bot - Info",
                         "Hi, I'm " + Utils.mentionMe() + ", a custom Discord bot designed to help AP " +
@@ -103,12 +94,13 @@ public class GlobalCommands {
                                 "Running version `" + Setting.VERSION + "`.",
                                 true
                         )
-                ).setTimestamp(Instant.now())
-        );
+                ).setTimestamp(Instant.now()),
+                true);
     }
 
-    public static void source(SlashCommandEvent event) {
-        Utils.replyEphemeral(event,
+    @SlashHandler(name = "source", description = "See the bot's source code")
+    public static void source(CommandContext context) {
+        context.replies().reply(
                 Utils.addLinkButton(
                         Utils.makeEmbed(
                                 "Source Code",
@@ -123,82 +115,20 @@ public class GlobalCommands {
                                         Utils.mention(ID.NOTSMART) + " - Minor feature contributor")
                         ),
                         Link.GITHUB,
-                        "Stats Bot on Github"));
-
+                        "Stats Bot on Github"),
+                true);
     }
 
-    public static void faq(SlashCommandEvent event) {
-        Utils.replyEphemeral(event, faqMessage);
-    }
-
-    /**
-     * This loads the table of contents for the AP Statistics FAQ from the <code>faq.csv</code> resource. Each line in
-     * that file corresponds to a header or question in the document and contains a link to that section. This method
-     * reads the table of contents data into a list of {@link FAQEntry} records and uses those to construct the {@link
-     * EmbedBuilder} sent in response to the <code>/faq</code> slash command.
-     */
-    public static void loadFAQTableOfContents() {
-        try {
-            List<MessageEmbed.Field> fields = new ArrayList<>();
-            Scanner in = new Scanner(Utils.getResourceFile("/faq.csv"));
-            // Omit the header line
-            in.nextLine();
-
-            // Counters for the current MessageEmbed.Field and question heading number
-            int field = -1;
-            int item = 1;
-
-            while (in.hasNextLine()) {
-                FAQEntry entry = FAQEntry.of(in.nextLine());
-                FAQEntry.entries.add(entry);
-
-                // If the next entry is a category, make a new field. If it's a question, add it to the previous field.
-                if (entry.type().equals("category")) {
-                    fields.add(Utils.makeField(entry.text(), ""));
-                    field++;
-                } else {
-                    FAQEntry.questions.add(entry);
-
-                    String header = fields.get(field).getName();
-                    String text = fields.get(field).getValue();
-                    fields.set(
-                            field,
-                            Utils.makeField(
-                                    header,
-                                    text + (EmbedBuilder.ZERO_WIDTH_SPACE.equals(text) ? "" : "\n") +
-                                    item + ". " + entry.getHyperlink())
-                    );
-                    item++;
-                }
-            }
-
-            fields.add(Utils.makeField(
-                    "",
-                    "__**Submit Feedback**__\n" +
-                    "Enjoying the FAQ? Help us improve it by completing " +
-                    Utils.link("this survey", Link.FAQ_FEEDBACK) + "!")
-            );
-
-            // Build the actual embed
-            faqMessage = Utils.addLinkButton(
-                    Utils.makeEmbed(
-                            "Frequently Asked Questions",
-                            "Looking for answers to common questions? Check out this " +
-                            "handy AP Stats " + Utils.link("FAQ", Link.FAQ) + ". It's based on data " +
-                            "from a " + Utils.link("survey", Link.SURVEY) + " of over 100 past " +
-                            "students.\n\n**__Table of Contents__**",
-                            Colors.INFO,
-                            fields.toArray(new MessageEmbed.Field[0])),
-                    Link.FAQ,
-                    "Open the FAQ"
-            );
-
-            Startup.LOG.info("Initialized /faq response message");
+    @SlashHandler(name = "faq", description = "Get a link to the AP Stats FAQ document")
+    public static void faq(CommandContext context) {
+        FAQCatalog catalog = FAQLoader.getCatalog();
 
-        } catch (FileNotFoundException e) {
-            Startup.LOG.error("Failed to load faq.csv data into /faq response message", e);
-            e.printStackTrace();
+        // If the first load failed, the catalog is still the empty one, which has no table of contents to show
+        if (catalog.getPages() == null) {
+            context.replies().reply("The FAQ is not loaded. Please try again later.", true);
+            return;
         }
 
+        context.replies().reply(catalog.getMessage(), true);
     }
 }
@@ -1,12 +1,21 @@
 package commands.slash;
 
-
+import annotations.Option;
+import annotations.SlashHandler;
+import annotations.Subcommand;
+import announcements.ActivityProfile;
+import announcements.AnnouncementCatalog;
+import announcements.AnnouncementChannel;
 import announcements.AnnouncementLoader;
+import commands.CommandContext;
+import commands.ReplySink;
+import commands.interactions.ButtonManager;
 import data.Colors;
 import data.ID;
-import events.EventUtils;
+import data.Setting;
 import main.Main;
 import main.Utils;
+import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.entities.Message;
@@ -16,107 +25,202 @@ import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.Button;
 
 import javax.annotation.Nonnull;
-import java.util.Objects;
 
 public class PrivateCommands {
-
-    public static void testing(@Nonnull SlashCommandEvent event) {
-        Utils.replyEphemeral(event, "Testing...");
+    /**
+     * The names of the days in an {@link ActivityProfile}, which starts on Monday.
+     */
+    private static final String[] DAYS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+    /**
+     * The bars used to draw an {@link ActivityProfile}, from lowest to highest.
+     */
+    private static final String BARS = "\u2581\u2582\u2583\u2584\u2585\u2586\u2587\u2588";
+
+    @SlashHandler(name = "testing", description = "Slash command tester", scope = SlashHandler.Scope.PRIVATE)
+    public static void testing(@Nonnull CommandContext context) {
+        context.replies().reply("Testing...", true);
     }
 
+    @SlashHandler(
+            name = "panel",
+            description = "Update the StatsBot control panel",
+            scope = SlashHandler.Scope.PRIVATE)
     public static void panel(@Nonnull SlashCommandEvent event) {
         OnlineStatus status = Main.JDA.getPresence().getStatus();
         event
                 .reply("**Set Discord Status**")
                 .addActionRow(
-                        Button.secondary("panel:status:" + OnlineStatus.ONLINE.getKey(), "Online")
+                        Button.secondary(ButtonManager.statusButtonId(OnlineStatus.ONLINE), "Online")
                                 .withDisabled(status == OnlineStatus.ONLINE),
-                        Button.secondary("panel:status:" + OnlineStatus.IDLE.getKey(), "Idle")
+                        Button.secondary(ButtonManager.statusButtonId(OnlineStatus.IDLE), "Idle")
                                 .withDisabled(status == OnlineStatus.IDLE),
-                        Button.secondary("panel:status:" + OnlineStatus.DO_NOT_DISTURB.getKey(), "DnD")
+                        Button.secondary(ButtonManager.statusButtonId(OnlineStatus.DO_NOT_DISTURB), "DnD")
                                 .withDisabled(status == OnlineStatus.DO_NOT_DISTURB),
-                        Button.secondary("panel:status:" + OnlineStatus.INVISIBLE.getKey(), "Offline")
+                        Button.secondary(ButtonManager.statusButtonId(OnlineStatus.INVISIBLE), "Offline")
                                 .withDisabled(status == OnlineStatus.INVISIBLE))
                 .queue();
     }
 
-    public static void diagram(@Nonnull SlashCommandEvent event) {
+    @SlashHandler(
+            name = "diagram",
+            description = "see one of the preloaded AP Stats diagrams",
+            scope = SlashHandler.Scope.PRIVATE)
+    public static void diagram(@Nonnull CommandContext context) {
         Message message = new MessageBuilder("Select a diagram to view:")
                 .setActionRows(
                         ActionRow.of(Diagram.selectionMenu)
                 ).build();
 
-        event.deferReply().setEphemeral(true).queue(
-                h -> h.editOriginal(message).queue(
-                        k -> Diagram.diagramResponses.put(k.getIdLong(), h)
-                )
-        );
+        // The selection is handled statelessly by SelectionManager, which edits this message directly
+        context.replies().reply(message, true);
     }
 
-    public static void announcement(@Nonnull SlashCommandEvent event) {
-        String sub = event.getSubcommandName();
+    @SlashHandler(
+            name = "announcement",
+            description = "View and trigger announcement messages",
+            scope = SlashHandler.Scope.PRIVATE,
+            defaultEnabled = false,
+            subcommands = {
+                    @Subcommand(name = "list", description = "List all announcement message IDs"),
+                    @Subcommand(
+                            name = "get",
+                            description = "View a specific announcement",
+                            options = @Option(
+                                    type = "INTEGER",
+                                    name = "id",
+                                    description = "The announcement id--see /announcement list for a list of ids.")),
+                    @Subcommand(
+                            name = "push",
+                            description = "Send an announcement to the stats channel",
+                            options = @Option(
+                                    type = "INTEGER",
+                                    name = "id",
+                                    description = "The announcement id--see /announcement list for a list of ids.")),
+                    @Subcommand(
+                            name = "profile",
+                            description = "View the hourly activity profile of an announcement channel",
+                            options = @Option(
+                                    type = "CHANNEL",
+                                    name = "channel",
+                                    description = "The announcement channel--defaults to the stats channel."))
+            })
+    public static void announcement(@Nonnull CommandContext context) {
+        String sub = context.subcommand();
+        ReplySink replies = context.replies();
+
+        // Use the same catalog throughout, in case it is reloaded in the meantime
+        AnnouncementCatalog catalog = AnnouncementLoader.getCatalog();
+
+        if ("profile".equals(sub)) {
+            long channelId = context.getOptionLong("channel", Setting.ANNOUNCEMENT_CHANNEL);
+            AnnouncementChannel channel = AnnouncementLoader.getChannel(channelId);
+            if (channel == null)
+                replies.reply(Utils.mentionChannel(channelId) + " doesn't receive announcements.", true);
+            else
+                replies.reply(describeProfile(channel), true);
+            return;
+        }
 
-        if ("list".equals(sub)) {
-            StringBuilder list = new StringBuilder();
-            for (int i = 0; i < AnnouncementLoader.getAnnouncementCount(); i++)
-                list
-                        .append("\n")
-                        .append(i)
-                        .append(". ")
-                        .append(Utils.getEmbedTitle(AnnouncementLoader.getAnnouncementMessage(i)));
-
-            Utils.replyEphemeral(
-                    event,
-                    Utils.makeEmbed(
-                            "Announcement List",
-                            "Here's a list of all the pre-written announcements I support, sorted by id. " +
-                            "To view a specific announcement, type `/announcement get [id]`.",
-                            Colors.ADMIN,
-                            Utils.makeField("ID. TITLE", list.substring(1)))
-            );
+        // If the first load failed, the catalog is still the empty one, which has nothing to list, show, or send
+        if (catalog.isEmpty()) {
+            replies.reply("No announcements are loaded. Check the log for why the announcements failed to load.",
+                    true);
             return;
         }
 
-        int id;
-        try {
-            id = (int) Objects.requireNonNull(event.getOption("id")).getAsLong();
-            assert id >= 0 && id < AnnouncementLoader.getAnnouncementCount();
-        } catch (Exception e) {
-            id = AnnouncementLoader.getRandomId();
+        if ("list".equals(sub)) {
+            replies.reply(catalog.getListPages().getPage(0), true);
+            return;
         }
 
+        // If the id is missing or invalid, use a random announcement
+        int id = (int) context.getOptionLong("id", -1);
+        if (id < 0 || id >= catalog.size())
+            id = catalog.sample();
+
         if ("get".equals(sub)) {
-            Utils.replyEphemeral(event, AnnouncementLoader.getAnnouncementMessage(id));
+            replies.reply(catalog.get(id).getMessage(), true);
             return;
         }
 
         // At this point, it is guaranteed that the user is requesting to push an announcement. This action is
         // restricted to administrators.
 
-        if (!EventUtils.isAdmin(event.getUser())) {
-            Utils.replyEphemeral(event, "Sorry, this command is reserved for administrators.");
+        if (!context.isAdmin()) {
+            replies.reply("Sorry, this command is reserved for administrators.", true);
             return;
         }
 
-        event.deferReply(true).queue();
+        replies.defer(true);
 
         try {
             TextChannel channel = Main.JDA.getTextChannelById(ID.AP_STATS_CHANNEL);
             assert channel != null;
             int idF = id;
-            channel.sendMessage(AnnouncementLoader.getAnnouncementMessage(id)).queue(
-                    s -> event.getHook().editOriginal(
-                            "Sent announcement " + idF + " to " + channel.getAsMention() + ".").queue(),
+            channel.sendMessage(catalog.get(id).getMessage()).queue(
+                    s -> replies.reply("Sent announcement " + idF + " to " + channel.getAsMention() + ".", true),
                     f -> {
-                        event.getHook().editOriginal(
+                        replies.reply(
                                 "An error occurred while sending announcement " + idF +
-                                ". Please try again later.").queue();
+                                ". Please try again later.", true);
                         f.printStackTrace();
                     }
             );
         } catch (Exception e) {
-            event.getHook().editOriginal(
-                    "An error occurred while sending announcement " + id + ". Please try again later.").queue();
+            replies.reply("An error occurred while sending announcement " + id + ". Please try again later.", true);
         }
     }
+
+    /**
+     * This is a helper method for the <code>/announcement profile</code> command. It draws the {@link ActivityProfile}
+     * of an announcement channel as a chart with one row per day and one bar per hour, along with the range of rates in
+     * which announcements are sent and when the next one is due.
+     *
+     * @param channel the announcement channel
+     * @return the embed to send in response
+     */
+    private static EmbedBuilder describeProfile(AnnouncementChannel channel) {
+        ActivityProfile profile = channel.getProfile();
+        long now = System.currentTimeMillis();
+        double[] rates = profile.getRates(now);
+        double[] range = ActivityProfile.getWindowRange(rates);
+
+        double max = 0;
+        int busiest = 0;
+        for (int i = 0; i < rates.length; i++)
+            if (rates[i] > max) {
+                max = rates[i];
+                busiest = i;
+            }
+
+        // Each hour is drawn as one of eight bars, scaled to the busiest hour
+        StringBuilder chart = new StringBuilder("```\n    0     6     12    18    \n");
+        for (int day = 0; day < 7; day++) {
+            chart.append(DAYS[day]).append(' ');
+            for (int hour = 0; hour < 24; hour++) {
+                double rate = rates[day * 24 + hour];
+                int bar = max == 0 ? 0 : (int) Math.round(rate / max * (BARS.length() - 1));
+                chart.append(BARS.charAt(bar));
+            }
+            chart.append('\n');
+        }
+        chart.append("```");
+
+        long deferred = channel.getDeferredUntil();
+        return Utils.makeEmbed(
+                "Activity Profile",
+                "Messages per hour in " + Utils.mentionChannel(channel.getChannelId()) + " (UTC), learned from " +
+                profile.getHoursObserved() + " hours of activity." + chart,
+                Colors.ADMIN,
+                Utils.makeField("Trained", profile.isTrained() ? "Yes" : "No (needs a full week)", true),
+                Utils.makeField("Busiest hour", String.format("%s %02d:00 (`%.1f`/h)",
+                        DAYS[busiest / 24], busiest % 24, max), true),
+                Utils.makeField("Announcement window", String.format("`%.1f` to `%.1f` messages/h", range[0], range[1]),
+                        true),
+                Utils.makeField("Next announcement", deferred != 0
+                        ? "Waiting for the window at <t:" + deferred / 1000 + ":f>"
+                        : channel.isArmed() ? "Waiting for the channel to be quiet" : "Waiting for activity", true)
+        );
+    }
 }
@@ -0,0 +1,33 @@
+package commands.slash;
+
+import commands.ReplySink;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This {@link ReplySink} sends replies as interaction responses to a {@link SlashCommandEvent}. Once the reply has
+ * been {@link #defer(boolean) deferred}, later replies edit the deferred response instead.
+ */
+public class SlashReplySink implements ReplySink {
+    private final SlashCommandEvent event;
+    private volatile boolean deferred = false;
+
+    public SlashReplySink(@NotNull SlashCommandEvent event) {
+        this.event = event;
+    }
+
+    @Override
+    public void reply(@NotNull Message message, boolean ephemeral) {
+        if (deferred)
+            event.getHook().editOriginal(message).queue();
+        else
+            event.reply(message).setEphemeral(ephemeral).queue();
+    }
+
+    @Override
+    public void defer(boolean ephemeral) {
+        deferred = true;
+        event.deferReply(ephemeral).queue();
+    }
+}
@@ -0,0 +1,166 @@
+package commands.text;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * This is the parsed form of a prefixed text command. Rather than copying the message into separate argument strings,
+ * it keeps a reference to the raw message and records the start and end offset of each whitespace-separated argument.
+ * Arguments can then be compared case-insensitively in place with {@link #is(int, String)} or parsed with {@link
+ * #getInt(int)}, and only copied into a new {@link String} when a caller actually needs one through {@link #get(int)}.
+ * <p>
+ * Note that the prefix itself is not an argument: for the message <code>%faq 3</code>, argument 0 is <code>faq</code>
+ * and argument 1 is <code>3</code>.
+ */
+public final class CommandArgs {
+    /**
+     * The raw message the arguments were parsed from.
+     */
+    private final CharSequence source;
+
+    /**
+     * The offsets of each argument in the {@link #source}. Argument <code>i</code> spans from
+     * <code>bounds[2i]</code> (inclusive) to <code>bounds[2i + 1]</code> (exclusive).
+     */
+    private final int[] bounds;
+
+    private CommandArgs(CharSequence source, int[] bounds) {
+        this.source = source;
+        this.bounds = bounds;
+    }
+
+    /**
+     * This checks whether a message starts with the given prefix (ignoring case) and contains at least one argument
+     * after it. If so, the arguments are located and returned. Otherwise, <code>null</code> is returned.
+     * <p>
+     * This makes exactly one small allocation for the argument offsets, and none at all if the prefix doesn't match.
+     *
+     * @param message the raw message contents
+     * @param prefix  the bot's command prefix
+     * @return the parsed arguments, or <code>null</code> if the message is not a command
+     */
+    public static @Nullable CommandArgs parse(@NotNull CharSequence message, @NotNull String prefix) {
+        int length = message.length();
+        int start = prefix.length();
+
+        if (length <= start || !regionMatches(message, 0, prefix, 0, start))
+            return null;
+
+        // Count the arguments first so the offsets can be stored in a single exactly-sized array
+        int count = 0;
+        boolean inArg = false;
+        for (int i = start; i < length; i++) {
+            boolean whitespace = Character.isWhitespace(message.charAt(i));
+            if (!whitespace && !inArg)
+                count++;
+            inArg = !whitespace;
+        }
+
+        if (count == 0)
+            return null;
+
+        int[] bounds = new int[count * 2];
+        int b = 0;
+        inArg = false;
+        for (int i = start; i < length; i++) {
+            boolean whitespace = Character.isWhitespace(message.charAt(i));
+            if (!whitespace && !inArg)
+                bounds[b++] = i;
+            else if (whitespace && inArg)
+                bounds[b++] = i;
+            inArg = !whitespace;
+        }
+        if (inArg)
+            bounds[b] = length;
+
+        return new CommandArgs(message, bounds);
+    }
+
+    /**
+     * @return the number of arguments, including the command name
+     */
+    public int size() {
+        return bounds.length / 2;
+    }
+
+    /**
+     * Get the length of an argument.
+     *
+     * @param index the argument index
+     * @return the number of characters in that argument
+     */
+    public int length(int index) {
+        return bounds[index * 2 + 1] - bounds[index * 2];
+    }
+
+    /**
+     * This checks whether an argument is equal to the given text, ignoring case. No copy of the argument is made.
+     *
+     * @param index the argument index
+     * @param text  the text to compare against
+     * @return <code>true</code> if the argument matches; <code>false</code> otherwise
+     */
+    public boolean is(int index, @NotNull String text) {
+        return index < size()
+               && length(index) == text.length()
+               && regionMatches(source, bounds[index * 2], text, 0, text.length());
+    }
+
+    /**
+     * Get an argument as a lowercase {@link String}. This copies the argument, so prefer {@link #is(int, String)} for
+     * comparisons.
+     *
+     * @param index the argument index
+     * @return the argument in lowercase
+     */
+    public @NotNull String get(int index) {
+        return source.subSequence(bounds[index * 2], bounds[index * 2 + 1]).toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parse an argument as a non-negative decimal integer without copying it.
+     *
+     * @param index the argument index
+     * @return the parsed value
+     * @throws NumberFormatException if the argument is missing, is not a plain decimal number, or is too large
+     */
+    public int getInt(int index) throws NumberFormatException {
+        if (index >= size())
+            throw new NumberFormatException("Missing argument " + index);
+
+        int value = 0;
+        for (int i = bounds[index * 2]; i < bounds[index * 2 + 1]; i++) {
+            int digit = Character.digit(source.charAt(i), 10);
+            if (digit < 0 || value > (Integer.MAX_VALUE - digit) / 10)
+                throw new NumberFormatException("Invalid number in argument " + index);
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Get the raw message that these arguments were parsed from.
+     *
+     * @return the raw message
+     */
+    public @NotNull CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * This is a {@link CharSequence} version of {@link String#regionMatches(boolean, int, String, int, int)} that always
+     * ignores case.
+     */
+    private static boolean regionMatches(CharSequence a, int aOffset, String b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            char c1 = a.charAt(aOffset + i);
+            char c2 = b.charAt(bOffset + i);
+            if (c1 != c2 && Character.toLowerCase(c1) != Character.toLowerCase(c2)
+                && Character.toUpperCase(c1) != Character.toUpperCase(c2))
+                return false;
+        }
+        return true;
+    }
+}
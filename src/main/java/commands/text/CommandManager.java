@@ -2,6 +2,8 @@ package commands.text;
 
 import data.Setting;
 import events.EventUtils;
+import events.Throttle;
+import main.ExpiringLongMap;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageChannel;
 import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
@@ -9,15 +11,20 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
 
 import javax.annotation.Nonnull;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class manages the {@link CommandReply CommandReplies} associated with the current bot instance.
  */
 public class CommandManager {
-    private static final Map<Long, CommandReply> commandReplies = new HashMap<>();
+    /**
+     * This stores the {@link CommandReply CommandReplies} sent by the bot, keyed by the id of the message that
+     * triggered them. Entries expire once the {@link Setting#COMMAND_EDIT_WINDOW edit window} has passed, after which
+     * edits to the original command are ignored. The store is replaced with one using the configured settings by
+     * {@link #loadSettings()} on startup.
+     */
+    private static volatile ExpiringLongMap<CommandReply> commandReplies =
+            new ExpiringLongMap<>(15, TimeUnit.MINUTES, 10000);
 
     /**
      * This is the central {@link TextCommands} method. It confirms that a given message uses the bot's prefix and is
@@ -27,56 +34,75 @@ public class CommandManager {
      */
     public static void onMessageReceived(@Nonnull MessageReceivedEvent event) {
         Message message = event.getMessage();
-        String contents = message.getContentRaw();
-        MessageChannel channel = event.getChannel();
-        long messageId = message.getIdLong();
 
-        // Confirm that the message starts with the prefix, and remove the prefix if it does
-        if ((contents = removePrefix(contents)) == null)
+        // Confirm that the message starts with the prefix, and separate the arguments if it does
+        CommandArgs args = CommandArgs.parse(message.getContentRaw(), Setting.PREFIX);
+        if (args == null)
             return;
 
-        // Separate the arguments
-        String[] args = contents.toLowerCase(Locale.ROOT).split("\\s+");
+        // Drop the command silently if the user or channel is over its rate limit, as replying would defeat the point
+        if (!Throttle.allow(message, Throttle.Priority.NORMAL))
+            return;
 
         // Determine which command was requested, and call the appropriate function
-        commandReplies.put(messageId, getReply(message, args, true));
+        commandReplies.put(message.getIdLong(), getReply(message, args, true));
     }
 
-    public static void onMessageUpdate(@Nonnull MessageUpdateEvent event) {
-        // If no command reply was sent to the message being edited, ignore it
-        if (!commandReplies.containsKey(event.getMessageIdLong()))
-            return;
+    /**
+     * This replaces the {@link #commandReplies} store with a new, empty store using the {@link
+     * Setting#COMMAND_EDIT_WINDOW} and {@link Setting#COMMAND_REPLY_CACHE_SIZE} settings, and applies the {@link
+     * Setting#EDIT_COALESCE_WINDOW} to the {@link EditCoalescer}. It is called once at startup after the settings are
+     * imported.
+     */
+    public static void loadSettings() {
+        commandReplies = new ExpiringLongMap<>(
+                Setting.COMMAND_EDIT_WINDOW, TimeUnit.SECONDS, Setting.COMMAND_REPLY_CACHE_SIZE);
+        EditCoalescer.setWindow(Setting.EDIT_COALESCE_WINDOW);
+    }
 
+    /**
+     * Get the store of {@link CommandReply CommandReplies}. This is used to report its hit, miss, and eviction counts.
+     *
+     * @return the command reply store
+     */
+    public static ExpiringLongMap<CommandReply> getCommandReplies() {
+        return commandReplies;
+    }
+
+    public static void onMessageUpdate(@Nonnull MessageUpdateEvent event) {
+        // If no command reply was sent to the message being edited (or the edit window has passed), ignore it
         CommandReply reply = commandReplies.get(event.getMessageIdLong());
-        String command = reply.getCommand();
+        if (reply == null)
+            return;
 
         Message message = event.getMessage();
-        String contents = message.getContentRaw();
 
-        // Confirm that the message starts with the prefix, and remove the prefix if it does.
+        // Confirm that the message starts with the prefix, and separate the arguments if it does.
         // Otherwise, if a prefix was not used, delete the CommandReply
-        if ((contents = removePrefix(contents)) == null) {
-            reply.delete();
+        CommandArgs args = CommandArgs.parse(message.getContentRaw(), Setting.PREFIX);
+        if (args == null) {
+            delete(event.getMessageIdLong());
             return;
         }
 
-        // Separate the arguments
-        String[] args = contents.toLowerCase(Locale.ROOT).split("\\s+");
-
         // Confirm that the user's new command is the same as the original command. If not, delete the reply.
         if (!reply.commandMatches(args)) {
             delete(event.getMessageIdLong());
             return;
         }
 
-        // Update the existing reply to have the contents of a newly generated reply
-        reply.update(getReply(message, args, false));
+        // Each edit of the reply counts against the rate limits, the same as a new command
+        if (!Throttle.allow(message, Throttle.Priority.NORMAL))
+            return;
+
+        // Update the existing reply to have the contents of a newly generated reply. The EditCoalescer merges rapid
+        // edits and skips any that don't change the reply.
+        EditCoalescer.submit(reply, getReply(message, args, false));
     }
 
     public static void onMessageDelete(@Nonnull MessageDeleteEvent event) {
         // If a command reply was sent to the message that was deleted, delete the reply
-        if (commandReplies.containsKey(event.getMessageIdLong()))
-            delete(event.getMessageIdLong());
+        delete(event.getMessageIdLong());
     }
 
     /**
@@ -87,63 +113,24 @@ public class CommandManager {
      * @param doSend whether to send the {@link CommandReply} to Discord using the appropriate method (send/reply)
      * @return the {@link CommandReply}
      */
-    private static CommandReply getReply(@Nonnull Message message, @Nonnull String[] args, boolean doSend) {
-        // Determine which command was requested, and call the appropriate function
-        switch (args[0]) {
-
-            // Generic commands
-
-            case "help" -> {
-                return send(
-                        CommandReply.ofReply("help", TextCommands.help(message), message),
-                        true, doSend);
-            }
-
-            case "faq" -> {
-                return send(
-                        TextCommands.faqCommand(message, args),
-                        true, doSend);
-            }
-
-
-            // Admin commands
-
-            case "admin" -> {
-                if (EventUtils.isAdmin(message.getAuthor()))
-                    return send(
-                            CommandReply.ofReply("admin", TextCommands.admin(message), message),
-                            true, doSend);
-                else
-                    return send(
-                            invalidPermissions("admin", message),
-                            true, doSend);
-            }
-
-            case "mode" -> {
-                if (EventUtils.isAdmin(message.getAuthor()))
-                    return send(
-                            CommandReply.ofReply("mode", TextCommands.mode(message, args), message),
-                            true, doSend);
-                else
-                    return send(
-                            invalidPermissions("mode", message),
-                            true, doSend);
-            }
-
-            default -> {
-                return send(
-                        CommandReply.ofReply(
-                                args[0],
-                                "Sorry, I don't recognize that command. Type `/` for a list of supported " +
-                                "slash commands.",
-                                message),
-                        true, doSend);
-            }
-        }
+    private static CommandReply getReply(@Nonnull Message message, @Nonnull CommandArgs args, boolean doSend) {
+        // Determine which command was requested, and call its @TextHandler through the generated dispatch table
+        String command = args.get(0);
+        CommandReply reply;
+
+        if (TextCommandDispatcher.isAdminOnly(command) && !EventUtils.isAdmin(message.getAuthor()))
+            reply = invalidPermissions(command, message);
+        else if ((reply = TextCommandDispatcher.dispatch(command, message, args)) == null)
+            reply = CommandReply.ofReply(
+                    command,
+                    "Sorry, I don't recognize that command. Type `/` for a list of supported slash commands.",
+                    message);
+
+        return send(reply, true, doSend);
     }
 
     /**
-     * This is a helper method for {@link #getReply(Message, String[], boolean)}. It takes a {@link CommandReply} and
+     * This is a helper method for {@link #getReply(Message, CommandArgs, boolean)}. It takes a {@link CommandReply} and
      * determines whether to send it based on the state of <code>doSend</code>.
      *
      * @param commandReply the command to send
@@ -162,23 +149,6 @@ public class CommandManager {
         return CommandReply.ofReply(command, "Sorry, this command is reserved for administrators.", message);
     }
 
-    /**
-     * This checks to see if the given message starts with the bot's {@link Setting#PREFIX prefix} and uses a command.
-     * If it does, the prefix is removed and the message is {@link String#trim() trimmed} and returned. Otherwise,
-     * <code>null</code> is returned.
-     * <p>
-     * If the message is starts with the prefix, but removing that prefix would make it an empty string, there cannot be
-     * any command, so <code>null</code> is returned.
-     *
-     * @param message the message to check for a prefix
-     * @return <code>null</code> if the prefix was not used; otherwise the message with the prefix removed.
-     */
-    private static String removePrefix(@Nonnull String message) {
-        if (message.toLowerCase(Locale.ROOT).startsWith(Setting.PREFIX) && message.length() > Setting.PREFIX.length())
-            return message.substring(Setting.PREFIX.length());
-        return null;
-    }
-
     /**
      * Delete a {@link CommandReply} based on its key in {@link #commandReplies}. This deletes the message associated
      * with the reply and the entry in {@link #commandReplies}.
@@ -186,13 +156,8 @@ public class CommandManager {
      * @param key they key corresponding to the {@link CommandReply} to be deleted
      */
     public static void delete(long key) {
-        try {
-            commandReplies.get(key).delete().queue(s -> {
-            }, f -> {
-                // It's possible that the message was deleted by an admin. If so, ignore any errors.
-            });
-            commandReplies.remove(key);
-        } catch (Exception ignored) {
-        }
+        CommandReply reply = commandReplies.remove(key);
+        if (reply != null)
+            reply.delete();
     }
 }
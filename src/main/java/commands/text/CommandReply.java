@@ -11,10 +11,13 @@ import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.components.Button;
 import net.dv8tion.jda.api.interactions.components.selections.SelectionMenu;
 import net.dv8tion.jda.api.requests.RestAction;
-import net.dv8tion.jda.api.requests.restaction.AuditableRestAction;
 import net.dv8tion.jda.internal.entities.DataMessage;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class handles replies made to text based commands (e.g. everything except slash commands). It handles
@@ -24,20 +27,22 @@ import javax.annotation.Nonnull;
 public class CommandReply {
     /**
      * After a {@link CommandReply} is created with a {@link #dataMessage} and that message is sent to Discord, Discord
-     * returns the message with its assigned snowflake ID. This message represents that response from Discord. When a
-     * {@link CommandReply} is updated, this is the message that is used to send the update via {@link
-     * Message#editMessage(Message)}.
+     * returns the message with its assigned snowflake ID. This future completes with that response from Discord once
+     * the {@link RestAction#queue() queue()} in {@link #send()} or {@link #reply()} resolves. When a {@link
+     * CommandReply} is updated or deleted, the change is chained onto this future, so it is applied as soon as the
+     * reply exists without any thread having to wait for it.
      */
-    private Message replyMessage;
+    private final CompletableFuture<Message> replyMessage = new CompletableFuture<>();
 
     /**
      * This is the {@link Message}, most likely a {@link DataMessage}, that was created in response to a command sent by
      * a user and sent in some channel. It probably does not have a snowflake ID yet, because it has not necessarily
      * been sent to or received from Discord.
      * <p>
-     * This is the message that is saved immediately when a new {@link CommandReply} instance is created.
+     * This is the message that is saved immediately when a new {@link CommandReply} instance is created, and it is
+     * replaced with the latest message whenever the reply is {@link #update(Message) updated}.
      */
-    private Message dataMessage;
+    private volatile Message dataMessage;
 
     /**
      * This is the channel that a user triggered a command in, and the destination of the {@link #dataMessage}
@@ -62,35 +67,29 @@ public class CommandReply {
     private final String command;
 
     /**
-     * It is possible that a user could type a command in Discord and then edit that command before the bot had a chance
-     * to reply. In that event, the bot would try to update its {@link #replyMessage} (since the user updated the
-     * command) before it had actually {@link #send()} sent} a message and received that message back from Discord.
-     * <p>
-     * In other words, the bot would attempt to {@link Message#editMessage(Message) edit} the {@link #replyMessage}, but
-     * that message would still be <code>null</code>, because the {@link RestAction#queue() queue()} forwarded to {@link
-     * #processSendResult(Message)} would not have resolved yet.
-     * <p>
-     * In the case of this unlikely event, the new message that should be passed to {@link Message#editMessage(Message)}
-     * is saved here. After the {@link RestAction#queue() queue()} resolves, it will check to see if this is
-     * <code>null</code>. If it isn't, {@link #replyMessage} will be edited to reflect the message stored in this
-     * request.
+     * This is the {@link #command} split into its individual words. It is computed once on creation so that {@link
+     * #commandMatches(CommandArgs)} does not need to split the command on every edit.
      */
-    private Message updateRequest = null;
+    private final String[] commandWords;
 
     /**
-     * This is very similar to {@link #updateRequest}. When a user deletes their command request, the bot's reply should
-     * also be deleted. However, it's possible that the user will delete their request before the bot manages to reply,
-     * such that the delete call will occur before the bot sends its reply. In this case, the {@link CommandReply} would
-     * not be properly deleted.
-     * <p>
-     * To rectify this issue, enable this if {@link #replyMessage} is <code>null</code>. After the {@link
-     * RestAction#queue() queue()} in {@link #processSendResult(Message)} resolves, it will check to see if this is
-     * <code>true</code>, in which case the newly set {@link #replyMessage} will be deleted.
+     * It is possible that a user could edit their command several times before the bot's reply has been sent, or before
+     * an earlier edit has been applied. Only the most recent edit matters, so each {@link #update(Message) update}
+     * stores its message here, replacing any older pending message. When the {@link #replyMessage} is available, the
+     * pending message is taken (and cleared) and sent to Discord with {@link Message#editMessage(Message)}. Any other
+     * update callbacks that run afterwards find nothing pending and do nothing, giving last-write-wins semantics.
      */
-    private boolean deleteRequest = false;
+    private final AtomicReference<Message> updateRequest = new AtomicReference<>();
+
+    /**
+     * This is enabled when the reply is {@link #delete() deleted}. Once set, any pending or future {@link
+     * #updateRequest updates} are discarded, since there is no longer a message to edit.
+     */
+    private volatile boolean deleted = false;
 
     private CommandReply(String command, MessageChannel channel, Message dataMessage) {
         this.command = command;
+        this.commandWords = splitWords(command);
         this.channel = channel;
         this.dataMessage = dataMessage;
     }
@@ -298,19 +297,19 @@ public class CommandReply {
     }
 
     /**
-     * Send this {@link CommandReply} to the appropriate {@link #channel} in Discord, and update {@link #replyMessage}
+     * Send this {@link CommandReply} to the appropriate {@link #channel} in Discord, and complete {@link #replyMessage}
      * with Discord's response.
      *
      * @return this {@link CommandReply} instance for chaining
      */
     public CommandReply send() {
-        channel.sendMessage(dataMessage).queue(this::processSendResult);
+        channel.sendMessage(dataMessage).queue(replyMessage::complete, replyMessage::completeExceptionally);
         return this;
     }
 
     /**
      * Send this {@link CommandReply} to the {@link #channel} in Discord as a {@link Message#reply(Message) reply} to
-     * the {@link #targetMessageId targetMessage}, and update {@link #replyMessage} with Discord's response. Warning:
+     * the {@link #targetMessageId targetMessage}, and complete {@link #replyMessage} with Discord's response. Warning:
      * this will ping the author of the target message. To control that behavior, use {@link #reply(boolean)}.
      * <p>
      * Note: this only works if {@link #targetMessageId} was set properly when creating this {@link CommandReply}
@@ -353,7 +352,7 @@ public class CommandReply {
      */
     public CommandReply reply(boolean enableMention) {
         channel.sendMessage(dataMessage).referenceById(targetMessageId).mentionRepliedUser(enableMention)
-                .queue(this::processSendResult);
+                .queue(replyMessage::complete, replyMessage::completeExceptionally);
         return this;
     }
 
@@ -371,62 +370,24 @@ public class CommandReply {
         return reply(enableMention);
     }
 
-    /**
-     * This method is shared by {@link #send()} and {@link #reply()}. It handles the message returned by Discord through
-     * {@link RestAction#queue()}, storing it in {@link #replyMessage}.
-     *
-     * @param message the message returned by Discord
-     */
-    private void processSendResult(Message message) {
-        replyMessage = message;
-        if (deleteRequest) {
-            delete().queue(s -> {
-            }, f -> {
-            });
-            deleteRequest = false;
-        } else if (updateRequest != null) {
-            update(updateRequest);
-            updateRequest = null;
-        }
-    }
-
     /**
      * This updates the original {@link #replyMessage message} sent in response to a command.
+     * <p>
+     * The new message is stored as the {@link #updateRequest}, and the edit is chained onto the {@link #replyMessage}
+     * future. If the reply has already been sent, the edit is queued immediately. Otherwise, it is queued as soon as
+     * Discord acknowledges the reply. This method never blocks.
      *
      * @param message the new message to replace the old one with
      */
     public void update(Message message) {
-        // If there is no replyMessage, the CommandReply was likely just created. Save the new message for later,
-        // when the .queue() in send(Message) resolves.
-        if (replyMessage == null) {
-            updateRequest = message;
-
-            try {
-                // Wait a moment to see if the send() method's .queue() has received a response but did not update
-                // the queued message. This should almost never happen, and could only occur if the .queue() response
-                // occurred at exactly the same time as this method's update was triggered.
-                Thread.sleep(500);
-                if (replyMessage != null && updateRequest != null) {
-                    update(message);
-                    updateRequest = null;
-                }
-            } catch (InterruptedException ignored) {
-            }
-
+        if (deleted)
             return;
-        }
-
-        // If there IS a replyMessage, proceed to edit it as usual
-        replyMessage.editMessage(message).queue(
-                m -> replyMessage = m,
-                f -> {
-                    // It's possible that this message has since been deleted and an error will be thrown. If so,
-                    // ignore it.
-                }
-        );
 
         // Update dataMessage to reflect the new message
         dataMessage = message;
+
+        updateRequest.set(message);
+        replyMessage.thenAccept(this::processUpdateRequest);
     }
 
     /**
@@ -439,31 +400,66 @@ public class CommandReply {
         update(commandReply.dataMessage);
     }
 
+    /**
+     * This is chained onto the {@link #replyMessage} future by {@link #update(Message)}. It takes the latest {@link
+     * #updateRequest}, if there is one, and edits the sent reply to match it.
+     *
+     * @param reply the message returned by Discord when the reply was sent
+     */
+    private void processUpdateRequest(Message reply) {
+        Message message = updateRequest.getAndSet(null);
+        if (message == null || deleted)
+            return;
+
+        reply.editMessage(message).queue(
+                m -> {
+                },
+                f -> {
+                    // It's possible that this message has since been deleted and an error will be thrown. If so,
+                    // ignore it.
+                }
+        );
+    }
+
     /**
      * Delete the {@link CommandReply reply} made to a user's command request. This is typically done because the user
      * deleted their initial message with the command, and so the bot's response would look out of place.
      * <p>
-     * This method returns an {@link AuditableRestAction}. You will need to {@link AuditableRestAction#queue() queue}
-     * the result to send the delete request to Discord.
-     */
-    public AuditableRestAction<Void> delete() {
-        // Just like with update(), it's possible that the replyMessage has not been set yet, in which case it cannot
-        // be deleted. If this is the case, enable a delete request for later.
-        if (replyMessage == null) {
-            deleteRequest = true;
-            try {
-                Thread.sleep(500);
-                if (replyMessage != null && deleteRequest)
-                    delete();
-            } catch (InterruptedException ignored) {
-            }
-            return null;
-        }
+     * If the reply has not been sent yet, the deletion is chained onto the {@link #replyMessage} future and performed
+     * once Discord acknowledges the reply. Any pending {@link #update(Message) updates} are discarded. Errors (such as
+     * the message having already been deleted by an admin) are ignored.
+     */
+    public void delete() {
+        deleted = true;
+        updateRequest.set(null);
+
+        replyMessage.thenAccept(m -> m.delete().queue(
+                s -> {
+                },
+                f -> {
+                    // It's possible that the message was deleted by an admin. If so, ignore any errors.
+                }));
+    }
+
 
-        // If there IS a replyMessage, delete it, along with this entire CommandReply instance
-        return replyMessage.delete();
+    /**
+     * Get the {@link #dataMessage}, which is the message this reply currently shows (or will show once sent).
+     *
+     * @return the current message
+     */
+    public Message getMessage() {
+        return dataMessage;
     }
 
+    /**
+     * Get the {@link EditCoalescer#hash(Message) hash} of the {@link #dataMessage}. This is used to skip edits that
+     * would not change the reply.
+     *
+     * @return the hash of the current message
+     */
+    public int getMessageHash() {
+        return EditCoalescer.hash(dataMessage);
+    }
 
     /**
      * Get the {@link #command}
@@ -486,22 +482,40 @@ public class CommandReply {
     }
 
     /**
-     * This is an overloaded method for {@link #commandMatches(String)}, which allows the command to be presented as an
-     * array of strings rather than a single one. The arguments are joined with single spaces, and then checked to see
-     * if they begin with {@link #command}.
+     * This is an overloaded method for {@link #commandMatches(String)}, which checks the parsed arguments of a command
+     * message. The command matches if its first arguments are the words of {@link #command}, ignoring case.
      *
      * @param args the arguments of a command message sent by a user
      * @return <code>true</code> if the command matches; <code>false</code> otherwise
      */
-    public boolean commandMatches(@Nonnull String[] args) {
-        String[] command = this.command.split("\\s+");
-
-        if (args.length < command.length)
+    public boolean commandMatches(@Nonnull CommandArgs args) {
+        if (args.size() < commandWords.length)
             return false;
 
-        for (int i = 0; i < command.length; i++)
-            if (!command[i].equalsIgnoreCase(args[i]))
+        for (int i = 0; i < commandWords.length; i++)
+            if (!args.is(i, commandWords[i]))
                 return false;
         return true;
     }
+
+    /**
+     * This splits a command into words separated by spaces.
+     *
+     * @param command the command
+     * @return the individual words
+     */
+    private static String[] splitWords(@Nonnull String command) {
+        List<String> words = new ArrayList<>(2);
+        int start = -1;
+        for (int i = 0; i <= command.length(); i++) {
+            boolean whitespace = i == command.length() || Character.isWhitespace(command.charAt(i));
+            if (!whitespace && start < 0)
+                start = i;
+            else if (whitespace && start >= 0) {
+                words.add(command.substring(start, i));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
 }
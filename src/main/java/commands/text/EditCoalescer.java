@@ -0,0 +1,158 @@
+package commands.text;
+
+import data.Setting;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.Component;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This sits in front of {@link CommandReply#update(Message)} and reduces the number of edit requests sent to Discord
+ * when a user edits a command several times in quick succession.
+ * <p>
+ * When an edit is {@link #submit(CommandReply, Message) submitted}, it is held for a short {@link #getWindow() window}.
+ * Any further edits to the same reply within that window replace the held message, so only the latest one is sent.
+ * When the window ends, the held message is compared against the message the reply currently shows (using {@link
+ * #hash(Message)}). If they are identical, the edit is skipped entirely; otherwise it is forwarded to {@link
+ * CommandReply#update(Message)}.
+ */
+public class EditCoalescer {
+    /**
+     * The latest pending message for each reply with an open coalescing window.
+     */
+    private static final Map<CommandReply, Message> pending = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "StatsBot Edit-Coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The coalescing window in milliseconds. This starts at {@link Setting#EDIT_COALESCE_WINDOW} but may be changed at
+     * runtime through {@link #setWindow(long)}.
+     */
+    private static volatile long window = 750;
+
+    private static final LongAdder submitted = new LongAdder();
+    private static final LongAdder coalesced = new LongAdder();
+    private static final LongAdder skipped = new LongAdder();
+    private static final LongAdder sent = new LongAdder();
+
+    /**
+     * Submit a new message for a {@link CommandReply}. If there is no open window for the reply, one is opened and the
+     * message will be flushed when it closes. If there is an open window, the message simply replaces the one already
+     * waiting, and the older message is counted as {@link #getCoalescedCount() coalesced}.
+     *
+     * @param reply   the reply to update
+     * @param message the new message for the reply
+     */
+    public static void submit(@NotNull CommandReply reply, @NotNull Message message) {
+        submitted.increment();
+        if (pending.put(reply, message) == null)
+            timer.schedule(() -> flush(reply), window, TimeUnit.MILLISECONDS);
+        else
+            coalesced.increment();
+    }
+
+    /**
+     * Overloaded method for {@link #submit(CommandReply, Message)} that takes the new message from another {@link
+     * CommandReply}.
+     *
+     * @param reply        the reply to update
+     * @param commandReply the newly generated reply containing the new message
+     */
+    public static void submit(@NotNull CommandReply reply, @NotNull CommandReply commandReply) {
+        submit(reply, commandReply.getMessage());
+    }
+
+    /**
+     * Close the window for a reply and forward its latest message to {@link CommandReply#update(Message)}, unless
+     * that message matches what the reply already shows.
+     *
+     * @param reply the reply to flush
+     */
+    private static void flush(@NotNull CommandReply reply) {
+        Message message = pending.remove(reply);
+        if (message == null)
+            return;
+
+        if (hash(message) == reply.getMessageHash()) {
+            skipped.increment();
+            return;
+        }
+
+        sent.increment();
+        reply.update(message);
+    }
+
+    /**
+     * Set the length of the coalescing window. A longer window merges more edits at the cost of a slower response to
+     * each one.
+     *
+     * @param millis the new window in milliseconds
+     */
+    public static void setWindow(long millis) {
+        window = millis;
+    }
+
+    /**
+     * @return the current coalescing window in milliseconds
+     */
+    public static long getWindow() {
+        return window;
+    }
+
+    /**
+     * @return the total number of edits submitted
+     */
+    public static long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return the number of edits replaced by a newer edit before they were sent
+     */
+    public static long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of edits dropped because they matched the message already shown
+     */
+    public static long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return the number of edits forwarded to Discord
+     */
+    public static long getSentCount() {
+        return sent.sum();
+    }
+
+    /**
+     * This computes a hash of the parts of a message that are visible in Discord: its text, its embeds, and its
+     * components. Two messages with the same hash are treated as identical.
+     *
+     * @param message the message to hash
+     * @return the hash
+     */
+    public static int hash(@NotNull Message message) {
+        int hash = message.getContentRaw().hashCode();
+
+        for (MessageEmbed embed : message.getEmbeds())
+            hash = 31 * hash + embed.toData().toString().hashCode();
+
+        for (ActionRow row : message.getActionRows())
+            for (Component component : row.getComponents())
+                hash = 31 * hash + component.toData().toString().hashCode();
+
+        return hash;
+    }
+}
@@ -1,101 +1,161 @@
 package commands.text;
 
-import commands.faq.FAQEntry;
+import annotations.TextHandler;
+import commands.CommandContext;
+import commands.ReplySink;
+import commands.faq.FAQCatalog;
+import commands.faq.FAQIndex;
+import commands.faq.FAQLoader;
 import data.Colors;
 import data.Link;
 import data.Setting;
 import events.EventUtils;
+import events.SurgeMonitor;
+import events.Throttle;
 import main.BotMode;
+import main.ExpiringLongMap;
 import main.Main;
 import main.Utils;
 import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.MessageChannel;
-import net.dv8tion.jda.api.entities.MessageType;
 import net.dv8tion.jda.api.entities.User;
 
+import java.util.List;
+import java.util.Objects;
+
 /**
  * This class contains all the methods used for evaluating standard text based commands send to Stats Bot. This means
  * all commands that are not based on slash commands are evaluated here.
  */
 public class TextCommands {
-    static String help(Message message) {
+    /**
+     * While the bot is in {@link SurgeMonitor surge mode}, the replies to the <code>faq</code> command are rendered once
+     * ahead of time and shared by every user, without the "Requested by" footer. Index 0 links to the document itself,
+     * and index <code>i</code> links to question <code>i</code>. This is <code>null</code> outside of surge mode.
+     */
+    private static volatile PrerenderedFaq prerenderedFaq = null;
+
+    /**
+     * The {@link #prerenderedFaq pre-rendered} replies to the <code>faq</code> command.
+     *
+     * @param catalog  the FAQ that the replies were rendered from. If the FAQ has been reloaded since, the replies are
+     *                 out of date and aren't used.
+     * @param messages the replies
+     */
+    private record PrerenderedFaq(FAQCatalog catalog, Message[] messages) {
+    }
+
+    @TextHandler(name = "help")
+    static String help() {
         return "This command is deprecated in favor of the new `/help` command. " +
                "Please use that instead.";
     }
 
+    /**
+     * The maximum number of questions listed in reply to an FAQ search.
+     */
+    private static final int FAQ_SEARCH_RESULTS = 3;
+
     /**
      * This method processes the standard prefixed command <code>faq</code>. The command allows users to forward someone
-     * to the {@link Link#FAQ FAQ} in the channel pins.
+     * to the {@link Link#FAQ FAQ} in the channel pins. If the command is itself a reply to another message, the link
+     * is sent in {@link ReplySink#replyToReferenced(Message) reply to that message} instead.
+     * <p>
+     * If the argument isn't a number, it is treated as keywords, and the best matching questions are found with the
+     * {@link FAQIndex}.
      *
-     * @param message the message requesting the faq
-     * @param args    the user's message in all lowercase, separated by spaces. <code>args[0]</code> is guaranteed to be
-     *                "<code>faq</code>".
-     * @return the {@link CommandReply}, generated using an {@link CommandReply#ofReply(String, MessageChannel, Message,
-     * long) ofReply()} method to be eligible for {@link CommandReply#reply()}
+     * @param context the context of the command. Argument 0 is guaranteed to be "<code>faq</code>".
      */
-    static CommandReply faqCommand(Message message, String[] args) {
-        // This is the message that the bot should reply to when it sends the FAQ link. By default, it's just the
-        // message that requested it with the `faq` command. But if that message replied to someone else, use the
-        // referenced message instead.
-        Message replyTarget = message;
-
+    @TextHandler(name = "faq")
+    static void faqCommand(CommandContext context) {
+        CommandArgs args = Objects.requireNonNull(context.args());
+        FAQCatalog catalog = FAQLoader.getCatalog();
 
         // First, determine if the user is simply requesting help
-        if (args.length > 1 && args[1].equals("help")) {
-            return CommandReply.ofReply(
-                    "faq",
+        if (args.is(1, "help")) {
+            context.replies().reply(
                     "Type `" + Setting.PREFIX + "faq [header #]` to get a link to a " +
-                    "specific question in the FAQ. For a table of contents, type `/faq`.",
-                    replyTarget
+                    "specific question in the FAQ, or `" + Setting.PREFIX + "faq [keywords]` to search for one. " +
+                    "For a table of contents, type `/faq`.",
+                    false
             );
+            return;
         }
 
-        String user = message.getMember() == null ?
-                message.getAuthor().getName() : message.getMember().getEffectiveName();
+        // If the user gave words rather than an id, search for matching questions
+        if (args.size() > 1 && !Character.isDigit(args.get(1).charAt(0))) {
+            StringBuilder query = new StringBuilder();
+            for (int i = 1; i < args.size(); i++)
+                query.append(args.get(i)).append(' ');
 
-        // Now determine which FAQ header the user is requesting and who should receive the link
-        if (message.getType() == MessageType.INLINE_REPLY && message.getReferencedMessage() != null)
-            replyTarget = message.getReferencedMessage();
+            List<FAQIndex.Result> results = catalog.getIndex().search(query.toString(), FAQ_SEARCH_RESULTS);
+            if (results.isEmpty())
+                context.replies().reply(
+                        "Couldn't find anything in the FAQ about that. Type `/faq` for a table of contents.",
+                        false
+                );
+            else
+                context.replies().replyToReferenced(getFaqSearchEmbed(results, context.userName()));
+            return;
+        }
 
         int id = -1;
 
         // If the user gave another argument (and it wasn't "help"), assume it is the id of the desired header
-        if (args.length > 1) {
+        if (args.size() > 1) {
             // Validate the id parameter
             try {
-                id = Integer.parseInt(args[1]);
-                if (id <= 0 || id > FAQEntry.questions.size())
+                id = args.getInt(1);
+                if (id <= 0 || id > catalog.getQuestions().size())
                     throw new Exception();
             } catch (Exception e) {
-                return CommandReply.ofReply(
-                        "faq",
-                        new MessageBuilder("Unknown id. Type `/faq` for a table of contents and list of " +
-                                           "question numbers.").build(),
-                        message
+                context.replies().reply(
+                        "Unknown id. Type `/faq` for a table of contents and list of question numbers.",
+                        false
                 );
+                return;
             }
         }
 
-        // Finally, return the FAQ embed
-        return CommandReply.ofReply(
-                "faq",
-                getFaqEmbed(id, user),
-                replyTarget
-        );
+        // Finally, send the FAQ embed to whoever should receive the link
+        PrerenderedFaq prerendered = prerenderedFaq;
+        context.replies().replyToReferenced(prerendered != null && prerendered.catalog() == catalog
+                ? prerendered.messages()[Math.max(id, 0)]
+                : getFaqEmbed(catalog, id, context.userName()));
     }
 
     /**
-     * This is a helper method for {@link #faqCommand(Message, String[])}. It returns a {@link Message} to send in reply
+     * Enable or disable the {@link #prerenderedFaq pre-rendered} replies to the <code>faq</code> command. This is
+     * called by the {@link SurgeMonitor} when surge mode starts and ends.
+     *
+     * @param prerender <code>true</code> to render the replies now and use them until this is called again with
+     *                  <code>false</code>
+     */
+    public static void setPrerendered(boolean prerender) {
+        if (!prerender) {
+            prerenderedFaq = null;
+            return;
+        }
+
+        FAQCatalog catalog = FAQLoader.getCatalog();
+        Message[] faq = new Message[catalog.getQuestions().size() + 1];
+        for (int i = 0; i < faq.length; i++)
+            faq[i] = getFaqEmbed(catalog, i == 0 ? -1 : i, null);
+        prerenderedFaq = new PrerenderedFaq(catalog, faq);
+    }
+
+    /**
+     * This is a helper method for {@link #faqCommand(CommandContext)}. It returns a {@link Message} to send in reply
      * to the <code>faq</code> command. The message contains a description of the FAQ, a link to either the document
      * itself or a specific header, and the name of the person who requested it.
      *
+     * @param catalog        the FAQ to link to
      * @param id             the specific question id to link to (or -1 to link to the document itself)
-     * @param requestingUser the user who requested the <code>faq</code> command
+     * @param requestingUser the user who requested the <code>faq</code> command, or <code>null</code> to leave them
+     *                       out of the footer
      * @return the message to send in response
      */
-    private static Message getFaqEmbed(int id, String requestingUser) {
+    private static Message getFaqEmbed(FAQCatalog catalog, int id, String requestingUser) {
         return Utils.addLinkButton(
                 Utils.makeEmbed(
                         "Frequently Asked Questions",
@@ -103,38 +163,64 @@ public class TextCommands {
                         Utils.link("this FAQ", Link.FAQ) + "." +
                         (id == -1 ?
                                 "" :
-                                "\nSee: **" + FAQEntry.questions.get(id - 1).getHyperlink() + "**"
+                                "\nSee: **" + catalog.getQuestion(id).getHyperlink() + "**"
                         ),
                         Colors.FAQ,
-                        "Type /faq for more info | Requested by @" + requestingUser),
-                id == -1 ? Link.FAQ : FAQEntry.questions.get(id - 1).getFullLink(),
+                        "Type /faq for more info" +
+                        (requestingUser == null ? "" : " | Requested by @" + requestingUser)),
+                id == -1 ? Link.FAQ : catalog.getQuestion(id).getFullLink(),
+                "View the FAQ"
+        );
+    }
+
+    /**
+     * This is a helper method for {@link #faqCommand(CommandContext)}. It returns a {@link Message} listing the results
+     * of an FAQ search, with a button linking to the best match.
+     *
+     * @param results        the matching questions, best first. There must be at least one.
+     * @param requestingUser the user who searched the FAQ
+     * @return the message to send in response
+     */
+    private static Message getFaqSearchEmbed(List<FAQIndex.Result> results, String requestingUser) {
+        StringBuilder list = new StringBuilder();
+        for (FAQIndex.Result result : results)
+            list.append("\n`").append(result.id()).append(".` ").append(result.entry().getHyperlink());
+
+        return Utils.addLinkButton(
+                Utils.makeEmbed(
+                        "FAQ Search",
+                        "Here are the questions in " + Utils.link("the FAQ", Link.FAQ) + " that best match your search:" +
+                        list,
+                        Colors.FAQ,
+                        "Type " + Setting.PREFIX + "faq [header #] to link one | Requested by @" + requestingUser),
+                results.get(0).entry().getFullLink(),
                 "View the FAQ"
         );
     }
 
     /**
-     * Admin command allowing me to change the current {@link Main#MODE BotMode)}
+     * Admin command allowing me to change the current {@link Main#getMode() BotMode}
      *
-     * @param message the message requesting the command
-     * @param args    the message contents in all lowercase, split by spaces, with the prefix removed.
+     * @param context the context of the command
      */
-    static String mode(Message message, String[] args) {
+    @TextHandler(name = "mode", admin = true)
+    static String mode(CommandContext context) {
+        CommandArgs args = Objects.requireNonNull(context.args());
         try {
-            if (args.length < 2) {
-                return "I am currently running mode `" + Main.MODE.getModeName() + "`.\n\n" +
+            if (args.size() < 2) {
+                return "I am currently running mode `" + Main.getMode().getModeName() + "`" +
+                       (SurgeMonitor.isSurging() ? " in surge mode" : "") + ".\n\n" +
                        "To change the bot mode, type `" + Setting.PREFIX + "mode [mode]`, where " +
                        "`[mode]` is one of `running`, `testing`, or `all`.";
             }
 
-            BotMode newMode = BotMode.fromName(args[1]);
+            BotMode newMode = BotMode.fromName(args.get(1));
             assert newMode != null;
 
-            if (newMode == Main.MODE)
+            if (newMode.equals(Main.setMode(newMode)))
                 return "I'm already running mode `" + newMode.getModeName() + "`";
-            else {
-                Main.MODE = newMode;
+            else
                 return "Updated mode to `" + newMode.getModeName() + "`";
-            }
 
         } catch (Exception e) {
             return "Sorry, I don't recognize that mode. Please use one of" +
@@ -142,20 +228,89 @@ public class TextCommands {
         }
     }
 
+    /**
+     * Admin command to view or override the {@link SurgeMonitor surge mode}. With no arguments, this shows the current
+     * state and the load on the busiest channel. Otherwise, argument 1 is <code>on</code> or <code>off</code> to force
+     * surge mode on or off, or <code>auto</code> to let the {@link SurgeMonitor} decide again.
+     *
+     * @param context the context of the command
+     */
+    @TextHandler(name = "surge", admin = true)
+    static String surge(CommandContext context) {
+        CommandArgs args = Objects.requireNonNull(context.args());
+        if (args.size() < 2)
+            return SurgeMonitor.describe() + "\n\n" +
+                   "To override it, type `" + Setting.PREFIX + "surge [on|off|auto]`.";
+
+        SurgeMonitor.Control control = SurgeMonitor.Control.fromName(args.get(1));
+        if (control == null)
+            return "Sorry, I don't recognize that setting. Please use one of `on`, `off`, or `auto`.";
+
+        SurgeMonitor.setControl(control, context.userName());
+        return SurgeMonitor.describe();
+    }
+
     /**
      * This is basically just the <code>help</code> command for admins.
      * <p>
      * <b>Precondition:</b> the user requesting this command must be an administrator according to {@link
      * EventUtils#isAdmin(User)}.
-     *
-     * @param message the message requesting the command
      */
-    static EmbedBuilder admin(Message message) {
+    @TextHandler(name = "admin", admin = true)
+    static EmbedBuilder admin() {
         return Utils.makeEmbed(
                 "Admin Commands",
                 "Here are all the admin commands I currently support:\n" +
                 "`" + Setting.PREFIX + "mode [mode]` - Change the current BotMode\n" +
+                "`" + Setting.PREFIX + "surge [on|off|auto]` - View or override surge mode\n" +
+                "`" + Setting.PREFIX + "stats` - View event dispatch statistics\n" +
                 "`" + Setting.PREFIX + "help` - View this help panel",
                 Colors.ADMIN);
     }
+
+    /**
+     * Admin command that reports runtime statistics for the bot, such as the state of the {@link Main#EVENTS event
+     * manager} queues and the {@link CommandManager#getCommandReplies() command reply store}.
+     * <p>
+     * <b>Precondition:</b> the user requesting this command must be an administrator according to {@link
+     * EventUtils#isAdmin(User)}.
+     */
+    @TextHandler(name = "stats", admin = true)
+    static EmbedBuilder stats() {
+        ExpiringLongMap<CommandReply> replies = CommandManager.getCommandReplies();
+        return Utils.makeEmbed(
+                "Bot Statistics",
+                "Here are the current runtime statistics for this bot instance.",
+                Colors.ADMIN,
+                Utils.makeField(
+                        "Event Dispatch",
+                        "Handled events: `" + Main.EVENTS.getHandledCount() + "`\n" +
+                        "Dropped events: `" + Main.EVENTS.getDroppedCount() + "`\n" +
+                        "Queued events: `" + Main.EVENTS.getQueueDepth() + "`\n" +
+                        "Active lanes: `" + Main.EVENTS.getLaneCount() + "`\n" +
+                        "Average lag: `" + Main.EVENTS.getAverageLagMicros() + " \u00b5s`\n" +
+                        "Max lag: `" + Main.EVENTS.getMaxLagMicros() + " \u00b5s`"),
+                Utils.makeField(
+                        "Command Replies",
+                        "Stored replies: `" + replies.size() + "`\n" +
+                        "Hits: `" + replies.getHits() + "`\n" +
+                        "Misses: `" + replies.getMisses() + "`\n" +
+                        "Expired: `" + replies.getExpirations() + "`\n" +
+                        "Evicted: `" + replies.getEvictions() + "`"),
+                Utils.makeField(
+                        "Edit Coalescing",
+                        "Window: `" + EditCoalescer.getWindow() + " ms`\n" +
+                        "Edits received: `" + EditCoalescer.getSubmittedCount() + "`\n" +
+                        "Coalesced: `" + EditCoalescer.getCoalescedCount() + "`\n" +
+                        "Skipped (unchanged): `" + EditCoalescer.getSkippedCount() + "`\n" +
+                        "Sent: `" + EditCoalescer.getSentCount() + "`"),
+                Utils.makeField(
+                        "Rate Limits",
+                        "Global usage: `" + Math.round(Throttle.getGlobalUsage() * 100) + "%`\n" +
+                        "Throttled (user): `" + Throttle.getThrottledUserCount() + "`\n" +
+                        "Throttled (channel): `" + Throttle.getThrottledChannelCount() + "`\n" +
+                        "Shed (low priority): `" + Throttle.getShedCount(Throttle.Priority.LOW) + "`\n" +
+                        "Shed (normal priority): `" + Throttle.getShedCount(Throttle.Priority.NORMAL) + "`")
+        );
+    }
 }
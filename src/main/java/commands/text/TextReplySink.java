@@ -0,0 +1,47 @@
+package commands.text;
+
+import commands.ReplySink;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This {@link ReplySink} captures the reply to a prefixed text command instead of sending it, so that {@link
+ * CommandManager} can wrap it in a {@link CommandReply} and track it for later edits. Replies are made to the message
+ * containing the command, or to the message it referenced for {@link #replyToReferenced(Message)}.
+ */
+public class TextReplySink implements ReplySink {
+    private final Message command;
+    private Message reply;
+    private Message target;
+
+    public TextReplySink(@NotNull Message command) {
+        this.command = command;
+    }
+
+    @Override
+    public void reply(@NotNull Message message, boolean ephemeral) {
+        reply = message;
+        target = command;
+    }
+
+    @Override
+    public void replyToReferenced(@NotNull Message message) {
+        reply = message;
+        target = command.getType() == MessageType.INLINE_REPLY && command.getReferencedMessage() != null ?
+                command.getReferencedMessage() : command;
+    }
+
+    /**
+     * Get the captured reply as a {@link CommandReply}, ready to be sent.
+     *
+     * @param name the name of the command
+     * @return the reply
+     * @throws IllegalStateException if the command didn't reply
+     */
+    public @NotNull CommandReply toCommandReply(@NotNull String name) {
+        if (reply == null)
+            throw new IllegalStateException("The '" + name + "' command did not reply");
+        return CommandReply.ofReply(name, reply, target);
+    }
+}
@@ -21,6 +21,31 @@ public class Setting {
     // Announcement settings
     public static int ANNOUNCEMENT_DELAY = -1;
     public static int ANNOUNCEMENT_MESSAGES_CHECK = -1;
+    public static String ANNOUNCEMENT_SCHEDULE_FILE = "";
+    public static String ANNOUNCEMENTS_FILE = "";
+    public static int ANNOUNCEMENT_REPEAT_WINDOW = -1;
+
+    // FAQ settings
+    public static String FAQ_FILE = "";
+
+    // Command settings
+    public static int COMMAND_EDIT_WINDOW = -1;
+    public static int COMMAND_REPLY_CACHE_SIZE = -1;
+    public static int EDIT_COALESCE_WINDOW = -1;
+
+    // Rate limit settings
+    public static int USER_RATE_LIMIT = -1;
+    public static int CHANNEL_RATE_LIMIT = -1;
+    public static int RATE_LIMIT_PERIOD = -1;
+    public static int GLOBAL_RATE_LIMIT = -1;
+
+    // Surge settings
+    public static int SURGE_ENTER_RATE = -1;
+    public static int SURGE_EXIT_RATE = -1;
+    public static int SURGE_ENTER_LATENCY = -1;
+    public static int SURGE_EXIT_LATENCY = -1;
+    public static int SURGE_COOLDOWN = -1;
+    public static int SURGE_EDIT_COALESCE_WINDOW = -1;
 
     // Miscellaneous settings
     public static double DAD_BOT_CHANCE = -1;
@@ -28,6 +53,7 @@ public class Setting {
 
     // Manually adjusted settings within code
 
+    // The announcement channel used when announcement_channels.csv can't be loaded
     public static final long ANNOUNCEMENT_CHANNEL = ID.AP_STATS_CHANNEL;
 
 
@@ -50,11 +76,36 @@ public class Setting {
             // Announcement settings
             ANNOUNCEMENT_DELAY = Integer.parseInt(properties.getProperty("announcement_delay"));
             ANNOUNCEMENT_MESSAGES_CHECK = Integer.parseInt(properties.getProperty("announcement_messages_check"));
+            ANNOUNCEMENT_SCHEDULE_FILE = properties.getProperty("announcement_schedule_file", "");
+            ANNOUNCEMENTS_FILE = properties.getProperty("announcements_file", "");
+            ANNOUNCEMENT_REPEAT_WINDOW = Integer.parseInt(properties.getProperty("announcement_repeat_window"));
+
+            // FAQ settings
+            FAQ_FILE = properties.getProperty("faq_file", "");
 
             // Startup settings
             LOAD_COMMANDS_GLOBAL = Boolean.parseBoolean(properties.getProperty("load_commands_global"));
             LOAD_COMMANDS_PRIVATE = Boolean.parseBoolean(properties.getProperty("load_commands_private"));
 
+            // Command settings
+            COMMAND_EDIT_WINDOW = Integer.parseInt(properties.getProperty("command_edit_window"));
+            COMMAND_REPLY_CACHE_SIZE = Integer.parseInt(properties.getProperty("command_reply_cache_size"));
+            EDIT_COALESCE_WINDOW = Integer.parseInt(properties.getProperty("edit_coalesce_window"));
+
+            // Rate limit settings
+            USER_RATE_LIMIT = Integer.parseInt(properties.getProperty("user_rate_limit"));
+            CHANNEL_RATE_LIMIT = Integer.parseInt(properties.getProperty("channel_rate_limit"));
+            RATE_LIMIT_PERIOD = Integer.parseInt(properties.getProperty("rate_limit_period"));
+            GLOBAL_RATE_LIMIT = Integer.parseInt(properties.getProperty("global_rate_limit"));
+
+            // Surge settings
+            SURGE_ENTER_RATE = Integer.parseInt(properties.getProperty("surge_enter_rate"));
+            SURGE_EXIT_RATE = Integer.parseInt(properties.getProperty("surge_exit_rate"));
+            SURGE_ENTER_LATENCY = Integer.parseInt(properties.getProperty("surge_enter_latency"));
+            SURGE_EXIT_LATENCY = Integer.parseInt(properties.getProperty("surge_exit_latency"));
+            SURGE_COOLDOWN = Integer.parseInt(properties.getProperty("surge_cooldown"));
+            SURGE_EDIT_COALESCE_WINDOW = Integer.parseInt(properties.getProperty("surge_edit_coalesce_window"));
+
             // Miscellaneous settings
             DAD_BOT_CHANCE = Double.parseDouble(properties.getProperty("dad_bot_chance"));
 
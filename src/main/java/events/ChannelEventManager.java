@@ -0,0 +1,365 @@
+package events;
+
+import main.Main;
+import net.dv8tion.jda.api.entities.AbstractChannel;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.RawGatewayEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.hooks.IEventManager;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is the {@link IEventManager} used by the bot in place of JDA's default single-threaded event manager. Rather than
+ * running every listener on the JDA event thread, each event is assigned to a <i>lane</i> based on the channel it
+ * occurred in, and each lane is drained on its own worker thread.
+ * <p>
+ * Events within a lane are always handled one at a time and in the order they were received, so the create, edit, and
+ * delete events for a single command message are still processed in sequence by the {@link
+ * commands.text.CommandManager CommandManager}. Events in unrelated channels, however, are handled in parallel, meaning
+ * that a slow handler (such as a {@link net.dv8tion.jda.api.requests.RestAction#complete() complete()} call) only
+ * stalls its own channel. Events that don't belong to any channel (such as the {@link
+ * net.dv8tion.jda.api.events.ReadyEvent ReadyEvent}) share a single global lane.
+ * <p>
+ * Worker threads are virtual threads when the running JVM supports them, and an ordinary cached thread pool otherwise.
+ * <p>
+ * This class also records a few metrics for monitoring: the current {@link #getQueueDepth() queue depth} and the
+ * {@link #getAverageLagMicros() average} and {@link #getMaxLagMicros() maximum} lag between an event arriving and a
+ * listener beginning to process it.
+ * <p>
+ * Before an event is queued, it is checked against the current {@link Main#getRoutes() RoutingTable}. Events that the
+ * current {@link main.BotMode BotMode} doesn't handle, such as ordinary messages in most AP Students channels, are
+ * {@link #getDroppedCount() dropped} immediately and never reach a listener.
+ * <p>
+ * {@link RawGatewayEvent RawGatewayEvents}, which JDA only emits while the {@link EventRecorder} is running, bypass both
+ * the routing table and the lanes. They are passed to the listeners directly on the JDA event thread, so that they are
+ * recorded at the time they were received and recording them doesn't add to the load being measured.
+ * <p>
+ * Each lane also keeps an exponentially weighted moving average of its event rate and of the time its events take
+ * from arrival to being fully handled, both of which decay while the lane is idle. These are reported per channel by
+ * {@link #getChannelLoads()}, and are what the {@link SurgeMonitor} uses to detect traffic surges. As a lane is only
+ * ever drained by one worker at a time, the averages are updated without any locking.
+ */
+public class ChannelEventManager implements IEventManager {
+    private static final Logger LOG = JDALogger.getLog(ChannelEventManager.class);
+
+    /**
+     * This is the maximum number of events a lane will process before handing its worker thread back to the executor.
+     * It prevents one very busy channel from monopolizing a platform thread when virtual threads are unavailable.
+     */
+    private static final int LANE_BATCH_SIZE = 64;
+
+    /**
+     * This is the lane key used for events that are not associated with any channel.
+     */
+    private static final long GLOBAL_LANE = 0;
+
+    /**
+     * This is the time constant of the moving averages in each lane. An event's weight in the averages falls by a
+     * factor of <i>e</i> over this time, so the averages mostly reflect the last few minutes of traffic.
+     */
+    private static final long LOAD_TIME_CONSTANT = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * This is the current load on a single channel, as measured by its lane.
+     *
+     * @param channelId         the id of the channel
+     * @param eventsPerMinute   the moving average of the number of events received per minute
+     * @param latencyMillis     the moving average of the time from an event arriving to all the listeners finishing
+     *                          with it, in milliseconds
+     */
+    public record ChannelLoad(long channelId, double eventsPerMinute, double latencyMillis) {
+    }
+
+    private final List<EventListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * This maps channel ids to their {@link Lane}. The number of lanes is bounded by the number of channels visible to
+     * the bot, so lanes are never removed once created.
+     */
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = createExecutor();
+
+    // Metrics
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder totalLagNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    @Override
+    public void register(@NotNull Object listener) {
+        if (!(listener instanceof EventListener l))
+            throw new IllegalArgumentException("Listener must implement EventListener");
+        listeners.add(l);
+    }
+
+    @Override
+    public void unregister(@NotNull Object listener) {
+        //noinspection SuspiciousMethodCalls
+        listeners.remove(listener);
+    }
+
+    @NotNull
+    @Override
+    public List<Object> getRegisteredListeners() {
+        return new ArrayList<>(listeners);
+    }
+
+    /**
+     * This is called by JDA for every incoming event. Unless the current {@link Main#getRoutes() RoutingTable} rejects
+     * it, the event is queued on the {@link Lane} for its channel and this method returns immediately, leaving the JDA
+     * event thread free for the next event.
+     *
+     * @param event the incoming event
+     */
+    @Override
+    public void handle(@NotNull GenericEvent event) {
+        if (event instanceof RawGatewayEvent) {
+            dispatchRaw(event);
+            return;
+        }
+
+        if (!Main.getRoutes().accepts(event)) {
+            dropped.increment();
+            return;
+        }
+
+        queueDepth.incrementAndGet();
+        lanes.computeIfAbsent(getLaneKey(event), Lane::new)
+                .submit(new QueuedEvent(event, System.nanoTime()));
+    }
+
+    /**
+     * This determines the lane that an event belongs to. Message events (including edits, deletions, and reactions)
+     * and interactions use the id of their channel. All other events use the {@link #GLOBAL_LANE}.
+     *
+     * @param event the event
+     * @return the lane key
+     */
+    private static long getLaneKey(@NotNull GenericEvent event) {
+        if (event instanceof GenericMessageEvent e)
+            return e.getChannel().getIdLong();
+
+        if (event instanceof GenericInteractionCreateEvent e) {
+            AbstractChannel channel = e.getChannel();
+            return channel == null ? e.getUser().getIdLong() : channel.getIdLong();
+        }
+
+        return GLOBAL_LANE;
+    }
+
+    /**
+     * This passes a single event to every registered listener. Exceptions thrown by a listener are logged and do not
+     * prevent the remaining listeners from receiving the event.
+     *
+     * @param queued the event to dispatch along with the time it was queued
+     */
+    private void dispatch(@NotNull QueuedEvent queued) {
+        long lag = System.nanoTime() - queued.queuedAt();
+        queueDepth.decrementAndGet();
+        totalLagNanos.add(lag);
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        handled.increment();
+
+        for (EventListener listener : listeners) {
+            try {
+                listener.onEvent(queued.event());
+            } catch (Throwable t) {
+                LOG.error("One of the EventListeners had an uncaught exception", t);
+            }
+        }
+    }
+
+    /**
+     * This passes a raw gateway event to every registered listener on the calling thread, without queueing it or
+     * counting it in the metrics.
+     *
+     * @param event the raw event
+     */
+    private void dispatchRaw(@NotNull GenericEvent event) {
+        for (EventListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (Throwable t) {
+                LOG.error("One of the EventListeners had an uncaught exception", t);
+            }
+        }
+    }
+
+    /**
+     * Get the number of events that have been received from JDA but not yet dispatched to the listeners.
+     *
+     * @return the current queue depth across all lanes
+     */
+    public long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Get the total number of events dispatched since the bot started.
+     *
+     * @return the number of handled events
+     */
+    public long getHandledCount() {
+        return handled.sum();
+    }
+
+    /**
+     * Get the number of events dropped because the current {@link main.BotMode BotMode} doesn't handle them.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Get the current load on every channel that has received an event recently (within the last few minutes). The
+     * global lane is not included.
+     *
+     * @return the load on each active channel, in no particular order
+     */
+    public List<ChannelLoad> getChannelLoads() {
+        long now = System.nanoTime();
+        List<ChannelLoad> loads = new ArrayList<>();
+        for (Lane lane : lanes.values())
+            if (lane.key != GLOBAL_LANE && now - lane.lastEventAt < 5 * LOAD_TIME_CONSTANT)
+                loads.add(lane.getLoad(now));
+        return loads;
+    }
+
+    /**
+     * Get the number of lanes (that is, distinct channels plus the global lane) that have received events.
+     *
+     * @return the lane count
+     */
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * Get the mean time between an event being received from JDA and its dispatch to the listeners.
+     *
+     * @return the average lag in microseconds, or 0 if no events have been handled
+     */
+    public long getAverageLagMicros() {
+        long count = handled.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLagNanos.sum() / count);
+    }
+
+    /**
+     * Get the longest time any single event spent queued before being dispatched.
+     *
+     * @return the maximum lag in microseconds
+     */
+    public long getMaxLagMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxLagNanos.get());
+    }
+
+    /**
+     * This creates the executor that drains the lanes. If the JVM supports virtual threads, a virtual thread is used for
+     * each lane drain. Otherwise, this falls back to a cached pool of daemon threads.
+     *
+     * @return the executor
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ignored) {
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "StatsBot Event-Worker " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * An event waiting in a {@link Lane}, along with the {@link System#nanoTime()} at which it was queued.
+     */
+    private record QueuedEvent(GenericEvent event, long queuedAt) {
+    }
+
+    /**
+     * A lane is a queue of events that must be handled in order. At most one worker drains a lane at any time: the
+     * first event submitted to an idle lane schedules the drain, and the drain continues until the lane is empty.
+     */
+    private final class Lane implements Runnable {
+        private final long key;
+        private final Queue<QueuedEvent> events = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // These are only written by the worker draining the lane, and read by getChannelLoads()
+        private volatile double eventsPerSecond = 0;
+        private volatile double latencyNanos = 0;
+        private volatile long lastEventAt = System.nanoTime();
+
+        Lane(long key) {
+            this.key = key;
+        }
+
+        void submit(QueuedEvent event) {
+            events.add(event);
+            if (scheduled.compareAndSet(false, true))
+                executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            QueuedEvent event;
+            int count = 0;
+            while (count++ < LANE_BATCH_SIZE && (event = events.poll()) != null) {
+                dispatch(event);
+                recordLoad(event.queuedAt(), System.nanoTime());
+            }
+
+            scheduled.set(false);
+
+            // An event may have been added after the last poll but before the flag was cleared. If so, make sure
+            // someone drains it.
+            if (!events.isEmpty() && scheduled.compareAndSet(false, true))
+                executor.execute(this);
+        }
+
+        /**
+         * Add a handled event to the moving averages. Both averages decay continuously with time, so each new event
+         * first decays them by the time since the previous event. The rate then adds the event's own weight, and the
+         * latency moves towards the event's latency with the same weight as the rate would give an event per second.
+         * <p>
+         * Decaying the latency while the lane is idle means that a slow event in a quiet channel stops counting
+         * towards a surge as the channel stays quiet, rather than holding the latency up until the next event.
+         *
+         * @param queuedAt   when the event arrived
+         * @param finishedAt when the listeners finished with the event
+         */
+        private void recordLoad(long queuedAt, long finishedAt) {
+            double decay = Math.exp(-Math.max(0, queuedAt - lastEventAt) / (double) LOAD_TIME_CONSTANT);
+            eventsPerSecond = eventsPerSecond * decay + 1e9 / LOAD_TIME_CONSTANT;
+            double latency = latencyNanos * decay;
+            latencyNanos = latency + (finishedAt - queuedAt - latency) * 1e9 / LOAD_TIME_CONSTANT;
+            lastEventAt = Math.max(lastEventAt, queuedAt);
+        }
+
+        ChannelLoad getLoad(long now) {
+            double decay = Math.exp(-Math.max(0, now - lastEventAt) / (double) LOAD_TIME_CONSTANT);
+            return new ChannelLoad(key, eventsPerSecond * decay * 60, latencyNanos * decay / 1e6);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package events;
+
+import main.EventLog;
+import net.dv8tion.jda.api.events.RawGatewayEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This listener records every raw gateway event the bot receives to an {@link EventLog}, so that real traffic can be
+ * replayed through the bot's listeners later (for example, to reproduce the traffic peak on AP score release day).
+ * It is only registered when the bot is started with <code>--record [file]</code>, as JDA must be told to emit raw
+ * events for it to work.
+ * <p>
+ * The {@link ChannelEventManager} passes raw events to this listener directly on the JDA event thread, rather than
+ * queueing them on a lane, so each event is timestamped when it was received. Writing an event only appends it to a
+ * buffer, so this doesn't hold up the event thread.
+ * <p>
+ * Records are buffered and flushed to the file once per second, and the log is closed when the JVM shuts down. If a
+ * write fails, recording stops, but the bot carries on running normally.
+ */
+public class EventRecorder extends ListenerAdapter {
+    private static final Logger LOG = JDALogger.getLog(EventRecorder.class);
+
+    private final EventLog.Writer log;
+    private volatile boolean failed = false;
+
+    private EventRecorder(EventLog.Writer log) {
+        this.log = log;
+    }
+
+    /**
+     * Open the log and start recording to it.
+     *
+     * @param path the log file. If it already exists, new events are appended to it.
+     * @return the recorder, to be added as an event listener
+     * @throws IOException if the log can't be opened
+     */
+    public static EventRecorder start(@NotNull Path path) throws IOException {
+        EventRecorder recorder = new EventRecorder(EventLog.append(path));
+
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "EventRecorder-Flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(recorder::flush, 1, 1, TimeUnit.SECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            flusher.shutdown();
+            recorder.close();
+        }, "EventRecorder-Close"));
+
+        LOG.info("Recording gateway events to " + path.toAbsolutePath());
+        return recorder;
+    }
+
+    @Override
+    public void onRawGateway(@NotNull RawGatewayEvent event) {
+        if (failed)
+            return;
+
+        try {
+            log.write(System.currentTimeMillis(), event.getPackage().toJson());
+        } catch (IOException e) {
+            failed = true;
+            LOG.error("Failed to record gateway event. Recording has stopped.", e);
+        }
+    }
+
+    private void flush() {
+        try {
+            log.flush();
+        } catch (IOException e) {
+            LOG.warn("Failed to flush the event log", e);
+        }
+    }
+
+    private void close() {
+        try {
+            log.close();
+            LOG.info("Recorded " + log.getCount() + " gateway events");
+        } catch (IOException e) {
+            LOG.warn("Failed to close the event log", e);
+        }
+    }
+}
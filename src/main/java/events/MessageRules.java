@@ -0,0 +1,251 @@
+package events;
+
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This is a compiled set of rules that decide how the bot responds to an incoming message. Each rule has a trigger
+ * (either a prefix that the message must start with, or the exact text of the whole message), a priority, and a
+ * {@link Handler} to call when the trigger matches.
+ * <p>
+ * All the triggers are compiled into a single case-insensitive prefix trie when the rules are {@link Builder#build()
+ * built}. Matching a message then takes one pass over its raw contents, lowercasing each character as it is read rather
+ * than copying the message, and produces the set of matching rules. Those rules are tried in order of priority (lowest
+ * first) until one of their handlers returns <code>true</code>, so a rule can decline to handle a message (for instance,
+ * a random chance that didn't succeed) and let the next rule have a turn.
+ * <p>
+ * Rules also specify whether they apply in channels that {@link EventUtils#ignoreChannel ignore} common messages. That
+ * check is only performed if a matching rule actually needs it.
+ */
+public class MessageRules {
+    /**
+     * The maximum number of rules, which is limited by the size of the bit mask used to record matches.
+     */
+    private static final int MAX_RULES = Long.SIZE;
+
+    /**
+     * A handler that responds to a message matching a rule.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * Respond to a matching message.
+         *
+         * @param event the message event
+         * @return <code>true</code> if the message was handled and no further rules should be tried; <code>false</code>
+         * otherwise
+         */
+        boolean handle(@NotNull MessageReceivedEvent event);
+    }
+
+    /**
+     * A single compiled rule.
+     *
+     * @param name       a short name for the rule, used for logging
+     * @param trigger    the lowercase text that triggers the rule
+     * @param exact      <code>true</code> if the whole message must equal the trigger; <code>false</code> if the
+     *                   message need only start with it
+     * @param priority   the rule's priority, where lower values are tried first
+     * @param anyChannel <code>true</code> if this rule also applies in ignored channels
+     * @param handler    the handler to call when the rule matches
+     */
+    private record Rule(String name, String trigger, boolean exact, int priority, boolean anyChannel,
+                        Handler handler) {
+    }
+
+    /**
+     * A node in the trie. Children are stored in parallel arrays since each node only has a handful of them.
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+
+        /**
+         * The rules whose prefix trigger ends at this node.
+         */
+        private long prefixRules;
+
+        /**
+         * The rules whose exact trigger ends at this node.
+         */
+        private long exactRules;
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] == c)
+                    return children[i];
+            return null;
+        }
+
+        Node getOrAddChild(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    private final Rule[] rules;
+    private final Node root;
+
+    private MessageRules(Rule[] rules, Node root) {
+        this.rules = rules;
+        this.root = root;
+    }
+
+    /**
+     * Create a new {@link Builder} for a set of rules.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Find every rule that matches the message's raw contents and run their handlers in priority order until one of
+     * them handles the message.
+     *
+     * @param event the message event
+     * @return <code>true</code> if a rule handled the message; <code>false</code> if none did
+     */
+    public boolean dispatch(@NotNull MessageReceivedEvent event) {
+        long matches = match(event.getMessage().getContentRaw());
+
+        // 0 = not checked yet, 1 = allowed, -1 = ignored
+        int channelState = 0;
+
+        while (matches != 0) {
+            Rule rule = rules[Long.numberOfTrailingZeros(matches)];
+            matches &= matches - 1;
+
+            if (!rule.anyChannel()) {
+                if (channelState == 0)
+                    channelState = EventUtils.ignoreChannel(event.getChannel()) ? -1 : 1;
+                if (channelState < 0)
+                    continue;
+            }
+
+            if (rule.handler().handle(event))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Walk the trie over the given text, collecting every rule whose trigger matches.
+     *
+     * @param text the text to match
+     * @return a bit mask of matching rule indices
+     */
+    private long match(@NotNull CharSequence text) {
+        Node node = root;
+        long matches = node.prefixRules;
+        int length = text.length();
+        int i = 0;
+
+        while (i < length && (node = node.child(Character.toLowerCase(text.charAt(i)))) != null) {
+            matches |= node.prefixRules;
+            i++;
+        }
+
+        if (node != null && i == length)
+            matches |= node.exactRules;
+
+        return matches;
+    }
+
+    /**
+     * @return the names of the compiled rules in priority order
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("MessageRules[");
+        for (int i = 0; i < rules.length; i++)
+            s.append(i == 0 ? "" : ", ").append(rules[i].name());
+        return s.append("]").toString();
+    }
+
+    /**
+     * A builder for {@link MessageRules}. Rules can be added in any order; they are sorted by priority when built.
+     * Rules with equal priority keep the order they were added in.
+     */
+    public static class Builder {
+        private final List<Rule> rules = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Add a rule that matches any message starting with the given text (ignoring case).
+         *
+         * @param name       a short name for the rule
+         * @param prefix     the prefix to match
+         * @param priority   the rule's priority, where lower values are tried first
+         * @param anyChannel <code>true</code> if this rule also applies in ignored channels
+         * @param handler    the handler to call when the rule matches
+         * @return this builder for chaining
+         */
+        public Builder prefix(String name, String prefix, int priority, boolean anyChannel, Handler handler) {
+            return add(new Rule(name, prefix.toLowerCase(Locale.ROOT), false, priority, anyChannel, handler));
+        }
+
+        /**
+         * Add a rule that matches any message equal to the given text (ignoring case).
+         *
+         * @param name       a short name for the rule
+         * @param text       the text to match
+         * @param priority   the rule's priority, where lower values are tried first
+         * @param anyChannel <code>true</code> if this rule also applies in ignored channels
+         * @param handler    the handler to call when the rule matches
+         * @return this builder for chaining
+         */
+        public Builder exact(String name, String text, int priority, boolean anyChannel, Handler handler) {
+            return add(new Rule(name, text.toLowerCase(Locale.ROOT), true, priority, anyChannel, handler));
+        }
+
+        private Builder add(Rule rule) {
+            if (rules.size() == MAX_RULES)
+                throw new IllegalStateException("Cannot add more than " + MAX_RULES + " message rules");
+            rules.add(rule);
+            return this;
+        }
+
+        /**
+         * Compile the rules into a trie.
+         *
+         * @return the compiled {@link MessageRules}
+         */
+        public MessageRules build() {
+            Rule[] sorted = rules.stream()
+                    .sorted(Comparator.comparingInt(Rule::priority))
+                    .toArray(Rule[]::new);
+
+            Node root = new Node();
+            for (int i = 0; i < sorted.length; i++) {
+                Node node = root;
+                for (char c : sorted[i].trigger().toCharArray())
+                    node = node.getOrAddChild(c);
+
+                if (sorted[i].exact())
+                    node.exactRules |= 1L << i;
+                else
+                    node.prefixRules |= 1L << i;
+            }
+
+            return new MessageRules(sorted, root);
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package events;
 
-import commands.interactions.ButtonManager;
-import commands.interactions.SelectionManager;
+import commands.interactions.ComponentDispatcher;
 import data.Discord;
-import main.Main;
 import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
 import net.dv8tion.jda.api.events.interaction.SelectionMenuEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
@@ -11,30 +9,15 @@ import org.jetbrains.annotations.NotNull;
 
 public class OnInteraction extends ListenerAdapter {
     public void onButtonClick(@NotNull ButtonClickEvent event) {
-        if (Main.MODE.ignoreEvent(event))
-            return;
-
-        String[] id = event.getComponentId().split(":");
-
-        switch (id[0]) {
-            case "panel" -> ButtonManager.runPanelButtons(event);
-            case "diagram" -> ButtonManager.diagram(event);
-                default -> buttonError(event);
-        }
+        // Find the @ComponentHandler for the button's id prefix in the generated dispatch table
+        if (!ComponentDispatcher.dispatch(event))
+            buttonError(event);
     }
 
     public void onSelectionMenu(@NotNull SelectionMenuEvent event) {
-        if (Main.MODE.ignoreEvent(event))
-            return;
-
-        String[] id = event.getComponentId().split(":");
-
-        switch (id[0]) {
-            case "diagram" -> SelectionManager.diagram(event);
-            default -> event.reply("Error: unrecognized selection. Please try again later.")
+        if (!ComponentDispatcher.dispatch(event))
+            event.reply("Error: unrecognized selection. Please try again later.")
                     .setEphemeral(true).queue();
-        }
-
     }
 
     public static void buttonError(@NotNull ButtonClickEvent event) {
@@ -1,10 +1,9 @@
 package events;
 
+import announcements.AnnouncementChannel;
 import announcements.AnnouncementLoader;
 import commands.text.CommandManager;
 import data.*;
-import main.Main;
-import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
@@ -12,9 +11,51 @@ import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nonnull;
-import java.util.Locale;
 
 public class OnMessage extends ListenerAdapter {
+    /**
+     * These are the standard survey advertisement messages, in lowercase.
+     */
+    private static final String[] SURVEY_MESSAGES = {
+            """
+            fill out this survey to help future ap stats students: https://bit.ly/apstat-survey""",
+            """
+            if you've taken ap statistics, please fill out this survey to help future students prepare for the exam:
+            https://bit.ly/apstat-survey"""
+    };
+
+    /**
+     * The compiled rules that decide how to respond to each message. This is <code>null</code> until {@link
+     * #loadRules()} is called during startup, and any messages received before then are ignored.
+     */
+    private static volatile MessageRules rules = null;
+
+    /**
+     * This compiles the {@link MessageRules} for incoming messages. It must be called after the {@link Setting Settings}
+     * are loaded, as the command rule depends on the bot's prefix.
+     * <p>
+     * The priorities preserve the order in which these checks have always run: a lone mention of the bot is answered in
+     * any channel, while the dad bot, survey links, and commands are all ignored in {@link
+     * EventUtils#ignoreChannel(net.dv8tion.jda.api.entities.MessageChannel) ignored channels}.
+     */
+    public static void loadRules() {
+        MessageRules.Builder builder = MessageRules.builder()
+                .exact("mention", "<@!" + ID.SELF + ">", 0, true, OnMessage::mentioned)
+                .prefix("dad bot", "i'm ", 10, false, event -> checkDadBot(event, 4))
+                .prefix("dad bot", "im ", 10, false, event -> checkDadBot(event, 3))
+                .prefix("dad bot", "i am", 10, false, event -> checkDadBot(event, 4));
+
+        for (String survey : SURVEY_MESSAGES)
+            builder.exact("survey link", survey, 20, false, OnMessage::surveyLink);
+
+        // If the message uses the bot's prefix, check for recognized commands
+        builder.prefix("command", Setting.PREFIX, 30, false, event -> {
+            CommandManager.onMessageReceived(event);
+            return true;
+        });
+
+        rules = builder.build();
+    }
 
     /**
      * This method is called whenever a message in sent in any Discord channel (whether a server or direct message).
@@ -23,33 +64,23 @@ public class OnMessage extends ListenerAdapter {
      */
     @Override
     public void onMessageReceived(@NotNull MessageReceivedEvent event) {
+        // Keep track of the latest messages in announcement channels, including my own previous announcements
+        AnnouncementChannel announcementChannel = AnnouncementLoader.getChannel(event.getChannel().getIdLong());
+        if (announcementChannel != null)
+            announcementChannel.getRecentMessages().add(event.getMessage());
+
         // Ignore messages from myself
         if (event.getAuthor().getIdLong() == ID.SELF)
             return;
 
-        // Ignore messages based on their origin and the current BotMode
-        if (Main.MODE.ignoreEvent(event))
-            return;
-
-        // Whenever a message is sent in the announcements channel, the timer must be reset
-        if (event.getChannel().getIdLong() == Setting.ANNOUNCEMENT_CHANNEL)
-            AnnouncementLoader.resetTimer();
-
-        if (isMentioned(event))
-            return;
-
-        // Check a specific list of channels that should ignore common messages
-        if (EventUtils.ignoreChannel(event.getChannel()))
-            return;
-
-        if (checkDadBot(event))
-            return;
-
-        if (checkSurveyLink(event))
-            return;
+        // Whenever a message is sent in an announcement channel, its next announcement is postponed
+        if (announcementChannel != null)
+            announcementChannel.recordActivity();
 
-        // If the message uses the bot's prefix, check for recognized commands
-        CommandManager.onMessageReceived(event);
+        // Match the message against every trigger and run the highest priority handler that accepts it
+        MessageRules rules = OnMessage.rules;
+        if (rules != null)
+            rules.dispatch(event);
     }
 
     /**
@@ -59,9 +90,9 @@ public class OnMessage extends ListenerAdapter {
      */
     @Override
     public void onMessageUpdate(@Nonnull MessageUpdateEvent event) {
-        // Ignore messages based on their origin and the current BotMode
-        if (Main.MODE.ignoreEvent(event))
-            return;
+        AnnouncementChannel announcementChannel = AnnouncementLoader.getChannel(event.getChannel().getIdLong());
+        if (announcementChannel != null)
+            announcementChannel.getRecentMessages().update(event.getMessage());
 
         CommandManager.onMessageUpdate(event);
     }
@@ -73,88 +104,79 @@ public class OnMessage extends ListenerAdapter {
      */
     @Override
     public void onMessageDelete(@Nonnull MessageDeleteEvent event) {
-        // Ignore messages based on their origin and the current BotMode
-        if (Main.MODE.ignoreEvent(event))
-            return;
+        AnnouncementChannel announcementChannel = AnnouncementLoader.getChannel(event.getChannel().getIdLong());
+        if (announcementChannel != null)
+            announcementChannel.getRecentMessages().remove(event.getMessageIdLong());
 
         CommandManager.onMessageDelete(event);
     }
 
     /**
-     * Determine if the message mentions StatsBot (without saying anything else). If so, the user is most likely looking
+     * This is called when a message mentions StatsBot (without saying anything else). The user is most likely looking
      * for the bot's prefix, so send that.
      *
      * @param event the message data
-     * @return true if the bot was mentioned and sent a response; false otherwise
+     * @return true, as the bot always responds (unless it is {@link Throttle throttled}, in which case the message is
+     * still considered handled)
      */
-    private boolean isMentioned(MessageReceivedEvent event) {
-        Message message = event.getMessage();
-
-        if (message.getContentRaw().equals("<@!" + ID.SELF + ">")) {
-            message.reply("Hi, my prefix is `" + Setting.PREFIX + "`. You can also use `/help` for more info.")
-                    .queue();
+    private static boolean mentioned(MessageReceivedEvent event) {
+        if (!Throttle.allow(event.getMessage(), Throttle.Priority.NORMAL))
             return true;
-        }
 
-        return false;
+        event.getMessage()
+                .reply("Hi, my prefix is `" + Setting.PREFIX + "`. You can also use `/help` for more info.")
+                .queue();
+        return true;
     }
 
     /**
-     * Checks to see if someone sent a message in the form "I'm [x]". If they did, there's a 1% chance StatsBot will
-     * respond with "hi [x], I'm StatsBot!"
+     * This is called for messages in the form "I'm [x]". If they match, there's a 1% chance StatsBot will respond with
+     * "hi [x], I'm StatsBot!"
+     * <p>
+     * The rule only matches the raw message contents, so the display contents are only built once a message is known
+     * to start with one of the dad bot prefixes.
      *
-     * @param event the message received event
+     * @param event        the message received event
+     * @param prefixLength the length of the matching prefix, which is removed to get the name
      * @return true if the bot responded; false if nothing happened
      */
-    private boolean checkDadBot(MessageReceivedEvent event) {
-        String message = event.getMessage().getContentDisplay();
+    private static boolean checkDadBot(MessageReceivedEvent event, int prefixLength) {
+        // Ignore messages that are too short or long to be funny. Checking the raw length first avoids building the
+        // display contents for most messages.
+        if (event.getMessage().getContentRaw().length() < 5)
+            return false;
 
-        // Ignore messages that are too short or long to be funny
-        if (message.length() < 5 || message.length() > 40)
+        // The dad bot is switched off entirely during traffic surges
+        if (SurgeMonitor.isSurging())
             return false;
 
-        String name = null;
+        if (Math.random() >= Setting.DAD_BOT_CHANCE)
+            return false;
 
-        if (message.toLowerCase(Locale.ROOT).startsWith("i'm "))
-            name = message.substring(4);
-        else if (message.toLowerCase(Locale.ROOT).startsWith("im "))
-            name = message.substring(3);
-        else if (message.toLowerCase(Locale.ROOT).startsWith("i am"))
-            name = message.substring(4);
+        String message = event.getMessage().getContentDisplay();
+        if (message.length() < 5 || message.length() > 40)
+            return false;
 
-        if (name != null && Math.random() < Setting.DAD_BOT_CHANCE) {
-            event.getMessage().reply("Hi " + name + ", I'm StatsBot!").queue();
-            return true;
-        }
+        // This is the first thing to go when the bot is busy
+        if (!Throttle.allow(event.getMessage(), Throttle.Priority.LOW))
+            return false;
 
-        return false;
+        event.getMessage().reply("Hi " + message.substring(prefixLength) + ", I'm StatsBot!").queue();
+        return true;
     }
 
     /**
-     * Checks if a message matches one of the standard survey advertisement messages. If it does, a "thumbs up" reaction
+     * This is called when a message matches one of the standard survey advertisement messages. A "thumbs up" reaction
      * is added to indicate the bot's endorsement of the message.
      *
      * @param event The {@link MessageReceivedEvent}
-     * @return true if the message matched a survey link template; false otherwise
+     * @return true if the reaction was added; false if it was dropped by the {@link Throttle}
      */
-    private boolean checkSurveyLink(MessageReceivedEvent event) {
-        String[] surveyMessages = {
-                """
-                fill out this survey to help future ap stats students: https://bit.ly/apstat-survey""",
-                """
-                if you've taken ap statistics, please fill out this survey to help future students prepare for the exam:
-                https://bit.ly/apstat-survey"""
-        };
-
-        Message message = event.getMessage();
-        String text = message.getContentDisplay().toLowerCase(Locale.ROOT);
-
-        for (String m : surveyMessages)
-            if (m.equals(text)) {
-                message.addReaction("\uD83D\uDC4D").queue();
-                return true;
-            }
-
-        return false;
+    private static boolean surveyLink(MessageReceivedEvent event) {
+        if (!Throttle.allow(event.getMessage(), Throttle.Priority.LOW))
+            return false;
+
+        event.getMessage().addReaction("\uD83D\uDC4D").queue();
+        return true;
     }
 }
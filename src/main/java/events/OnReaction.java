@@ -2,15 +2,12 @@ package events;
 
 import data.Discord;
 import data.ID;
-import main.Main;
 import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
 
 public class OnReaction extends ListenerAdapter {
     public void onMessageReactionAdd(@NotNull MessageReactionAddEvent event) {
-        Main.MODE.ignoreEvent(event);
-
         // Ignore reactions from non-admins
         if (!EventUtils.isAdmin(event.getUser()))
             return;
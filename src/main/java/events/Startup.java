@@ -1,7 +1,8 @@
 package events;
 
 import commands.slash.Diagram;
-import commands.slash.GlobalCommands;
+import commands.text.CommandManager;
+import commands.faq.FAQLoader;
 import data.*;
 import announcements.AnnouncementLoader;
 import commands.slash.CommandsRegister;
@@ -29,6 +30,9 @@ public class Startup extends ListenerAdapter {
 
         // Import config settings
         Setting.importSettings();
+        CommandManager.loadSettings();
+        Throttle.loadSettings();
+        OnMessage.loadRules();
 
         // Set status
         Main.JDA.getPresence().setStatus(Setting.STATUS);
@@ -37,26 +41,33 @@ public class Startup extends ListenerAdapter {
         printStartupLog();
 
         // Register global slash commands if enabled in settings (and bot mode includes global slash commands)
-        if (Main.MODE.allows(BotMode.Mode.GLOBAL_SLASH_COMMANDS) && Setting.LOAD_COMMANDS_GLOBAL)
+        if (Main.getMode().allows(BotMode.Mode.GLOBAL_SLASH_COMMANDS) && Setting.LOAD_COMMANDS_GLOBAL)
             CommandsRegister.registerGlobalSlashCommands(Main.JDA.updateCommands());
 
         // Register private and testing slash commands if enabled in settings (and bot mode includes private commands)
-        if (Main.MODE.allows(BotMode.Mode.PRIVATE_SLASH_COMMANDS) && Setting.LOAD_COMMANDS_PRIVATE)
+        if (Main.getMode().allows(BotMode.Mode.PRIVATE_SLASH_COMMANDS) && Setting.LOAD_COMMANDS_PRIVATE)
             CommandsRegister.registerPrivateSlashCommands(Discord.STATSBOT_CENTRAL);
 
         // Load FAQ table of contents data and construct /faq response message
-        GlobalCommands.loadFAQTableOfContents();
+        FAQLoader.loadFAQ();
+        FAQLoader.watchFAQ();
 
         // Load the diagram resources for /diagram
         Diagram.loadDiagrams();
 
-        // Load all the announcement messages
+        // Load all the announcement messages and the channels that receive them
         AnnouncementLoader.loadAnnouncements();
+        AnnouncementLoader.watchAnnouncements();
+        AnnouncementLoader.loadChannels();
+        Main.setAnnouncementChannels(AnnouncementLoader.getChannelIds());
 
         // Initiate announcement timer if this bot instance is for AP Students
-        if (Main.MODE.allows(BotMode.Mode.SERVER_MESSAGES))
+        if (Main.getMode().allows(BotMode.Mode.SERVER_MESSAGES))
             AnnouncementLoader.initiateTimer();
 
+        // Start watching for traffic surges
+        SurgeMonitor.start();
+
         LOG.info("Finished startup!");
         System.out.println();
     }
@@ -87,7 +98,7 @@ public class Startup extends ListenerAdapter {
 
         EmbedBuilder embed = Utils.makeEmbed(
                 "Startup Log",
-                "Starting bot in `" + Main.MODE.getModeName() + "` mode.",
+                "Starting bot in `" + Main.getMode().getModeName() + "` mode.",
                 Colors.ADMIN,
                 new MessageEmbed.Field("AP Students",
                         getCheckLine("Server", Discord.AP_STUDENTS != null) + "\n" +
@@ -109,7 +120,14 @@ public class Startup extends ListenerAdapter {
                         getCheckLine("Status", Setting.STATUS != OnlineStatus.UNKNOWN) + "\n" +
                         getCheckLine("Dad bot", Setting.DAD_BOT_CHANCE != -1) + "\n" +
                         getCheckLine("Timer delay", Setting.ANNOUNCEMENT_DELAY != -1) + "\n" +
-                        getCheckLine("Messages check", Setting.ANNOUNCEMENT_MESSAGES_CHECK != -1),
+                        getCheckLine("Messages check", Setting.ANNOUNCEMENT_MESSAGES_CHECK != -1) + "\n" +
+                        getCheckLine("Announcement schedule", !Setting.ANNOUNCEMENT_SCHEDULE_FILE.isEmpty()) + "\n" +
+                        getCheckLine("Repeat window", Setting.ANNOUNCEMENT_REPEAT_WINDOW != -1) + "\n" +
+                        getCheckLine("Edit window", Setting.COMMAND_EDIT_WINDOW != -1) + "\n" +
+                        getCheckLine("Reply cache size", Setting.COMMAND_REPLY_CACHE_SIZE != -1) + "\n" +
+                        getCheckLine("Edit coalescing", Setting.EDIT_COALESCE_WINDOW != -1) + "\n" +
+                        getCheckLine("Rate limits", Setting.RATE_LIMIT_PERIOD != -1) + "\n" +
+                        getCheckLine("Surge thresholds", Setting.SURGE_COOLDOWN != -1),
                         false)
         );
 
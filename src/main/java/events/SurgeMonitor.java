@@ -0,0 +1,255 @@
+package events;
+
+import announcements.AnnouncementLoader;
+import ch.qos.logback.classic.Level;
+import commands.text.EditCoalescer;
+import commands.text.TextCommands;
+import data.Colors;
+import data.Discord;
+import data.Setting;
+import main.Main;
+import main.Utils;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This watches the load on each channel, as measured by the {@link ChannelEventManager}, and switches the bot into
+ * <i>surge mode</i> when traffic spikes (as it does in <code>#apstats</code> on AP score release day and the nights
+ * before the exam). Surge mode trades a few niceties for headroom:
+ * <ul>
+ *     <li>The {@link AnnouncementLoader#setSuspended(boolean) announcement timer} is suspended.
+ *     <li>The dad bot is switched off.
+ *     <li>The replies to the <code>faq</code> command are {@link TextCommands#setPrerendered(boolean) rendered once}
+ *     and shared, rather than built for every user.
+ *     <li>The root log level is raised to <code>WARN</code>, so routine <code>INFO</code> logging stops.
+ *     <li>The {@link EditCoalescer} window is widened to {@link Setting#SURGE_EDIT_COALESCE_WINDOW}, so rapid command
+ *     edits are merged more aggressively.
+ * </ul>
+ * Surge mode starts as soon as the busiest channel crosses {@link Setting#SURGE_ENTER_RATE} or {@link
+ * Setting#SURGE_ENTER_LATENCY}. It only ends once every channel has stayed below the lower {@link
+ * Setting#SURGE_EXIT_RATE} and {@link Setting#SURGE_EXIT_LATENCY} thresholds for {@link Setting#SURGE_COOLDOWN}
+ * seconds, so the bot doesn't flap between modes while traffic hovers around a threshold.
+ * <p>
+ * Administrators can override the automatic behavior with the <code>surge</code> command. Every change of state is
+ * posted to {@link Discord#STARTUP_LOG #startup-log}.
+ */
+public class SurgeMonitor {
+    private static final Logger LOG = JDALogger.getLog(SurgeMonitor.class);
+
+    /**
+     * How often the channel loads are checked, in seconds.
+     */
+    private static final int CHECK_INTERVAL = 5;
+
+    /**
+     * Whether surge mode is decided automatically or forced by an administrator.
+     */
+    public enum Control {
+        AUTO, ON, OFF;
+
+        /**
+         * Get the control with the given name, ignoring case.
+         *
+         * @param name the name, such as <code>auto</code>
+         * @return the matching control, or <code>null</code> if there is none
+         */
+        public static @Nullable Control fromName(@NotNull String name) {
+            for (Control control : values())
+                if (control.name().equalsIgnoreCase(name))
+                    return control;
+            return null;
+        }
+    }
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "StatsBot Surge-Monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile boolean surging = false;
+    private static volatile Control control = Control.AUTO;
+
+    /**
+     * The {@link System#nanoTime()} at which the load last fell below the exit thresholds during a surge, or
+     * <code>-1</code> if it is currently above them.
+     */
+    private static long calmSince = -1;
+
+    /**
+     * The root log level before surge mode started, to restore when it ends.
+     */
+    private static Level normalLogLevel = null;
+
+    /**
+     * Start checking the channel loads periodically. This is called once at startup, after the settings are imported.
+     */
+    public static void start() {
+        timer.scheduleAtFixedRate(SurgeMonitor::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.SECONDS);
+        LOG.info("Started surge monitor");
+    }
+
+    /**
+     * @return <code>true</code> if the bot is currently in surge mode
+     */
+    public static boolean isSurging() {
+        return surging;
+    }
+
+    /**
+     * Override the automatic surge detection, or return to it. The new control takes effect immediately.
+     *
+     * @param newControl the new control
+     * @param admin      the name of the administrator who changed it, for the log
+     */
+    public static synchronized void setControl(@NotNull Control newControl, @NotNull String admin) {
+        control = newControl;
+        switch (newControl) {
+            case ON -> enter("Forced on by " + admin);
+            case OFF -> exit("Forced off by " + admin);
+            case AUTO -> check();
+        }
+    }
+
+    /**
+     * Describe the current state of surge mode and the load on the busiest channel, for the <code>surge</code>
+     * command.
+     *
+     * @return the description
+     */
+    public static @NotNull String describe() {
+        ChannelEventManager.ChannelLoad busiest = getBusiestChannel();
+        return "Surge mode is **" + (surging ? "on" : "off") + "** " +
+               (control == Control.AUTO ? "(automatic)" : "(forced " + control.name().toLowerCase(Locale.ROOT) + ")") +
+               ".\n" +
+               (busiest == null ? "No channels have been active recently." :
+                       "The busiest channel is " + Utils.mentionChannel(busiest.channelId()) + " with " +
+                       format(busiest) + ".") + "\n" +
+               "Surge mode starts at `" + Setting.SURGE_ENTER_RATE + "` events/min or `" +
+               Setting.SURGE_ENTER_LATENCY + " ms` and ends after `" + Setting.SURGE_COOLDOWN + " s` below `" +
+               Setting.SURGE_EXIT_RATE + "` events/min and `" + Setting.SURGE_EXIT_LATENCY + " ms`.";
+    }
+
+    /**
+     * Compare the current load against the thresholds, and start or end surge mode if necessary. This does nothing
+     * while surge mode is forced on or off.
+     */
+    private static synchronized void check() {
+        try {
+            if (control != Control.AUTO)
+                return;
+
+            // The rate and latency of the busiest and slowest channels, which need not be the same channel
+            double rate = 0, latency = 0;
+            for (ChannelEventManager.ChannelLoad load : Main.EVENTS.getChannelLoads()) {
+                rate = Math.max(rate, load.eventsPerMinute());
+                latency = Math.max(latency, load.latencyMillis());
+            }
+
+            if (!surging) {
+                if (rate >= Setting.SURGE_ENTER_RATE || latency >= Setting.SURGE_ENTER_LATENCY)
+                    enter(String.format("The busiest channel reached `%.0f` events/min and the slowest `%.0f ms`",
+                            rate, latency));
+                return;
+            }
+
+            long now = System.nanoTime();
+            if (rate >= Setting.SURGE_EXIT_RATE || latency >= Setting.SURGE_EXIT_LATENCY)
+                calmSince = -1;
+            else if (calmSince == -1)
+                calmSince = now;
+            else if (now - calmSince >= TimeUnit.SECONDS.toNanos(Setting.SURGE_COOLDOWN))
+                exit("Load stayed below the exit thresholds for " + Setting.SURGE_COOLDOWN + " seconds");
+
+        } catch (Exception e) {
+            LOG.error("Failed to check for traffic surges", e);
+        }
+    }
+
+    /**
+     * Switch to the surge profile, if it isn't active already.
+     *
+     * @param reason why surge mode started, for the log
+     */
+    private static void enter(String reason) {
+        calmSince = -1;
+        if (surging)
+            return;
+
+        surging = true;
+        AnnouncementLoader.setSuspended(true);
+        TextCommands.setPrerendered(true);
+        EditCoalescer.setWindow(Setting.SURGE_EDIT_COALESCE_WINDOW);
+
+        // Log the change before the level is raised, so that it isn't hidden
+        LOG.warn("Entered surge mode: " + reason);
+        ch.qos.logback.classic.Logger root = getRootLogger();
+        if (root != null) {
+            normalLogLevel = root.getLevel();
+            root.setLevel(Level.WARN);
+        }
+
+        report("Entered surge mode", reason);
+    }
+
+    /**
+     * Switch back to the normal profile, if surge mode is active.
+     *
+     * @param reason why surge mode ended, for the log
+     */
+    private static void exit(String reason) {
+        calmSince = -1;
+        if (!surging)
+            return;
+
+        surging = false;
+        ch.qos.logback.classic.Logger root = getRootLogger();
+        if (root != null && normalLogLevel != null)
+            root.setLevel(normalLogLevel);
+
+        EditCoalescer.setWindow(Setting.EDIT_COALESCE_WINDOW);
+        TextCommands.setPrerendered(false);
+        AnnouncementLoader.setSuspended(false);
+
+        LOG.info("Exited surge mode: " + reason);
+        report("Exited surge mode", reason);
+    }
+
+    /**
+     * Post a change of state to {@link Discord#STARTUP_LOG #startup-log}, if it is available.
+     */
+    private static void report(String title, String reason) {
+        TextChannel log = Discord.STARTUP_LOG;
+        if (log != null)
+            log.sendMessageEmbeds(Utils.makeEmbed(title, reason, Colors.ADMIN).build()).queue();
+    }
+
+    private static @Nullable ChannelEventManager.ChannelLoad getBusiestChannel() {
+        ChannelEventManager.ChannelLoad busiest = null;
+        for (ChannelEventManager.ChannelLoad load : Main.EVENTS.getChannelLoads())
+            if (busiest == null || load.eventsPerMinute() > busiest.eventsPerMinute())
+                busiest = load;
+        return busiest;
+    }
+
+    private static String format(ChannelEventManager.ChannelLoad load) {
+        return String.format("`%.0f` events/min and `%.0f ms` latency", load.eventsPerMinute(), load.latencyMillis());
+    }
+
+    /**
+     * @return the logback root logger, or <code>null</code> if SLF4J is bound to a different logging backend
+     */
+    private static ch.qos.logback.classic.Logger getRootLogger() {
+        Object root = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        return root instanceof ch.qos.logback.classic.Logger logger ? logger : null;
+    }
+}
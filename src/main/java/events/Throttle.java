@@ -0,0 +1,158 @@
+package events;
+
+import data.Setting;
+import main.RateLimiter;
+import net.dv8tion.jda.api.entities.Message;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This decides whether the bot should respond to an event, so that no single user or channel can spend the bot's
+ * Discord REST budget. Every response is checked against three token buckets:
+ * <ol>
+ *     <li>A bucket for the user, so one person spamming commands can't crowd out everyone else.
+ *     <li>A bucket for the channel, so a busy channel can't crowd out the rest of the server.
+ *     <li>A single global {@link RateLimiter.Bucket bucket}, kept a little under Discord's global limit of 50 requests
+ *     per second. It is a field of its own rather than a key in a {@link RateLimiter}, so every response checks it
+ *     without taking a lock.
+ * </ol>
+ * Responses that fail the user or channel check are <i>throttled</i>. When the global bucket fills up, responses are
+ * <i>shed</i> by {@link Priority}: {@link Priority#LOW low} priority work (the dad bot and survey reactions) stops once
+ * half the global budget is in use, {@link Priority#NORMAL normal} work (text commands) stops once all of it is in
+ * use, and {@link Priority#HIGH high} priority work (interaction replies) is never dropped. Discord shows an error to
+ * the user if an interaction isn't answered within three seconds, so those always go through, but they still use up
+ * the user's bucket and the global budget.
+ */
+public class Throttle {
+    /**
+     * How important a response is. Lower priorities are shed first when the bot is under load.
+     */
+    public enum Priority {
+        /**
+         * Optional responses, such as the dad bot and survey reactions.
+         */
+        LOW(0.5),
+
+        /**
+         * Responses to text commands.
+         */
+        NORMAL(1),
+
+        /**
+         * Responses to interactions, which are never dropped.
+         */
+        HIGH(Double.POSITIVE_INFINITY);
+
+        /**
+         * The fraction of the global budget that responses of this priority may use.
+         */
+        private final double capacity;
+
+        Priority(double capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private static volatile RateLimiter users = new RateLimiter(5, 10, TimeUnit.SECONDS, 50000);
+    private static volatile RateLimiter channels = new RateLimiter(20, 10, TimeUnit.SECONDS, 10000);
+    private static volatile RateLimiter.Bucket global = new RateLimiter.Bucket(40, 1, TimeUnit.SECONDS);
+
+    private static final LongAdder throttledUsers = new LongAdder();
+    private static final LongAdder throttledChannels = new LongAdder();
+    private static final LongAdder[] shed = new LongAdder[Priority.values().length];
+
+    static {
+        for (int i = 0; i < shed.length; i++)
+            shed[i] = new LongAdder();
+    }
+
+    /**
+     * This replaces the rate limiters with new ones using the {@link Setting#USER_RATE_LIMIT}, {@link
+     * Setting#CHANNEL_RATE_LIMIT}, {@link Setting#RATE_LIMIT_PERIOD}, and {@link Setting#GLOBAL_RATE_LIMIT} settings.
+     * It is called once at startup after the settings are imported.
+     */
+    public static void loadSettings() {
+        users = new RateLimiter(Setting.USER_RATE_LIMIT, Setting.RATE_LIMIT_PERIOD, TimeUnit.SECONDS, 50000);
+        channels = new RateLimiter(Setting.CHANNEL_RATE_LIMIT, Setting.RATE_LIMIT_PERIOD, TimeUnit.SECONDS, 10000);
+        global = new RateLimiter.Bucket(Setting.GLOBAL_RATE_LIMIT, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Determine whether the bot should respond to a message, as for {@link #allow(long, long, Priority)}.
+     *
+     * @param message  the message to respond to
+     * @param priority the priority of the response
+     * @return true if the bot should respond; false if the response should be dropped
+     */
+    public static boolean allow(@NotNull Message message, @NotNull Priority priority) {
+        return allow(message.getAuthor().getIdLong(), message.getChannel().getIdLong(), priority);
+    }
+
+    /**
+     * Determine whether the bot should respond to an event from a given user in a given channel. If so, the response
+     * is counted against the user, the channel, and the global budget. If not, any tokens that were already taken for
+     * it are given back, so a dropped response costs nothing.
+     *
+     * @param userId    the id of the user who triggered the event
+     * @param channelId the id of the channel the response will be sent in
+     * @param priority  the priority of the response
+     * @return true if the bot should respond; false if the response should be dropped. This is always true for {@link
+     * Priority#HIGH} priority responses.
+     */
+    public static boolean allow(long userId, long channelId, @NotNull Priority priority) {
+        if (priority == Priority.HIGH) {
+            users.acquire(userId);
+            channels.acquire(channelId);
+            global.acquire();
+            return true;
+        }
+
+        if (!users.tryAcquire(userId)) {
+            throttledUsers.increment();
+            return false;
+        }
+        if (!channels.tryAcquire(channelId)) {
+            users.release(userId);
+            throttledChannels.increment();
+            return false;
+        }
+        if (!global.tryAcquire(priority.capacity)) {
+            users.release(userId);
+            channels.release(channelId);
+            shed[priority.ordinal()].increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of responses dropped because the user was over their rate limit
+     */
+    public static long getThrottledUserCount() {
+        return throttledUsers.sum();
+    }
+
+    /**
+     * @return the number of responses dropped because the channel was over its rate limit
+     */
+    public static long getThrottledChannelCount() {
+        return throttledChannels.sum();
+    }
+
+    /**
+     * @param priority the priority
+     * @return the number of responses with the given priority dropped because the bot was under load
+     */
+    public static long getShedCount(@NotNull Priority priority) {
+        return shed[priority.ordinal()].sum();
+    }
+
+    /**
+     * @return the fraction of the global budget currently in use
+     */
+    public static double getGlobalUsage() {
+        return global.getUsage();
+    }
+}
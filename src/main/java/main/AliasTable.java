@@ -0,0 +1,86 @@
+package main;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This is an alias table for sampling from a discrete distribution in constant time, using Vose's alias method.
+ * <p>
+ * The table has one column per outcome. Each column holds the probability of keeping its own outcome and an
+ * <i>alias</i> to use otherwise. Sampling picks a column uniformly and then makes a single biased coin flip, so it
+ * takes two random numbers no matter how many outcomes there are, unlike a scan over the cumulative weights.
+ * <p>
+ * Building the table takes linear time. It is immutable afterwards and can be shared between threads.
+ */
+public final class AliasTable {
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * Build an alias table from relative weights.
+     *
+     * @param weights the weight of each outcome. Every weight must be non-negative, and at least one must be positive.
+     */
+    public AliasTable(double @NotNull [] weights) {
+        int n = weights.length;
+        double sum = 0;
+        for (double weight : weights) {
+            if (weight < 0 || Double.isNaN(weight))
+                throw new IllegalArgumentException("Weights must be non-negative");
+            sum += weight;
+        }
+        if (n == 0 || sum <= 0)
+            throw new IllegalArgumentException("At least one weight must be positive");
+
+        probability = new double[n];
+        alias = new int[n];
+
+        // Scale the weights so that the average column is exactly full, and sort them into under- and overfull
+        double[] scaled = new double[n];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            (scaled[i] < 1 ? small : large).push(i);
+        }
+
+        // Fill each underfull column with the excess of an overfull one
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] += scaled[less] - 1;
+            (scaled[more] < 1 ? small : large).push(more);
+        }
+
+        // Whatever remains is full, up to rounding error
+        while (!large.isEmpty())
+            probability[large.pop()] = 1;
+        while (!small.isEmpty())
+            probability[small.pop()] = 1;
+    }
+
+    /**
+     * Pick a random outcome, with probability proportional to its weight.
+     *
+     * @return the index of the outcome
+     */
+    public int sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    /**
+     * @return the number of outcomes
+     */
+    public int size() {
+        return probability.length;
+    }
+}
@@ -1,22 +1,12 @@
 package main;
 
 import data.Discord;
-import data.ID;
 import events.Startup;
-import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.events.Event;
-import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
-import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
-import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
-import net.dv8tion.jda.api.events.message.GenericMessageEvent;
-import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
-import net.dv8tion.jda.api.events.message.react.GenericMessageReactionEvent;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.EnumSet;
 
 /**
  * Bot modes control the events to which the bot responds. It consists of a set of enums under {@link Mode} that define
@@ -25,6 +15,9 @@ import java.util.List;
  * Using the presets {@link #running()} and {@link #testing()}, it is possible to run simultaneous StatsBot instances
  * for global functionality (in the AP Students server, DMs, and elsewhere) and a separate instance for testing (in
  * StatsBot Central).
+ * <p>
+ * A {@link BotMode} only describes which modes are enabled. It is compiled into a {@link RoutingTable}, which is what
+ * the bot actually consults when deciding whether to handle an event.
  */
 public class BotMode {
 
@@ -61,9 +54,10 @@ public class BotMode {
     }
 
     /**
-     * This is the list of currently enabled modes for this {@link BotMode} instance.
+     * This is the set of enabled modes for this {@link BotMode} instance. It is never modified after construction, so a
+     * {@link BotMode} can be safely shared between threads.
      */
-    private final List<Mode> modes;
+    private final EnumSet<Mode> modes;
 
     private final String modeName;
 
@@ -73,7 +67,8 @@ public class BotMode {
      * @param modes the {@link Mode}(s) to enable
      */
     private BotMode(String modeName, Mode... modes) {
-        this.modes = Arrays.asList(modes);
+        this.modes = EnumSet.noneOf(Mode.class);
+        this.modes.addAll(Arrays.asList(modes));
         this.modeName = modeName;
     }
 
@@ -152,15 +147,17 @@ public class BotMode {
     }
 
     /**
-     * This adds one or more {@link Mode} enums to the list of enabled modes.
+     * This creates a copy of this {@link BotMode} with an additional {@link Mode} enabled. Bot modes are immutable, so
+     * the original instance is unchanged.
      *
-     * @param mode one or more modes to add
-     * @return this {@link BotMode} instance for chaining
+     * @param mode the mode to add
+     * @return the new {@link BotMode} instance
      */
-    public BotMode addMode(Mode mode) {
-        if (!modes.contains(mode))
-            modes.add(mode);
-        return this;
+    public BotMode withMode(Mode mode) {
+        BotMode botMode = new BotMode(modeName);
+        botMode.modes.addAll(modes);
+        botMode.modes.add(mode);
+        return botMode;
     }
 
     /**
@@ -201,53 +198,18 @@ public class BotMode {
     }
 
     /**
-     * This determines if a given {@link net.dv8tion.jda.api.JDA} {@link Event} should be ignored according to the bot's
-     * current {@link BotMode}. If the event should be ignored, true is returned, and all event processing should cease
-     * immediately.
+     * Two bot modes are equal if they enable the same set of {@link Mode Modes}, regardless of their names.
      *
-     * @param event the incoming JDA event
-     * @param <T>   the event type as a subclass of {@link Event}
-     * @return true if the event should be ignored; false if it should be processed as normal
+     * @param o the object to compare to
+     * @return true if the modes are equal; false otherwise
      */
-    public <T extends Event> boolean ignoreEvent(T event) {
-        // If the event is an incoming message or button click, determine if it is a DM,
-        // StatsBot Central message, or other server, and respond accordingly.
-        if (event instanceof GenericMessageEvent e)
-            return ignoreEvent(e.isFromGuild(), e.isFromGuild() ? e.getGuild() : null);
-
-        // If the event is a slash command, check the source
-        if (event instanceof SlashCommandEvent e) {
-            if (e.getGuild() != null && e.getGuild().getIdLong() == ID.STATSBOT_CENTRAL_GUILD)
-                return ignores(Mode.PRIVATE_SLASH_COMMANDS);
-            else
-                return ignores(Mode.GLOBAL_SLASH_COMMANDS);
-        }
-
-        // If the event is another (non slash command) interaction, treat it like a generic message event
-        if (event instanceof GenericInteractionCreateEvent e)
-            return ignoreEvent(e.isFromGuild(), e.getGuild());
-
-
-        // If the event type is unknown, do not ignore it
-        return false;
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BotMode b && modes.equals(b.modes);
     }
 
-    /**
-     * This is simply a helper method for {@link #ignoreEvent(Event)} that allows separate event objects to be treated
-     * by the same if structure as message events. Events occurring in DMs are controlled by {@link
-     * Mode#DIRECT_MESSAGES}. If an event occurs in a Guild, messages in {@link Discord#STATSBOT_CENTRAL} are controlled
-     * by {@link Mode#STATSBOT_CENTRAL_MESSAGES}, and all other messages by {@link Mode#SERVER_MESSAGES}.
-     *
-     * @param isFromGuild whether the message was sent in a {@link Guild}
-     * @param guild       the {@link Guild} that the message was sent in (null if not applicable)
-     * @return true if the event should be ignored; false if it should be allowed and processed
-     */
-    private boolean ignoreEvent(boolean isFromGuild, @Nullable Guild guild) {
-        if (!isFromGuild)
-            return ignores(Mode.DIRECT_MESSAGES);
-        else if (guild != null && guild.getIdLong() == ID.STATSBOT_CENTRAL_GUILD)
-            return ignores(Mode.STATSBOT_CENTRAL_MESSAGES);
-        else
-            return ignores(Mode.SERVER_MESSAGES);
+    @Override
+    public int hashCode() {
+        return modes.hashCode();
     }
 }
@@ -0,0 +1,242 @@
+package main;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * This is the compiled form of the bot's data files, built by {@link ContentCompiler} when the bot is built, and read
+ * in place of the CSV files by {@link Resources#readCsv(String, Path, int)}.
+ * <p>
+ * The bundle is one binary file. After a short header comes a string table, holding every distinct cell of every file
+ * once: the number of strings, the offset of each one into a block of UTF-8 bytes, and the block itself. Then come the
+ * sections, one for each data file. Each section has the name of the file, its number of columns and rows, and then
+ * its rows as fixed-width records of <code>columns + 1</code> ints: the line number of the row in the original file,
+ * followed by the index of each cell in the string table.
+ * <p>
+ * At startup the bundle is memory-mapped, and only the section headers are read. Strings are decoded from the mapped
+ * bytes the first time a row that uses them is read, and then cached. Since the rows were validated when the bundle
+ * was built, a malformed file fails the build rather than the bot.
+ */
+public final class ContentBundle {
+    private static final Logger LOG = JDALogger.getLog(ContentBundle.class);
+
+    /**
+     * The name of the bundle on the classpath.
+     */
+    public static final String RESOURCE = "/content.bin";
+
+    /**
+     * The first bytes of every bundle: <code>SBCB</code>, for Stats Bot content bundle.
+     */
+    private static final int MAGIC = 0x53424342;
+
+    /**
+     * The version of the format. Bundles with a different version are ignored, so the CSV files are read instead.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The bundle on the classpath, once it has been {@link #get() opened}.
+     */
+    private static ContentBundle instance = null;
+    private static boolean opened = false;
+
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int offsetsStart;
+    private final int stringsStart;
+    private final String[] strings;
+    private final Map<String, Section> sections = new HashMap<>();
+
+    /**
+     * A section of the bundle, holding the rows of one data file.
+     *
+     * @param columns the number of columns
+     * @param rows    the number of rows
+     * @param start   the position of the first record in the buffer
+     */
+    private record Section(int columns, int rows, int start) {
+    }
+
+    private ContentBundle(ByteBuffer buffer) {
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("Not a content bundle");
+        if (buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Unsupported content bundle version " + buffer.getInt(4));
+
+        stringCount = buffer.getInt(8);
+        offsetsStart = 12;
+        stringsStart = offsetsStart + 4 * (stringCount + 1);
+        strings = new String[stringCount];
+
+        // Read the section headers, skipping over their records
+        int position = stringsStart + buffer.getInt(offsetsStart + 4 * stringCount);
+        int sectionCount = buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < sectionCount; i++) {
+            String name = string(buffer.getInt(position));
+            int columns = buffer.getInt(position + 4);
+            int rows = buffer.getInt(position + 8);
+            sections.put(name, new Section(columns, rows, position + 12));
+            position += 12 + 4 * (columns + 1) * rows;
+        }
+    }
+
+    /**
+     * Get the bundle on the classpath, opening it the first time this is called. If the bundle was built by Gradle and
+     * the bot is running from the build directory, it is memory-mapped. If the bot is running from a jar, where it
+     * can't be mapped, it is read into memory in one go.
+     *
+     * @return the bundle, or <code>null</code> if there isn't one or it can't be read
+     */
+    public static synchronized @Nullable ContentBundle get() {
+        if (!opened) {
+            instance = open();
+            opened = true;
+        }
+        return instance;
+    }
+
+    private static ContentBundle open() {
+        URL url = ContentBundle.class.getResource(RESOURCE);
+        if (url == null)
+            return null;
+
+        try {
+            long start = System.nanoTime();
+            ByteBuffer buffer;
+            if (url.getProtocol().equals("file")) {
+                try (FileChannel channel = FileChannel.open(Path.of(url.toURI()), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            } else {
+                buffer = Resources.readResource(RESOURCE);
+            }
+
+            ContentBundle bundle = new ContentBundle(buffer);
+            LOG.info(String.format("Opened content bundle (%d sections, %d strings, %d bytes) in %.2f ms",
+                    bundle.sections.size(), bundle.stringCount, buffer.limit(), (System.nanoTime() - start) / 1e6));
+            return bundle;
+
+        } catch (Exception e) {
+            LOG.error("Failed to open the content bundle. Reading the data files instead.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the rows of a data file from the bundle. Each row is decoded when it is read.
+     *
+     * @param resource the name of the data file on the classpath, such as <code>/faq.csv</code>
+     * @param columns  the number of columns the caller expects
+     * @return the rows, or <code>null</code> if the file isn't in the bundle or has a different number of columns
+     */
+    public @Nullable List<CsvReader.Row> getRows(@NotNull String resource, int columns) {
+        Section section = sections.get(resource);
+        if (section == null || section.columns() != columns)
+            return null;
+
+        return new AbstractList<>() {
+            @Override
+            public CsvReader.Row get(int index) {
+                Objects.checkIndex(index, section.rows());
+                int position = section.start() + 4 * (section.columns() + 1) * index;
+                String[] cells = new String[section.columns()];
+                for (int i = 0; i < cells.length; i++)
+                    cells[i] = string(buffer.getInt(position + 4 * (i + 1)));
+                return new CsvReader.Row(buffer.getInt(position), cells);
+            }
+
+            @Override
+            public int size() {
+                return section.rows();
+            }
+        };
+    }
+
+    /**
+     * Get a string from the string table, decoding it the first time. Two threads may both decode the same string,
+     * but they get equal results, so there's no need to lock.
+     */
+    private String string(int index) {
+        String string = strings[index];
+        if (string == null) {
+            int start = buffer.getInt(offsetsStart + 4 * index);
+            byte[] bytes = new byte[buffer.getInt(offsetsStart + 4 * (index + 1)) - start];
+            buffer.get(stringsStart + start, bytes);
+            strings[index] = string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return string;
+    }
+
+    /**
+     * Write a bundle. This is used by {@link ContentCompiler} when the bot is built.
+     *
+     * @param files   the rows of each data file, by the name of the file on the classpath
+     * @param columns the number of columns in each data file, by the name of the file on the classpath
+     * @param out     the file to write the bundle to
+     * @throws IOException if the bundle can't be written
+     */
+    static void write(@NotNull Map<String, List<CsvReader.Row>> files, @NotNull Map<String, Integer> columns,
+                      @NotNull Path out) throws IOException {
+        // Build the string table, storing each distinct string once
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (Map.Entry<String, List<CsvReader.Row>> file : files.entrySet()) {
+            ids.putIfAbsent(file.getKey(), ids.size());
+            for (CsvReader.Row row : file.getValue())
+                for (String cell : row.cells())
+                    ids.putIfAbsent(cell, ids.size());
+        }
+
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        try (OutputStream stream = Files.newOutputStream(out);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(stream))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+
+            List<byte[]> encoded = new ArrayList<>(ids.size());
+            for (String string : ids.keySet())
+                encoded.add(string.getBytes(StandardCharsets.UTF_8));
+
+            data.writeInt(encoded.size());
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                data.writeInt(offset);
+                offset += bytes.length;
+            }
+            data.writeInt(offset);
+            for (byte[] bytes : encoded)
+                data.write(bytes);
+
+            data.writeInt(files.size());
+            for (Map.Entry<String, List<CsvReader.Row>> file : files.entrySet()) {
+                int width = columns.get(file.getKey());
+                data.writeInt(ids.get(file.getKey()));
+                data.writeInt(width);
+                data.writeInt(file.getValue().size());
+                for (CsvReader.Row row : file.getValue()) {
+                    data.writeInt(row.line());
+                    for (int i = 0; i < width; i++)
+                        data.writeInt(ids.get(row.cells()[i]));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package main;
+
+import announcements.AnnouncementCatalog;
+import commands.faq.FAQCatalog;
+import commands.slash.Diagram;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * This compiles the bot's data files into a {@link ContentBundle}. It runs as the <code>compileContent</code> Gradle
+ * task before the resources are packaged, with the arguments
+ * <pre>
+ *     [resources directory] [bundle file]
+ * </pre>
+ * Each file is parsed with the same code that loads it at runtime, so a malformed row fails the build with the same
+ * message that the bot would have logged.
+ */
+public class ContentCompiler {
+    /**
+     * A data file to compile.
+     *
+     * @param resource  the name of the file on the classpath
+     * @param columns   the number of columns
+     * @param validator checks the rows, throwing an exception if any are invalid
+     */
+    private record DataFile(String resource, int columns, Consumer<List<CsvReader.Row>> validator) {
+    }
+
+    private static final List<DataFile> FILES = List.of(
+            new DataFile("/faq.csv", FAQCatalog.COLUMNS, FAQCatalog::parse),
+            new DataFile("/diagrams/diagrams.csv", Diagram.COLUMNS, Diagram::parse),
+            new DataFile("/announcements.csv", AnnouncementCatalog.COLUMNS, AnnouncementCatalog::parse)
+    );
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: ContentCompiler [resources directory] [bundle file]");
+            System.exit(2);
+        }
+
+        Path resources = Path.of(args[0]);
+        Path out = Path.of(args[1]);
+        Map<String, List<CsvReader.Row>> rows = new LinkedHashMap<>();
+        Map<String, Integer> columns = new LinkedHashMap<>();
+
+        try {
+            for (DataFile file : FILES) {
+                // Always read the source file, never a bundle left over from the last build
+                Path source = resources.resolve(file.resource().substring(1));
+                if (!Files.exists(source))
+                    throw new NoSuchFileException(source.toString());
+                List<CsvReader.Row> parsed = Resources.readCsv(file.resource(), source, file.columns()).rows();
+
+                try {
+                    file.validator().accept(parsed);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(source + ": " + e.getMessage(), e);
+                }
+
+                rows.put(file.resource(), parsed);
+                columns.put(file.resource(), file.columns());
+            }
+
+            ContentBundle.write(rows, columns, out);
+            System.out.println("Compiled " + rows.size() + " data files into " + out);
+
+        } catch (Exception e) {
+            System.err.println("Failed to compile the content bundle: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
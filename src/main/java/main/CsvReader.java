@@ -0,0 +1,160 @@
+package main;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This is a small hand-written CSV tokenizer for the bot's data files. It walks the text once, character by character,
+ * without any regular expressions or per-line strings.
+ * <p>
+ * Cells are separated by commas and rows by line breaks (<code>\n</code> or <code>\r\n</code>). A cell may be wrapped
+ * in double quotes, in which case it can contain commas, line breaks, and doubled quotes (<code>""</code>) that stand
+ * for one quote. Unquoted cells are taken as they are.
+ * <p>
+ * Every file has a fixed number of columns. Rows with fewer cells are padded with empty cells, so that optional
+ * columns at the end can be left off. If an unquoted row has more cells than that, the extra commas are kept as part of
+ * the last cell, so that a free-text last column such as an announcement's content doesn't need quoting.
+ */
+public final class CsvReader {
+    /**
+     * A row of a CSV file.
+     *
+     * @param line  the line number where the row starts, counting the header as line 1
+     * @param cells the cells in the row. There is always exactly one cell for each column.
+     */
+    public record Row(int line, String @NotNull [] cells) {
+        /**
+         * Get a cell with surrounding whitespace removed.
+         *
+         * @param column the column of the cell, starting at 0
+         * @return the stripped cell
+         */
+        public @NotNull String get(int column) {
+            return cells[column].strip();
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + String.join(",", cells);
+        }
+    }
+
+    private final CharSequence text;
+    private final int columns;
+    private int position = 0;
+    private int line = 1;
+
+    private CsvReader(CharSequence text, int columns) {
+        this.text = text;
+        this.columns = columns;
+    }
+
+    /**
+     * Parse the rows of a CSV file. The first row is a header and is skipped, as are blank lines.
+     *
+     * @param text    the contents of the file
+     * @param columns the number of columns
+     * @return the rows, in order
+     * @throws IllegalArgumentException if a quoted cell is never closed
+     */
+    public static @NotNull List<Row> parse(@NotNull CharSequence text, int columns) {
+        CsvReader reader = new CsvReader(text, columns);
+        List<Row> rows = new ArrayList<>();
+
+        // Skip a byte order mark and the header
+        if (text.length() > 0 && text.charAt(0) == '\uFEFF')
+            reader.position++;
+        reader.next();
+
+        while (reader.position < text.length()) {
+            int start = reader.line;
+            String[] cells = reader.next();
+            if (cells != null)
+                rows.add(new Row(start, cells));
+        }
+        return rows;
+    }
+
+    /**
+     * Parse a single CSV row, such as a line from one of the bot's data files.
+     *
+     * @param line    the row
+     * @param columns the number of columns
+     * @return the cells of the row
+     * @throws IllegalArgumentException if a quoted cell is never closed
+     */
+    public static String @NotNull [] split(@NotNull CharSequence line, int columns) {
+        String[] cells = new CsvReader(line, columns).next();
+        if (cells == null) {
+            cells = new String[columns];
+            Arrays.fill(cells, "");
+        }
+        return cells;
+    }
+
+    /**
+     * Read the next row, and move past the line break at the end of it.
+     *
+     * @return the cells of the row, or <code>null</code> if the line is blank
+     */
+    private String[] next() {
+        String[] cells = new String[columns];
+        Arrays.fill(cells, "");
+        StringBuilder cell = new StringBuilder();
+        int column = 0;
+        boolean blank = true;
+
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+
+            if (c == '"' && cell.isEmpty()) {
+                readQuoted(cell);
+                blank = false;
+            } else if (c == ',') {
+                blank = false;
+                if (column < columns - 1) {
+                    cells[column++] = cell.toString();
+                    cell.setLength(0);
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '\n') {
+                line++;
+                break;
+            } else if (c != '\r') {
+                cell.append(c);
+                if (!Character.isWhitespace(c))
+                    blank = false;
+            }
+        }
+
+        cells[column] = cell.toString();
+        return blank ? null : cells;
+    }
+
+    /**
+     * Read the rest of a quoted cell, after its opening quote, up to and including its closing quote.
+     */
+    private void readQuoted(StringBuilder cell) {
+        int start = line;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '"') {
+                if (position < text.length() && text.charAt(position) == '"') {
+                    cell.append('"');
+                    position++;
+                } else {
+                    return;
+                }
+            } else {
+                if (c == '\n')
+                    line++;
+                cell.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Unclosed quote on line " + start);
+    }
+}
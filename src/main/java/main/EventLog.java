@@ -0,0 +1,189 @@
+package main;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This is the file format for recordings of the raw gateway events received by the bot. A log is an append-only
+ * sequence of records, each of which holds one gateway payload exactly as Discord sent it, along with the time it was
+ * received:
+ * <pre>
+ *     header:  "SBEL" (4 bytes), version (1 byte)
+ *     record:  received at, in epoch milliseconds (8 bytes), payload length (4 bytes), payload (UTF-8 JSON)
+ * </pre>
+ * If the file name ends in <code>.gz</code>, the log is gzip compressed. Gateway payloads are very repetitive, so
+ * this typically makes a log several times smaller. Each time a compressed log is opened for writing, a new gzip
+ * member is appended to the file, and the {@link Reader} reads through all of them as a single stream.
+ * <p>
+ * Logs are written by {@link events.EventRecorder EventRecorder} and read by the replay harness in the load tests.
+ */
+public final class EventLog {
+    private static final byte[] MAGIC = "SBEL".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    /**
+     * The maximum size of a single payload. Discord limits gateway payloads to well under this, so anything larger
+     * means the log is corrupt.
+     */
+    private static final int MAX_PAYLOAD = 64 * 1024 * 1024;
+
+    private EventLog() {
+    }
+
+    /**
+     * A single record in an {@link EventLog}.
+     *
+     * @param receivedAt the time the payload was received, in epoch milliseconds
+     * @param payload    the raw gateway payload, as UTF-8 JSON
+     */
+    public record Entry(long receivedAt, byte[] payload) {
+        public @NotNull String payloadString() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Open a log for appending. If the file doesn't exist or is empty, it is created and the header is written.
+     *
+     * @param path the log file
+     * @return the writer
+     * @throws IOException if the file can't be opened
+     */
+    public static @NotNull Writer append(@NotNull Path path) throws IOException {
+        boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+        OutputStream out = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (isCompressed(path))
+            out = new GZIPOutputStream(out, 64 * 1024, true);
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        if (isNew) {
+            data.write(MAGIC);
+            data.writeByte(VERSION);
+        }
+        return new Writer(data);
+    }
+
+    /**
+     * Open a log for reading.
+     *
+     * @param path the log file
+     * @return the reader
+     * @throws IOException if the file can't be opened, or it isn't a log in the current format
+     */
+    public static @NotNull Reader read(@NotNull Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (isCompressed(path))
+            in = new GZIPInputStream(in, 64 * 1024);
+
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        int version = data.readUnsignedByte();
+        if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+            data.close();
+            throw new IOException(path + " is not a version " + VERSION + " event log");
+        }
+
+        return new Reader(data);
+    }
+
+    private static boolean isCompressed(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * Appends records to a log. This is thread-safe.
+     */
+    public static final class Writer implements Closeable, Flushable {
+        private final DataOutputStream out;
+        private long count = 0;
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Append a record. The record is buffered, so it may not reach the file until the next {@link #flush()}.
+         *
+         * @param receivedAt the time the payload was received, in epoch milliseconds
+         * @param payload    the raw gateway payload, as UTF-8 JSON
+         * @throws IOException if the record can't be written
+         */
+        public synchronized void write(long receivedAt, byte[] payload) throws IOException {
+            out.writeLong(receivedAt);
+            out.writeInt(payload.length);
+            out.write(payload);
+            count++;
+        }
+
+        /**
+         * @return the number of records written by this writer
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the records of a log in order.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+
+        private Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Read the next record.
+         *
+         * @return the record, or <code>null</code> at the end of the log
+         * @throws IOException if the log is corrupt or can't be read. A record that was cut off (such as when the bot
+         *                     was stopped while recording) is treated as the end of the log instead.
+         */
+        public @Nullable Entry next() throws IOException {
+            long receivedAt;
+            try {
+                receivedAt = in.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+
+            try {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD)
+                    throw new IOException("Event log has an invalid payload length " + length);
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                return new Entry(receivedAt, payload);
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
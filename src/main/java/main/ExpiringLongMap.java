@@ -0,0 +1,307 @@
+package main;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * This is a thread-safe map from primitive <code>long</code> keys (typically Discord snowflake ids) to values, where
+ * every entry expires a fixed amount of time after it was inserted and the total number of entries is capped.
+ * <p>
+ * The map is split into {@link #SEGMENTS} independently locked segments. Each segment is an open-addressing hash table
+ * sized once for its share of the maximum size, so it never resizes and never boxes keys. Because every entry has the
+ * same time-to-live, expiry order is the same as insertion order: each segment keeps its entries in a FIFO queue and
+ * simply pops expired entries off the front whenever it is accessed. When a segment is full, the oldest entry is
+ * evicted to make room.
+ * <p>
+ * Note that <code>0</code> is reserved as the empty key and cannot be stored. This is never a valid snowflake.
+ *
+ * @param <V> the value type
+ */
+public class ExpiringLongMap<V> {
+    /**
+     * The number of segments. This must be a power of two.
+     */
+    private static final int SEGMENTS = 16;
+
+    private final Segment<V>[] segments;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a new map.
+     *
+     * @param ttl         how long each entry lives after it is inserted
+     * @param unit        the unit of <code>ttl</code>
+     * @param maximumSize the maximum number of entries to hold at once (rounded up to a multiple of the segment count)
+     */
+    @SuppressWarnings("unchecked")
+    public ExpiringLongMap(long ttl, @NotNull TimeUnit unit, int maximumSize) {
+        this.ttlNanos = unit.toNanos(ttl);
+        int perSegment = Math.max(1, (maximumSize + SEGMENTS - 1) / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment<>(this, perSegment);
+    }
+
+    /**
+     * Add an entry to the map, replacing any existing entry with the same key. The new entry expires after the
+     * configured time-to-live.
+     *
+     * @param key   the key (must not be 0)
+     * @param value the value
+     */
+    public void put(long key, @NotNull V value) {
+        long hash = hash(key);
+        segmentFor(hash).put(key, hash, value, System.nanoTime());
+    }
+
+    /**
+     * Get the value associated with a key. This is counted as a {@link #getHits() hit} if an unexpired entry is found,
+     * or a {@link #getMisses() miss} otherwise.
+     *
+     * @param key the key
+     * @return the value, or <code>null</code> if there is no unexpired entry for that key
+     */
+    public @Nullable V get(long key) {
+        long hash = hash(key);
+        V value = segmentFor(hash).get(key, hash, System.nanoTime());
+        (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    /**
+     * Get the value associated with a key, or create and insert one if there is none. The value function is called
+     * while the segment lock is held, so it should be cheap and must not access this map.
+     *
+     * @param key      the key
+     * @param function creates a value for the key if one is missing
+     * @return the existing or newly created value
+     */
+    public @NotNull V computeIfAbsent(long key, @NotNull LongFunction<V> function) {
+        long hash = hash(key);
+        return segmentFor(hash).computeIfAbsent(key, hash, function, System.nanoTime());
+    }
+
+    /**
+     * Remove the entry for a key, if there is one.
+     *
+     * @param key the key
+     * @return the removed value, or <code>null</code> if there was no unexpired entry for that key
+     */
+    public @Nullable V remove(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, hash, System.nanoTime());
+    }
+
+    /**
+     * Get the number of entries currently stored. This may include entries that have expired but have not yet been
+     * purged.
+     *
+     * @return the approximate size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    /**
+     * @return the number of {@link #get(long)} calls that found an entry
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of {@link #get(long)} calls that did not find an entry
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries removed because their time-to-live elapsed
+     */
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * @return the number of entries removed early because the map was full
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Snowflakes have a timestamp in their high bits and a counter in their low bits, so they are mixed with a
+     * multiplicative hash before use.
+     */
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private static final class Entry<V> {
+        final long key;
+        final V value;
+        final long expiresAt;
+        boolean removed;
+
+        Entry(long key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * A single lock-protected segment of the map. All methods are synchronized on the segment.
+     */
+    private static final class Segment<V> {
+        private final ExpiringLongMap<V> map;
+        private final int capacity;
+        private final int mask;
+        private final long[] keys;
+        private final Object[] entries;
+        private final ArrayDeque<Entry<V>> order = new ArrayDeque<>();
+        private int size = 0;
+
+        Segment(ExpiringLongMap<V> map, int capacity) {
+            this.map = map;
+            this.capacity = capacity;
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            this.mask = tableSize - 1;
+            this.keys = new long[tableSize];
+            this.entries = new Object[tableSize];
+        }
+
+        synchronized V get(long key, long hash, long now) {
+            purge(now);
+            int slot = find(key, hash);
+            return slot < 0 ? null : entryAt(slot).value;
+        }
+
+        synchronized void put(long key, long hash, V value, long now) {
+            purge(now);
+            int slot = find(key, hash);
+            if (slot >= 0)
+                delete(slot);
+            insert(key, hash, value, now);
+        }
+
+        synchronized V computeIfAbsent(long key, long hash, LongFunction<V> function, long now) {
+            purge(now);
+            int slot = find(key, hash);
+            if (slot >= 0)
+                return entryAt(slot).value;
+
+            V value = function.apply(key);
+            insert(key, hash, value, now);
+            return value;
+        }
+
+        synchronized V remove(long key, long hash, long now) {
+            purge(now);
+            int slot = find(key, hash);
+            if (slot < 0)
+                return null;
+            V value = entryAt(slot).value;
+            delete(slot);
+            return value;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void insert(long key, long hash, V value, long now) {
+            // Make room by evicting the oldest live entry
+            while (size >= capacity) {
+                Entry<V> oldest = order.poll();
+                if (oldest != null && !oldest.removed) {
+                    delete(find(oldest.key, hash(oldest.key)));
+                    map.evictions.increment();
+                }
+            }
+
+            Entry<V> entry = new Entry<>(key, value, now + map.ttlNanos);
+            int slot = (int) hash & mask;
+            while (keys[slot] != 0)
+                slot = (slot + 1) & mask;
+            keys[slot] = key;
+            entries[slot] = entry;
+            order.add(entry);
+            size++;
+        }
+
+        /**
+         * Remove entries from the front of the FIFO queue until the oldest remaining entry is still live.
+         */
+        private void purge(long now) {
+            Entry<V> head;
+            while ((head = order.peek()) != null && (head.removed || head.expiresAt - now <= 0)) {
+                order.poll();
+                if (!head.removed) {
+                    delete(find(head.key, hash(head.key)));
+                    map.expirations.increment();
+                }
+            }
+        }
+
+        private int find(long key, long hash) {
+            int slot = (int) hash & mask;
+            long k;
+            while ((k = keys[slot]) != 0) {
+                if (k == key)
+                    return slot;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Remove the entry at a slot and shift any following entries in the same probe sequence back to fill the gap,
+         * so that lookups never need tombstones.
+         */
+        private void delete(int slot) {
+            entryAt(slot).removed = true;
+            size--;
+
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            long k;
+            while ((k = keys[next]) != 0) {
+                int home = (int) hash(k) & mask;
+                // Move the entry into the gap if its home slot is not between the gap and its current slot
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = k;
+                    entries[gap] = entries[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = 0;
+            entries[gap] = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Entry<V> entryAt(int slot) {
+            return (Entry<V>) entries[slot];
+        }
+    }
+}
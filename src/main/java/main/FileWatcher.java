@@ -0,0 +1,97 @@
+package main;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This watches data files on disk and runs a callback whenever one of them changes, so that the bot can reload them
+ * without a restart.
+ * <p>
+ * Every file is watched by a single daemon thread using a {@link WatchService} on its directory. Editors tend to save a
+ * file in several steps (truncating it, writing it, and sometimes replacing it through a temporary file), so the
+ * changes are collected until the directory has been quiet for {@link #SETTLE_TIME} milliseconds, and then each
+ * changed file's callback runs once. Callbacks run on the watcher thread and should swap in the new data atomically,
+ * so that readers never see a partial reload.
+ */
+public class FileWatcher {
+    private static final Logger LOG = JDALogger.getLog(FileWatcher.class);
+
+    /**
+     * How long to wait after the last change to a directory before reloading the files in it, in milliseconds.
+     */
+    private static final int SETTLE_TIME = 500;
+
+    /**
+     * The callbacks for each watched file, by absolute path.
+     */
+    private static final Map<Path, Runnable> callbacks = new ConcurrentHashMap<>();
+
+    private static WatchService service = null;
+
+    /**
+     * Watch a file, and run a callback whenever it is created, modified, or replaced. The file doesn't need to exist
+     * yet, but its directory does.
+     *
+     * @param file     the file
+     * @param onChange the callback, which runs on the watcher thread
+     * @throws IOException if the directory can't be watched
+     */
+    public static synchronized void watch(@NotNull Path file, @NotNull Runnable onChange) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+
+        if (service == null) {
+            service = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(FileWatcher::run, "StatsBot File-Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        absolute.getParent().register(service,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        callbacks.put(absolute, onChange);
+        LOG.info("Watching " + absolute + " for changes");
+    }
+
+    private static void run() {
+        Set<Path> changed = new LinkedHashSet<>();
+
+        while (true) {
+            try {
+                // Wait for the first change, then keep collecting changes until things settle down
+                WatchKey key = service.take();
+                while (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents())
+                        if (event.context() instanceof Path name)
+                            changed.add(directory.resolve(name).toAbsolutePath().normalize());
+                    key.reset();
+
+                    key = service.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+                }
+
+                for (Path path : changed) {
+                    Runnable callback = callbacks.get(path);
+                    if (callback == null)
+                        continue;
+
+                    try {
+                        callback.run();
+                    } catch (Exception e) {
+                        LOG.error("Failed to reload " + path, e);
+                    }
+                }
+                changed.clear();
+
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+}
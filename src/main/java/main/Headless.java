@@ -0,0 +1,276 @@
+package main;
+
+import announcements.AnnouncementLoader;
+import commands.CommandContext;
+import commands.ReplySink;
+import commands.faq.FAQLoader;
+import commands.slash.Diagram;
+import commands.slash.SlashCommandDispatcher;
+import commands.text.CommandArgs;
+import commands.text.TextCommandDispatcher;
+import data.ID;
+import data.Setting;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.Button;
+import net.dv8tion.jda.api.interactions.components.Component;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This runs the bot's commands without a connection to Discord. Each line of input is a command, which is dispatched
+ * through the same generated {@link TextCommandDispatcher} and {@link SlashCommandDispatcher} as the JDA listeners,
+ * and each reply is printed along with the time the command took:
+ * <pre>
+ *     %faq 3                     a text command, using the prefix from the settings
+ *     /faq                       a slash command
+ *     /announcement send id=2    a slash command with a subcommand and an option
+ *     # comment                  ignored, as are blank lines
+ * </pre>
+ * Batch files may also check the replies, which is how <code>gradlew check</code> runs the batch files in
+ * <code>src/headless</code> as integration tests:
+ * <pre>
+ *     ? text                     the reply to the previous command must contain this text
+ *     &#64;admin                     run the following commands as an administrator
+ *     &#64;user                      run the following commands as an ordinary user
+ * </pre>
+ * If any check fails, or any command throws an exception while running a batch file, the failures are listed at the
+ * end and the driver exits with status 1.
+ * Only commands whose handlers take a {@link CommandContext} can run here. Commands that need a live JDA object (such
+ * as <code>/panel</code>, which reads the bot's presence) are reported as unavailable.
+ * <p>
+ * Run this with <code>gradlew headless</code> to type commands interactively, or with <code>gradlew headless
+ * --args="[file...]"</code> to run batch files of commands. Add <code>--admin</code> to run the commands as an
+ * administrator.
+ */
+public class Headless {
+    private static final PrintStream OUT = System.out;
+
+    /**
+     * The failed checks and commands in the batch files, in the order they happened.
+     */
+    private static final List<String> failures = new ArrayList<>();
+
+    private static boolean admin = false;
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--admin"))
+                admin = true;
+            else
+                files.add(Path.of(arg));
+        }
+
+        // The same resources that are loaded at startup, minus anything that needs Discord
+        Setting.importSettings();
+        FAQLoader.loadFAQ();
+        Diagram.loadDiagrams();
+        AnnouncementLoader.loadAnnouncements();
+
+        if (files.isEmpty()) {
+            run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), null);
+        } else {
+            for (Path file : files)
+                try (BufferedReader in = Files.newBufferedReader(file)) {
+                    run(in, file);
+                }
+        }
+
+        AnnouncementLoader.shutdown();
+
+        if (!failures.isEmpty()) {
+            OUT.println(failures.size() + " headless check(s) failed:");
+            failures.forEach(failure -> OUT.println("  " + failure));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run each command from the console or a batch file, and check the replies against any expectations.
+     *
+     * @param in   the commands
+     * @param file the batch file, or <code>null</code> if the commands are typed in the console
+     */
+    private static void run(BufferedReader in, Path file) throws IOException {
+        String command = null;
+        String reply = "";
+        int lineNumber = 0;
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            if (line.startsWith("?")) {
+                String expected = line.substring(1).strip();
+                if (!reply.contains(expected)) {
+                    String failure = (file == null ? "" : file.getFileName() + ":" + lineNumber + ": ") +
+                                     "expected \"" + expected + "\" in the reply to " + command;
+                    OUT.println("FAILED: " + failure);
+                    failures.add(failure);
+                }
+                continue;
+            }
+
+            if (line.equals("@admin") || line.equals("@user")) {
+                admin = line.equals("@admin");
+                continue;
+            }
+
+            if (file != null)
+                OUT.println("> " + line);
+            command = line;
+            StringBuilder out = new StringBuilder();
+            if (!run(line, out) && file != null)
+                failures.add(file.getFileName() + ":" + lineNumber + ": " + line + " threw an exception");
+            reply = out.toString();
+            OUT.print(reply);
+        }
+    }
+
+    /**
+     * Run a single command as the current user and write its replies.
+     *
+     * @param line the command
+     * @param out  where to write the replies
+     * @return <code>false</code> if the command threw an exception; <code>true</code> otherwise
+     */
+    private static boolean run(String line, StringBuilder out) {
+        long userId = admin ? ID.SIMON : 0;
+        String userName = admin ? "admin" : "console";
+        PrintingReplySink replies = new PrintingReplySink(out);
+
+        CommandContext context = line.startsWith("/") ?
+                parseSlash(line.substring(1), userId, userName, replies) :
+                parseText(line, userId, userName, replies);
+
+        if (context == null) {
+            out.append("Not a command. Text commands start with '").append(Setting.PREFIX)
+                    .append("' and slash commands with '/'.\n");
+            return true;
+        }
+
+        long start = System.nanoTime();
+        boolean found;
+        try {
+            if (context.args() == null)
+                found = SlashCommandDispatcher.dispatch(context);
+            else if (TextCommandDispatcher.isAdminOnly(context.command()) && !context.isAdmin()) {
+                out.append("That command is only available to administrators. Run with --admin to use it.\n");
+                return true;
+            } else
+                found = TextCommandDispatcher.dispatch(context);
+        } catch (Exception e) {
+            StackTraceElement[] trace = e.getStackTrace();
+            out.append("Command failed: ").append(e)
+                    .append(trace.length == 0 ? "" : "\n    at " + trace[0]).append("\n\n");
+            return false;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (found)
+            out.append(String.format("(%d \u00b5s)%n%n", elapsed / 1000));
+        else
+            out.append("Unknown command, or one that can only run through Discord: ").append(context.command())
+                    .append('\n');
+        return true;
+    }
+
+    /**
+     * Parse a text command, such as <code>%faq 3</code>.
+     *
+     * @return the context, or <code>null</code> if the line doesn't start with the prefix
+     */
+    private static CommandContext parseText(String line, long userId, String userName, ReplySink replies) {
+        CommandArgs args = CommandArgs.parse(line, Setting.PREFIX);
+        if (args == null)
+            return null;
+
+        // The arguments are already lower case
+        return new CommandContext(args.get(0), null, args, Map.of(), userId, userName, 0, 0, replies);
+    }
+
+    /**
+     * Parse a slash command, such as <code>announcement send id=2</code>. The first word is the command name. After
+     * that, a word of the form <code>key=value</code> is an option, and any other word is the subcommand.
+     *
+     * @return the context, or <code>null</code> if there is no command name
+     */
+    private static CommandContext parseSlash(String line, long userId, String userName, ReplySink replies) {
+        String[] words = line.split("\\s+");
+        if (words[0].isEmpty())
+            return null;
+
+        String subcommand = null;
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < words.length; i++) {
+            int equals = words[i].indexOf('=');
+            if (equals > 0)
+                options.put(words[i].substring(0, equals), words[i].substring(equals + 1));
+            else
+                subcommand = words[i];
+        }
+
+        return new CommandContext(words[0].toLowerCase(Locale.ROOT), subcommand, null, options, userId, userName,
+                0, 0, replies);
+    }
+
+    /**
+     * This prints each reply as plain text: the content, then each embed's title, description, fields, and footer,
+     * then the labels and links of any buttons.
+     */
+    private static class PrintingReplySink implements ReplySink {
+        private final StringBuilder out;
+
+        PrintingReplySink(StringBuilder out) {
+            this.out = out;
+        }
+
+        @Override
+        public void reply(@NotNull Message message, boolean ephemeral) {
+            if (ephemeral)
+                out.append("[ephemeral]\n");
+
+            if (!message.getContentRaw().isEmpty())
+                out.append(message.getContentRaw()).append('\n');
+
+            for (MessageEmbed embed : message.getEmbeds()) {
+                if (embed.getTitle() != null)
+                    out.append("== ").append(embed.getTitle()).append(" ==\n");
+                if (embed.getDescription() != null)
+                    out.append(embed.getDescription()).append('\n');
+                for (MessageEmbed.Field field : embed.getFields())
+                    out.append("-- ").append(field.getName()).append('\n').append(field.getValue()).append('\n');
+                if (embed.getFooter() != null)
+                    out.append("(").append(embed.getFooter().getText()).append(")\n");
+            }
+
+            for (ActionRow row : message.getActionRows())
+                for (Component component : row.getComponents())
+                    if (component instanceof Button button)
+                        out.append("[").append(button.getLabel()).append("]")
+                                .append(button.getUrl() == null ? "" : " " + button.getUrl()).append('\n');
+        }
+
+        @Override
+        public void defer(boolean ephemeral) {
+            out.append("(deferred)\n");
+        }
+    }
+}
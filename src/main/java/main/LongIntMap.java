@@ -0,0 +1,142 @@
+package main;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This is an immutable map from primitive <code>long</code> keys (typically Discord snowflake ids) to primitive
+ * <code>int</code> values. It is an open-addressing hash table with linear probing, so lookups never box the key or
+ * allocate anything.
+ * <p>
+ * Instances are created through a {@link Builder}. Note that <code>0</code> is reserved as the empty key and cannot be
+ * stored. This is never a valid snowflake.
+ */
+public final class LongIntMap {
+    /**
+     * An empty map.
+     */
+    public static final LongIntMap EMPTY = new Builder().build();
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    private final int size;
+
+    private LongIntMap(long[] keys, int[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * Get the value associated with a key.
+     *
+     * @param key          the key
+     * @param defaultValue the value to return if the key is not in the map
+     * @return the value for that key, or <code>defaultValue</code> if there is none
+     */
+    public int get(long key, int defaultValue) {
+        int slot = (int) hash(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key)
+                return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Check whether the map contains a key.
+     *
+     * @param key the key
+     * @return <code>true</code> if the key is in the map; <code>false</code> otherwise
+     */
+    public boolean containsKey(long key) {
+        int slot = (int) hash(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key)
+                return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of entries in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Snowflakes have a timestamp in their high bits and a counter in their low bits, so they are mixed with a
+     * multiplicative hash before use.
+     */
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * A builder for {@link LongIntMap}. Entries may be added in any order, and later entries replace earlier ones with
+     * the same key.
+     */
+    public static final class Builder {
+        private long[] keys = new long[8];
+        private int[] values = new int[8];
+        private int size = 0;
+
+        /**
+         * Add an entry to the map.
+         *
+         * @param key   the key (must not be 0)
+         * @param value the value
+         * @return this builder for chaining
+         */
+        public @NotNull Builder put(long key, int value) {
+            if (key == 0)
+                throw new IllegalArgumentException("0 cannot be used as a key");
+
+            for (int i = 0; i < size; i++)
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return this;
+                }
+
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            keys[size] = key;
+            values[size] = value;
+            size++;
+            return this;
+        }
+
+        /**
+         * Build the map. The table is sized so that it is at most half full.
+         *
+         * @return the new immutable map
+         */
+        public @NotNull LongIntMap build() {
+            int tableSize = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+            int mask = tableSize - 1;
+            long[] tableKeys = new long[tableSize];
+            int[] tableValues = new int[tableSize];
+
+            for (int i = 0; i < size; i++) {
+                int slot = (int) hash(keys[i]) & mask;
+                while (tableKeys[slot] != 0)
+                    slot = (slot + 1) & mask;
+                tableKeys[slot] = keys[i];
+                tableValues[slot] = values[i];
+            }
+
+            return new LongIntMap(tableKeys, tableValues, size);
+        }
+    }
+}
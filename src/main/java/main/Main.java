@@ -1,5 +1,6 @@
 package main;
 
+import commands.interactions.ComponentId;
 import events.*;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
@@ -7,24 +8,111 @@ import net.dv8tion.jda.api.requests.GatewayIntent;
 
 import javax.security.auth.login.LoginException;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Main {
     public static JDA JDA;
-    public static BotMode MODE = BotMode.all();
+
+    /**
+     * This is the {@link RoutingTable} compiled from the current {@link BotMode}. It is replaced as a whole whenever the
+     * mode changes, so every event sees either the old mode or the new one and never a mixture of both.
+     */
+    private static final AtomicReference<RoutingTable> ROUTES =
+            new AtomicReference<>(RoutingTable.compile(BotMode.all()));
+
+    /**
+     * The ids of the channels that receive announcements, which are compiled into every {@link RoutingTable}.
+     */
+    private static volatile long[] announcementChannels = new long[0];
+
+    /**
+     * This is the event manager that dispatches JDA events to the bot's listeners in parallel across channels.
+     */
+    public static final ChannelEventManager EVENTS = new ChannelEventManager();
 
     public static void main(String[] args) throws IOException, LoginException {
         String token = new String(
                 Objects.requireNonNull(Main.class.getResourceAsStream("/token.txt"))
                         .readAllBytes());
 
-        JDA = JDABuilder.createDefault(token)
+        // Signed component ids use a key derived from the token, so they stay valid across restarts
+        ComponentId.setSigningKey(token);
+
+        JDABuilder builder = configure(token);
+
+        // With --record [file], write every raw gateway event to an EventLog so that it can be replayed later
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].equals("--record"))
+                continue;
+            if (i == args.length - 1) {
+                System.err.println("Usage: Main [--record [file]]");
+                System.exit(2);
+            }
+            builder.setRawEventsEnabled(true)
+                    .addEventListeners(EventRecorder.start(Path.of(args[++i])));
+        }
+
+        JDA = builder.build();
+    }
+
+    /**
+     * This creates the {@link JDABuilder} for the bot, with its intents, {@link #EVENTS event manager}, and listeners.
+     * It is separate from {@link #main(String[])} so that the load tests can run the real listener stack while pointing
+     * JDA at a local stand-in for Discord.
+     *
+     * @param token the bot token
+     * @return the configured builder, ready to {@link JDABuilder#build() build}
+     */
+    public static JDABuilder configure(String token) {
+        return JDABuilder.createDefault(token)
                 .enableIntents(GatewayIntent.GUILD_MEMBERS)
+                .setEventManager(EVENTS)
                 .addEventListeners(new OnMessage())
                 .addEventListeners(new Startup())
                 .addEventListeners(new SlashCommand())
                 .addEventListeners(new OnInteraction())
-                .addEventListeners(new OnReaction())
-                .build();
+                .addEventListeners(new OnReaction());
+    }
+
+    /**
+     * Get the {@link RoutingTable} for the current {@link BotMode}.
+     *
+     * @return the current routing table
+     */
+    public static RoutingTable getRoutes() {
+        return ROUTES.get();
+    }
+
+    /**
+     * Get the current {@link BotMode}.
+     *
+     * @return the current mode
+     */
+    public static BotMode getMode() {
+        return ROUTES.get().getMode();
+    }
+
+    /**
+     * Change the current {@link BotMode}. The mode is compiled into a new {@link RoutingTable}, which atomically
+     * replaces the old one.
+     *
+     * @param mode the new mode
+     * @return the previous mode
+     */
+    public static synchronized BotMode setMode(BotMode mode) {
+        return ROUTES.getAndSet(RoutingTable.compile(mode, announcementChannels)).getMode();
+    }
+
+    /**
+     * Change the channels that receive announcements. The current mode is recompiled into a new {@link RoutingTable}
+     * with these channels, so that their messages are routed to the announcement timer.
+     *
+     * @param channels the ids of the announcement channels
+     */
+    public static synchronized void setAnnouncementChannels(long[] channels) {
+        announcementChannels = channels;
+        ROUTES.set(RoutingTable.compile(getMode(), channels));
     }
 }
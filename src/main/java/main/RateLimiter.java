@@ -0,0 +1,234 @@
+package main;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a token bucket rate limiter with a separate {@link Bucket} for each <code>long</code> key (typically a user
+ * or channel id). Each bucket holds up to <code>burst</code> tokens and refills at a steady rate of <code>burst</code>
+ * tokens per <code>period</code>, so a key can make a short burst of requests and is then held to the average rate.
+ * <p>
+ * The buckets are kept in an {@link ExpiringLongMap}, so keys that stop making requests are forgotten and the number
+ * of buckets is capped. An entry lives for two periods after it is inserted. Whenever taking a token means a bucket
+ * won't be full again until after its entry expires, the entry is put back in the map, restarting its time-to-live.
+ * A bucket therefore only expires once it is full again, and a key that keeps making requests never gets a fresh
+ * bucket or loses its debt.
+ */
+public class RateLimiter {
+    /**
+     * This is a single token bucket, implemented with the generic cell rate algorithm. The whole bucket is stored as a
+     * single number: the "theoretical arrival time", or the time at which the bucket would be full again if no more
+     * requests were made. A request is allowed if taking a token would not push that time more than one period into
+     * the future. The time is an {@link AtomicLong} updated with a compare-and-set loop, so checking a bucket never
+     * blocks.
+     * <p>
+     * A bucket can be used on its own for a single limit shared by everything, such as a global budget.
+     */
+    public static final class Bucket {
+        private final AtomicLong arrival;
+
+        /**
+         * The time it takes for one token to refill, in nanoseconds.
+         */
+        private final long intervalNanos;
+
+        /**
+         * The time it takes for an empty bucket to refill completely, in nanoseconds.
+         */
+        private final long periodNanos;
+
+        /**
+         * When the entry for this bucket expires from its {@link RateLimiter}, or 0 for a bucket used on its own.
+         */
+        private volatile long expiresAt;
+
+        /**
+         * Create a new, full bucket.
+         *
+         * @param burst  the number of tokens in a full bucket, which is also the number refilled each period
+         * @param period the time it takes for an empty bucket to refill
+         * @param unit   the unit of <code>period</code>
+         */
+        public Bucket(int burst, long period, @NotNull TimeUnit unit) {
+            this(unit.toNanos(period), Math.max(1, unit.toNanos(period) / checkBurst(burst, period)));
+        }
+
+        private Bucket(long periodNanos, long intervalNanos) {
+            this.periodNanos = periodNanos;
+            this.intervalNanos = intervalNanos;
+            // A full bucket is the same as a theoretical arrival time in the past
+            this.arrival = new AtomicLong(System.nanoTime() - periodNanos);
+        }
+
+        /**
+         * Take a token, if there is one.
+         *
+         * @return true if a token was taken; false if the bucket is empty
+         */
+        public boolean tryAcquire() {
+            return tryAcquire(1);
+        }
+
+        /**
+         * Take a token, but only if doing so leaves at least <code>1 - capacity</code> of the bucket full. This lets
+         * low priority requests back off while there is still room for more important ones.
+         *
+         * @param capacity the fraction of the bucket, from 0 to 1, that this request may use
+         * @return true if a token was taken; false if the bucket is too empty
+         */
+        public boolean tryAcquire(double capacity) {
+            long limit = (long) (periodNanos * capacity);
+
+            while (true) {
+                long now = System.nanoTime();
+                long current = arrival.get();
+                long next = Math.max(current, now) + intervalNanos;
+                if (next - now > limit)
+                    return false;
+                if (arrival.compareAndSet(current, next))
+                    return true;
+            }
+        }
+
+        /**
+         * Take a token, even if the bucket is empty. This is for requests that must always go through, but should
+         * still count against the limit for later requests.
+         */
+        public void acquire() {
+            long now = System.nanoTime();
+            // Never let a bucket fall more than one period further behind, so that it recovers once the burst is over
+            arrival.getAndUpdate(current -> Math.min(Math.max(current, now) + intervalNanos, now + 2 * periodNanos));
+        }
+
+        /**
+         * Give back a token that was taken for a request that was then dropped anyway.
+         */
+        public void release() {
+            arrival.getAndAdd(-intervalNanos);
+        }
+
+        /**
+         * Get the fraction of the bucket that is currently used up.
+         *
+         * @return the fraction, from 0 for a full bucket to 1 (or more, after {@link #acquire() forced} requests) for
+         * an empty one
+         */
+        public double getUsage() {
+            return Math.max(0, arrival.get() - System.nanoTime()) / (double) periodNanos;
+        }
+
+        private static int checkBurst(int burst, long period) {
+            if (burst < 1 || period < 1)
+                throw new IllegalArgumentException("Rate limits must allow at least one request per period");
+            return burst;
+        }
+    }
+
+    private final ExpiringLongMap<Bucket> buckets;
+
+    private final long intervalNanos;
+    private final long periodNanos;
+    private final long ttlNanos;
+
+    /**
+     * Create a new rate limiter.
+     *
+     * @param burst       the number of tokens in a full bucket, which is also the number refilled each period
+     * @param period      the time it takes for an empty bucket to refill
+     * @param unit        the unit of <code>period</code>
+     * @param maximumKeys the maximum number of buckets to hold at once
+     */
+    public RateLimiter(int burst, long period, @NotNull TimeUnit unit, int maximumKeys) {
+        this.periodNanos = unit.toNanos(period);
+        this.intervalNanos = Math.max(1, periodNanos / Bucket.checkBurst(burst, period));
+        this.ttlNanos = 2 * periodNanos;
+        this.buckets = new ExpiringLongMap<>(ttlNanos, TimeUnit.NANOSECONDS, maximumKeys);
+    }
+
+    /**
+     * Take a token from the bucket for a key, if there is one.
+     *
+     * @param key the key (must not be 0)
+     * @return true if a token was taken; false if the key is rate limited
+     */
+    public boolean tryAcquire(long key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * Take a token from the bucket for a key, as for {@link Bucket#tryAcquire(double)}.
+     *
+     * @param key      the key (must not be 0)
+     * @param capacity the fraction of the bucket, from 0 to 1, that this request may use
+     * @return true if a token was taken; false if the key is rate limited
+     */
+    public boolean tryAcquire(long key, double capacity) {
+        Bucket bucket = bucket(key);
+        if (!bucket.tryAcquire(capacity))
+            return false;
+        keep(key, bucket);
+        return true;
+    }
+
+    /**
+     * Take a token from the bucket for a key, even if it is empty, as for {@link Bucket#acquire()}.
+     *
+     * @param key the key (must not be 0)
+     */
+    public void acquire(long key) {
+        Bucket bucket = bucket(key);
+        bucket.acquire();
+        keep(key, bucket);
+    }
+
+    /**
+     * Give back a token taken from the bucket for a key, as for {@link Bucket#release()}.
+     *
+     * @param key the key
+     */
+    public void release(long key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null)
+            bucket.release();
+    }
+
+    /**
+     * Get the fraction of a key's bucket that is currently used up.
+     *
+     * @param key the key
+     * @return the fraction, as for {@link Bucket#getUsage()}
+     */
+    public double getUsage(long key) {
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.getUsage();
+    }
+
+    /**
+     * @return the number of keys with a bucket
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private Bucket bucket(long key) {
+        return buckets.computeIfAbsent(key, k -> {
+            Bucket bucket = new Bucket(periodNanos, intervalNanos);
+            bucket.expiresAt = System.nanoTime() + ttlNanos;
+            return bucket;
+        });
+    }
+
+    /**
+     * If a bucket won't be full again until after its entry expires, put it back in the map to restart its
+     * time-to-live. Buckets that will be full by then are left alone, so this only takes the segment lock for keys
+     * that are making requests faster than they refill.
+     */
+    private void keep(long key, Bucket bucket) {
+        if (bucket.arrival.get() - bucket.expiresAt > 0) {
+            bucket.expiresAt = System.nanoTime() + ttlNanos;
+            buckets.put(key, bucket);
+        }
+    }
+}
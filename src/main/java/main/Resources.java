@@ -0,0 +1,120 @@
+package main;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * This reads the bot's data files, either from the classpath or from a copy on disk that overrides it.
+ * <p>
+ * Classpath resources are read as streams rather than {@link java.io.File files}, so they work the same whether the bot
+ * runs from the build directory or from a packaged jar. Both kinds of file are read through an NIO channel straight
+ * into one buffer, decoded once, and {@link CsvReader tokenized} in a single pass. The time each file takes to load is
+ * logged.
+ */
+public final class Resources {
+    private static final Logger LOG = JDALogger.getLog(Resources.class);
+
+    /**
+     * The buffer size for classpath resources, whose length isn't known ahead of time. The bot's data files all fit.
+     */
+    private static final int INITIAL_BUFFER = 16 * 1024;
+
+    /**
+     * The rows of a CSV file, along with where they were read from.
+     *
+     * @param source a description of the file, for logging
+     * @param rows   the rows, without the header
+     */
+    public record Csv(@NotNull String source, @NotNull List<CsvReader.Row> rows) {
+    }
+
+    /**
+     * Check whether a classpath resource exists.
+     *
+     * @param resource the name of the resource, starting with <code>/</code>
+     * @return <code>true</code> if it exists
+     */
+    public static boolean exists(@NotNull String resource) {
+        return Resources.class.getResource(resource) != null;
+    }
+
+    /**
+     * Read a CSV file from disk if it exists, or from the classpath otherwise, and log how long it took. On the
+     * classpath, the rows are taken from the {@link ContentBundle} if the file was compiled into it, so that only the
+     * bundle is read from disk.
+     *
+     * @param resource the name of the classpath resource, starting with <code>/</code>
+     * @param file     a copy of the resource on disk to read instead, or <code>null</code> to always use the resource
+     * @param columns  the number of columns in the file
+     * @return the rows of the file
+     * @throws IOException              if the file can't be read, or the resource doesn't exist
+     * @throws IllegalArgumentException if the file isn't valid CSV
+     */
+    public static @NotNull Csv readCsv(@NotNull String resource, @Nullable Path file, int columns) throws IOException {
+        long start = System.nanoTime();
+        boolean external = file != null && Files.exists(file);
+        String source = external ? file.toString() : resource.substring(resource.lastIndexOf('/') + 1) + " resource";
+
+        ContentBundle bundle = external ? null : ContentBundle.get();
+        List<CsvReader.Row> bundled = bundle == null ? null : bundle.getRows(resource, columns);
+        if (bundled != null) {
+            LOG.info(String.format("Read %s (%d rows) from the content bundle in %.2f ms",
+                    source, bundled.size(), (System.nanoTime() - start) / 1e6));
+            return new Csv(source, bundled);
+        }
+
+        ByteBuffer bytes = external ? readFile(file) : readResource(resource);
+        int size = bytes.remaining();
+        CharBuffer text = StandardCharsets.UTF_8.decode(bytes);
+        List<CsvReader.Row> rows = CsvReader.parse(text, columns);
+
+        LOG.info(String.format("Read %s (%d rows, %d bytes) in %.2f ms",
+                source, rows.size(), size, (System.nanoTime() - start) / 1e6));
+        return new Csv(source, rows);
+    }
+
+    /**
+     * Read a whole file from disk, sizing the buffer from the file itself.
+     */
+    private static ByteBuffer readFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) ;
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Read a whole classpath resource, growing the buffer if the resource is larger than {@link #INITIAL_BUFFER}.
+     */
+    static ByteBuffer readResource(String resource) throws IOException {
+        InputStream stream = Resources.class.getResourceAsStream(resource);
+        if (stream == null)
+            throw new FileNotFoundException("Missing resource " + resource);
+
+        try (ReadableByteChannel channel = Channels.newChannel(stream)) {
+            ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER);
+            while (channel.read(buffer) != -1) {
+                if (!buffer.hasRemaining())
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            }
+            return buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package main;
+
+import data.Discord;
+import data.ID;
+import net.dv8tion.jda.api.entities.AbstractChannel;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.GuildChannel;
+import net.dv8tion.jda.api.entities.MessageChannel;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.react.GenericMessageReactionEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * This is an immutable snapshot of the places where the bot responds to events, compiled from a {@link BotMode}.
+ * <p>
+ * Every location (a DM, a guild, or a specific channel) is assigned a bit mask of the {@link Route Routes} that are
+ * allowed there. Channel masks are stored in one {@link LongIntMap} and guild masks in another, so that looking up the
+ * routes for an event is a couple of primitive hash lookups with no allocation. Channels without an entry of their own
+ * use the mask of their guild, and guilds without an entry use the default mask for servers.
+ * <p>
+ * Because the table is immutable, changing the bot mode is simply a matter of compiling a new table and swapping it in
+ * through {@link Main#setMode(BotMode)}. Threads that are already routing an event keep using the old table, and every
+ * event after the swap sees the new one.
+ */
+public final class RoutingTable {
+    /**
+     * These are the kinds of event handling that can be enabled in a location.
+     */
+    public enum Route {
+        /**
+         * Messages that consist only of a mention of the bot, which are answered with the bot's prefix
+         */
+        MENTIONS,
+
+        /**
+         * All other handling for messages, including text commands (and their edits and deletions), the dad bot, and
+         * survey links
+         */
+        MESSAGES,
+
+        /**
+         * Reactions added to messages
+         */
+        REACTIONS,
+
+        /**
+         * Buttons, selection menus, and other non slash command interactions
+         */
+        COMPONENTS,
+
+        /**
+         * Slash commands
+         */
+        SLASH_COMMANDS;
+
+        private final int bit = 1 << ordinal();
+
+        /**
+         * @return the bit for this route in a route mask
+         */
+        public int bit() {
+            return bit;
+        }
+    }
+
+    private final BotMode mode;
+    private final int directRoutes;
+    private final int defaultGuildRoutes;
+    private final LongIntMap guildRoutes;
+    private final LongIntMap channelRoutes;
+
+    /**
+     * The {@link announcements.AnnouncementChannel announcement channels}, each mapped to 1. Their messages are always
+     * delivered where the bot is enabled, as they postpone the next announcement.
+     */
+    private final LongIntMap announcementChannels;
+
+    /**
+     * The raw contents of a message that consists only of a mention of the bot.
+     */
+    private final String selfMention = "<@!" + ID.SELF + ">";
+
+    private RoutingTable(BotMode mode, int directRoutes, int defaultGuildRoutes,
+                         LongIntMap guildRoutes, LongIntMap channelRoutes, LongIntMap announcementChannels) {
+        this.mode = mode;
+        this.directRoutes = directRoutes;
+        this.defaultGuildRoutes = defaultGuildRoutes;
+        this.guildRoutes = guildRoutes;
+        this.channelRoutes = channelRoutes;
+        this.announcementChannels = announcementChannels;
+    }
+
+    /**
+     * This compiles a {@link BotMode} into a routing table without any announcement channels.
+     *
+     * @param mode the bot mode
+     * @return the compiled routing table
+     * @see #compile(BotMode, long[])
+     */
+    public static @NotNull RoutingTable compile(@NotNull BotMode mode) {
+        return compile(mode, new long[0]);
+    }
+
+    /**
+     * This compiles a {@link BotMode} into a routing table.
+     * <p>
+     * Messages, reactions, and components are routed in DMs, {@link Discord#STATSBOT_CENTRAL}, and other servers
+     * according to {@link BotMode.Mode#DIRECT_MESSAGES}, {@link BotMode.Mode#STATSBOT_CENTRAL_MESSAGES}, and {@link
+     * BotMode.Mode#SERVER_MESSAGES} respectively. Slash commands in StatsBot Central follow {@link
+     * BotMode.Mode#PRIVATE_SLASH_COMMANDS}, and everywhere else {@link BotMode.Mode#GLOBAL_SLASH_COMMANDS}.
+     * <p>
+     * The bot has access to many of the channels in the AP Students server, but it should only respond to ordinary
+     * messages in some of them. In the rest, the {@link Route#MESSAGES} route is removed, so those messages are dropped
+     * before they reach any listener unless they mention the bot.
+     * <p>
+     * New messages, edits, and deletions in announcement channels are still delivered wherever the bot responds to
+     * mentions, even without the {@link Route#MESSAGES} route, because they decide when the next announcement is sent.
+     * The listeners don't respond to them unless the channel has the route.
+     *
+     * @param mode                 the bot mode
+     * @param announcementChannels the ids of the channels that receive announcements
+     * @return the compiled routing table
+     */
+    public static @NotNull RoutingTable compile(@NotNull BotMode mode, long @NotNull [] announcementChannels) {
+        int globalSlash = mode.allows(BotMode.Mode.GLOBAL_SLASH_COMMANDS) ? Route.SLASH_COMMANDS.bit() : 0;
+        int privateSlash = mode.allows(BotMode.Mode.PRIVATE_SLASH_COMMANDS) ? Route.SLASH_COMMANDS.bit() : 0;
+
+        int direct = messageRoutes(mode, BotMode.Mode.DIRECT_MESSAGES) | globalSlash;
+        int server = messageRoutes(mode, BotMode.Mode.SERVER_MESSAGES) | globalSlash;
+        int central = messageRoutes(mode, BotMode.Mode.STATSBOT_CENTRAL_MESSAGES) | privateSlash;
+
+        // In AP Students, only allow common messages in #apstats and #bot-commands
+        LongIntMap guilds = new LongIntMap.Builder()
+                .put(ID.AP_STUDENTS_GUILD, server & ~Route.MESSAGES.bit())
+                .put(ID.STATSBOT_CENTRAL_GUILD, central)
+                .build();
+
+        LongIntMap channels = new LongIntMap.Builder()
+                .put(ID.AP_STATS_CHANNEL, server)
+                .put(ID.BOT_COMMANDS_CHANNEL, server)
+                .build();
+
+        LongIntMap.Builder announcements = new LongIntMap.Builder();
+        for (long channel : announcementChannels)
+            announcements.put(channel, 1);
+
+        return new RoutingTable(mode, direct, server, guilds, channels, announcements.build());
+    }
+
+    /**
+     * Get the routes for messages, reactions, and components in a location controlled by the given mode.
+     *
+     * @param mode     the bot mode
+     * @param location the mode controlling the location
+     * @return the route mask
+     */
+    private static int messageRoutes(BotMode mode, BotMode.Mode location) {
+        return mode.allows(location)
+                ? Route.MENTIONS.bit() | Route.MESSAGES.bit() | Route.REACTIONS.bit() | Route.COMPONENTS.bit()
+                : 0;
+    }
+
+    /**
+     * @return the {@link BotMode} that this table was compiled from
+     */
+    public @NotNull BotMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Get the route mask for a location.
+     *
+     * @param guildId   the id of the guild, or 0 for DMs
+     * @param channelId the id of the channel, or 0 if unknown
+     * @return the route mask
+     */
+    public int getRoutes(long guildId, long channelId) {
+        if (channelId != 0) {
+            int routes = channelRoutes.get(channelId, -1);
+            if (routes != -1)
+                return routes;
+        }
+
+        return guildId == 0 ? directRoutes : guildRoutes.get(guildId, defaultGuildRoutes);
+    }
+
+    /**
+     * Check whether a route is allowed in a channel.
+     *
+     * @param route   the route
+     * @param channel the channel (may be a server or direct message channel)
+     * @return <code>true</code> if the route is allowed; <code>false</code> if events for it should be ignored
+     */
+    public boolean allows(@NotNull Route route, @NotNull MessageChannel channel) {
+        long guildId = channel instanceof GuildChannel c ? c.getGuild().getIdLong() : 0;
+        return (getRoutes(guildId, channel.getIdLong()) & route.bit()) != 0;
+    }
+
+    /**
+     * This determines whether an incoming JDA event should be processed. Events that don't need a particular route are
+     * always accepted.
+     *
+     * @param event the incoming event
+     * @return <code>true</code> if the event should be dispatched to the listeners; <code>false</code> if it should be
+     * dropped
+     */
+    public boolean accepts(@NotNull GenericEvent event) {
+        if (event instanceof GenericMessageEvent e) {
+            long guildId = e.isFromGuild() ? e.getGuild().getIdLong() : 0;
+            int routes = getRoutes(guildId, e.getChannel().getIdLong());
+
+            if (event instanceof GenericMessageReactionEvent)
+                return (routes & Route.REACTIONS.bit()) != 0;
+
+            // Announcement channels need every message, so that they know when the channel was last active
+            if ((routes & Route.MENTIONS.bit()) != 0 && announcementChannels.get(e.getChannel().getIdLong(), 0) != 0)
+                return true;
+
+            // New messages where only mentions are routed are checked here, so that most messages in ignored
+            // channels never reach a listener
+            if (event instanceof MessageReceivedEvent m && (routes & Route.MESSAGES.bit()) == 0)
+                return (routes & Route.MENTIONS.bit()) != 0 && m.getMessage().getContentRaw().equals(selfMention);
+
+            return (routes & Route.MESSAGES.bit()) != 0;
+        }
+
+        if (event instanceof GenericInteractionCreateEvent e) {
+            int routes = getRoutes(getGuildId(e.getGuild()), getChannelId(e.getChannel()));
+            Route route = event instanceof SlashCommandEvent ? Route.SLASH_COMMANDS : Route.COMPONENTS;
+            return (routes & route.bit()) != 0;
+        }
+
+        // Events that don't belong to a location, such as the ReadyEvent, are always accepted
+        return true;
+    }
+
+    private static long getGuildId(@Nullable Guild guild) {
+        return guild == null ? 0 : guild.getIdLong();
+    }
+
+    private static long getChannelId(@Nullable AbstractChannel channel) {
+        return channel == null ? 0 : channel.getIdLong();
+    }
+}
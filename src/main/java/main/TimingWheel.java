@@ -0,0 +1,227 @@
+package main;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This is a hashed timing wheel: a timer that can hold a very large number of pending tasks on a single thread, at the
+ * cost of only firing them to the nearest {@link #tickNanos tick}.
+ * <p>
+ * The wheel is a ring of {@link #slots} buckets. Once per tick, the worker thread advances to the next bucket and runs
+ * every task in it that is due. A task is placed in the bucket for the tick on which it is due, modulo the size of the
+ * ring, along with the number of full rotations that must pass before it runs. Scheduling and cancelling are therefore
+ * constant time no matter how many tasks are pending, unlike a {@link java.util.concurrent.ScheduledExecutorService
+ * ScheduledExecutorService}, which keeps its tasks in a heap.
+ * <p>
+ * Tasks may be scheduled from any thread. New tasks are handed to the worker through a lock-free queue and are only
+ * placed in their bucket on the next tick, so the buckets themselves are only ever touched by the worker. Cancelled
+ * tasks are likewise removed lazily, when the worker next visits their bucket. Tasks run on the worker thread, so they
+ * must be quick and must never block; anything slow should be queued elsewhere.
+ */
+public class TimingWheel implements Closeable {
+    private static final Logger LOG = JDALogger.getLog(TimingWheel.class);
+
+    private final long tickNanos;
+    private final int slots;
+    private final int mask;
+    private final Timeout[] buckets;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Thread worker;
+    private final long startedAt;
+    private volatile boolean closed = false;
+
+    /**
+     * The number of ticks the worker has completed. This is only written by the worker.
+     */
+    private volatile long tick = 0;
+
+    /**
+     * Create a timing wheel and start its worker thread.
+     *
+     * @param name  the name of the worker thread
+     * @param tick  the duration of a tick, which is the resolution of the timer
+     * @param unit  the unit of <code>tick</code>
+     * @param slots the number of buckets in the wheel (rounded up to a power of two). A task due within
+     *              <code>slots</code> ticks runs on the first visit to its bucket.
+     */
+    public TimingWheel(@NotNull String name, long tick, @NotNull TimeUnit unit, int slots) {
+        this.tickNanos = unit.toNanos(tick);
+        this.slots = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+        this.mask = this.slots - 1;
+        this.buckets = new Timeout[this.slots];
+        this.startedAt = System.nanoTime();
+
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedule a task to run once after a delay. The task runs on the first tick at or after the delay has elapsed.
+     *
+     * @param task  the task
+     * @param delay the delay
+     * @param unit  the unit of <code>delay</code>
+     * @return a handle that can be used to cancel the task
+     */
+    public @NotNull Timeout schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+        if (closed)
+            throw new IllegalStateException("The timing wheel has been closed");
+
+        Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        size.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return the number of tasks that are scheduled and have not yet run or been removed after cancellation
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Stop the worker thread. Tasks that have not run yet are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (!closed) {
+            // Sleep until the end of the current tick
+            long deadline = startedAt + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                LockSupport.parkNanos(this, deadline - now);
+                if (closed)
+                    return;
+            }
+
+            transferPending();
+            expire(buckets[(int) (tick & mask)], now);
+            tick++;
+        }
+    }
+
+    /**
+     * Move newly scheduled tasks from the {@link #pending} queue into their buckets.
+     */
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                size.decrementAndGet();
+                continue;
+            }
+
+            // The tick during which the task is due. Tasks that are already due go in the current bucket.
+            long due = Math.max(tick, (timeout.deadline - startedAt) / tickNanos);
+            timeout.rounds = (due - tick) / slots;
+            int slot = (int) (due & mask);
+
+            timeout.next = buckets[slot];
+            if (timeout.next != null)
+                timeout.next.previous = timeout;
+            buckets[slot] = timeout;
+        }
+    }
+
+    /**
+     * Run every due task in a bucket, and remove any that were cancelled.
+     */
+    private void expire(Timeout timeout, long now) {
+        while (timeout != null) {
+            Timeout next = timeout.next;
+
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                remove(timeout);
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else if (timeout.deadline - now <= 0) {
+                remove(timeout);
+                if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable t) {
+                        LOG.error("A timing wheel task threw an exception", t);
+                    }
+                }
+            }
+
+            timeout = next;
+        }
+    }
+
+    private void remove(Timeout timeout) {
+        int slot = (int) (tick & mask);
+        if (timeout.previous != null)
+            timeout.previous.next = timeout.next;
+        else
+            buckets[slot] = timeout.next;
+        if (timeout.next != null)
+            timeout.next.previous = timeout.previous;
+
+        timeout.next = timeout.previous = null;
+        size.decrementAndGet();
+    }
+
+    /**
+     * A task scheduled on a {@link TimingWheel}.
+     */
+    public static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        // These are only accessed by the worker thread
+        private long rounds;
+        private Timeout next;
+        private Timeout previous;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task, if it hasn't run yet.
+         *
+         * @return true if the task was cancelled; false if it already ran or was already cancelled
+         */
+        public boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        /**
+         * @return the time remaining until the task is due, in nanoseconds (negative if it is overdue)
+         */
+        public long getRemainingNanos() {
+            return deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * @return an estimate of the time the worker is behind schedule, in nanoseconds
+     */
+    public long getLagNanos() {
+        return Math.max(0, System.nanoTime() - (startedAt + tick * tickNanos));
+    }
+}
@@ -1,5 +1,6 @@
 package main;
 
+import data.ID;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.entities.Message;
@@ -10,9 +11,6 @@ import net.dv8tion.jda.api.interactions.components.Button;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
-import java.io.File;
-import java.net.URISyntaxException;
-import java.util.Objects;
 
 /**
  * This class contains convenience methods for performing many common tasks. All of the methods here simply make coding
@@ -119,7 +117,7 @@ public class Utils {
      * @return a string that mentions the bot account
      */
     public static String mentionMe() {
-        return Main.JDA.getSelfUser().getAsMention();
+        return mention(ID.SELF);
     }
 
     /**
@@ -200,25 +198,6 @@ public class Utils {
         return "[" + text + "](" + url + ")";
     }
 
-    /**
-     * This returns a resource {@link File} with the given name. Note that this resource file is based off the {@link
-     * Utils} class with {@link #getClass()}, rather than the calling class. If the resource file was not found, a
-     * {@link File} instance with an empty path name is returned instead, and an exception is printed to the console.
-     * <p><br
-     * <b>Note:</b> don't forget to include a <b><code>/</code></b> before the name of the file.
-     *
-     * @param file the name of the file to retrieve
-     * @return the retrieved file, or a file with no path if a file with the given name was not found
-     */
-    public static @NotNull File getResourceFile(String file) {
-        try {
-            return new File(Objects.requireNonNull(Utils.class.getResource(file)).toURI());
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-            return new File("");
-        }
-    }
-
     /**
      * This method wraps an {@link EmbedBuilder} in a {@link MessageBuilder} instance and builds it into a {@link
      * Message}.